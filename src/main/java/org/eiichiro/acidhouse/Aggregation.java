@@ -15,8 +15,11 @@
  */
 package org.eiichiro.acidhouse;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
+import org.eiichiro.acidhouse.metamodel.Metamodel;
 import org.eiichiro.acidhouse.metamodel.Property;
 
 /**
@@ -32,6 +35,8 @@ import org.eiichiro.acidhouse.metamodel.Property;
  */
 public abstract class Aggregation<T> {
 
+	private final Metamodel<?> metamodel;
+	
 	private final Property<?, T> property;
 	
 	/**
@@ -44,9 +49,28 @@ public abstract class Aggregation<T> {
 			throw new IllegalArgumentException("'property' must not be [" + property + "]");
 		}
 		
+		metamodel = property.metamodel();
 		this.property = property;
 	}
 	
+	/**
+	 * Constructs a new {@code Aggregation} instance which aggregates the 
+	 * entities of the specified metamodel rather than one property of them 
+	 * (e.g. count). {@link #property()} of this aggregation returns 
+	 * <code>null</code>, so it must override {@link #accumulator()} with the 
+	 * {@code Accumulator} which does not read the property value.
+	 * 
+	 * @param metamodel The metamodel of the entities to aggregate.
+	 */
+	protected Aggregation(final Metamodel<?> metamodel) {
+		if (metamodel == null) {
+			throw new IllegalArgumentException("'metamodel' must not be [" + metamodel + "]");
+		}
+		
+		this.metamodel = metamodel;
+		property = null;
+	}
+	
 	/**
 	 * Aggregates the specified list and returns the aggregation result.
 	 * This method is called back by the {@code GetScalar} implementation. 
@@ -60,7 +84,114 @@ public abstract class Aggregation<T> {
 	public abstract T aggregate(List<T> list);
 
 	/**
-	 * Returns the property that this aggregation instance aggregates.
+	 * Aggregates the property values of the specified entities and returns the 
+	 * aggregation result.
+	 * The {@code GetScalar} implementation can call this method back with the 
+	 * qualified entities instead of {@link #aggregate(List)}. This method 
+	 * folds the entities into the {@link #accumulator()}.
+	 * 
+	 * @param entities The entities which property values are aggregated.
+	 * @return The aggregation result as a scalar value.
+	 */
+	public T apply(List<?> entities) {
+		return apply(entities.iterator());
+	}
+	
+	/**
+	 * Aggregates the property values of the entities streamed from the 
+	 * specified iterator in one pass and returns the aggregation result.
+	 * The {@code GetScalar} implementation can call this method back with the 
+	 * iterator over the pages of the qualified entities, so that the entities 
+	 * are not materialized into a list.
+	 * 
+	 * @param entities The iterator of the entities which property values are 
+	 * aggregated.
+	 * @return The aggregation result as a scalar value.
+	 */
+	public T apply(Iterator<?> entities) {
+		Accumulator<T> accumulator = accumulator();
+		
+		while (entities.hasNext()) {
+			accumulator.apply(entities.next());
+		}
+		
+		return accumulator.finish();
+	}
+	
+	/**
+	 * Creates a new {@code Accumulator} which folds the property values one by 
+	 * one into the partial aggregation state.
+	 * The {@code GetScalar} implementation can accumulate the values while 
+	 * streaming the pages from the datastore, and can combine the 
+	 * {@code Accumulator}s of the threads or the shards with 
+	 * {@link Accumulator#combine(Accumulator)}. The default 
+	 * {@code Accumulator} collects the values into a list and invokes 
+	 * {@link #aggregate(List)} on {@link Accumulator#finish()}; the 
+	 * aggregation which can keep the state in constant space (e.g. max, min 
+	 * and sum) overrides this method.
+	 * 
+	 * @return The new {@code Accumulator} of this aggregation.
+	 */
+	public Accumulator<T> accumulator() {
+		return new Collector();
+	}
+	
+	/**
+	 * Indicates whether the partial aggregation results can be combined by 
+	 * aggregating them again with {@link #aggregate(List)} (e.g. max, min and 
+	 * sum) or not. If this method returns <code>true</code>, the scalar 
+	 * results of the shards can be merged without their {@code Accumulator}s.
+	 * Returns <code>false</code> by default.
+	 * 
+	 * @return Whether the partial aggregation results can be combined or not.
+	 */
+	public boolean combinable() {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether this aggregation needs only the number of the 
+	 * qualified entities (e.g. count) or not. If this method returns 
+	 * <code>true</code>, the {@code GetScalar} implementation can run the 
+	 * keys-only (or count) query without loading the entity bodies, and pass 
+	 * the number of the entities as {@code Long} to {@link #aggregate(List)}.
+	 * Returns <code>false</code> by default.
+	 * <p>
+	 * The {@code GetScalar} implementation must check this method (or 
+	 * <code>null</code> of {@link #property()}) before reading the property 
+	 * values: the aggregation which returns <code>true</code> (e.g.
+	 * {@code Aggregations#count(Metamodel)}) may have no property, and 
+	 * invoking <code>property().get(entity)</code> on it throws 
+	 * {@code NullPointerException}. Alternatively, 
+	 * {@link #apply(List)} works for every aggregation.
+	 * </p>
+	 * 
+	 * @return Whether this aggregation needs only the number of the qualified 
+	 * entities or not.
+	 */
+	public boolean keysOnly() {
+		return false;
+	}
+	
+	/**
+	 * Returns the metamodel of the entities that this aggregation instance 
+	 * aggregates.
+	 * 
+	 * @return The metamodel of the entities that this aggregation instance 
+	 * aggregates.
+	 */
+	public Metamodel<?> metamodel() {
+		return metamodel;
+	}
+	
+	/**
+	 * Returns the property that this aggregation instance aggregates, or 
+	 * <code>null</code> if this aggregation aggregates the entities 
+	 * themselves (e.g. {@code Aggregations#count(Metamodel)}, which 
+	 * {@link #keysOnly()} returns <code>true</code>). The {@code GetScalar} 
+	 * implementation which collects <code>property().get(entity)</code> for 
+	 * {@link #aggregate(List)} must handle <code>null</code>; use 
+	 * {@link #metamodel()} to tell the entity type.
 	 * 
 	 * @return The property that this aggregation instance aggregates.
 	 */
@@ -68,4 +199,128 @@ public abstract class Aggregation<T> {
 		return property;
 	}
 	
+	/**
+	 * {@code Accumulator} is the partial aggregation state of 
+	 * {@code Aggregation}, created by {@link Aggregation#accumulator()}.
+	 * {@code Accumulator} is not thread-safe; accumulate the values with one 
+	 * {@code Accumulator} per thread and then combine them.
+	 * 
+	 * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+	 */
+	public static abstract class Accumulator<T> {
+
+		private final Property<?, T> property;
+		
+		/**
+		 * Constructs a new {@code Accumulator} for the specified property.
+		 * 
+		 * @param property The property to aggregate.
+		 */
+		protected Accumulator(Property<?, T> property) {
+			this.property = property;
+		}
+		
+		/**
+		 * Folds the specified property value into this {@code Accumulator}.
+		 * 
+		 * @param value The property value.
+		 */
+		public abstract void accumulate(T value);
+		
+		/**
+		 * Folds the property value of the specified entity into this 
+		 * {@code Accumulator}.
+		 * 
+		 * @param entity The entity which property value is aggregated.
+		 */
+		public void apply(Object entity) {
+			accumulate(property.get(entity));
+		}
+		
+		/**
+		 * Removes the specified property value, which has been folded into 
+		 * this {@code Accumulator}, from the partial aggregation state (e.g.
+		 * subtracts it from the sum). Returns <code>false</code> if the state 
+		 * cannot be kept without the other values (e.g. the current max is 
+		 * removed); then the caller must fold the remaining values into a new 
+		 * {@code Accumulator}. Returns <code>false</code> by default.
+		 * 
+		 * @param value The property value to be removed.
+		 * @return Whether the value has been removed or not.
+		 */
+		public boolean retract(T value) {
+			return false;
+		}
+		
+		/**
+		 * Indicates whether {@link #retract(Object)} always succeeds with the 
+		 * state of this {@code Accumulator} alone (e.g. sum, count and 
+		 * average) or not. If this method returns <code>true</code>, the 
+		 * caller need not to keep the folded values to recompute the result.
+		 * Returns <code>false</code> by default.
+		 * 
+		 * @return Whether this {@code Accumulator} is invertible or not.
+		 */
+		public boolean invertible() {
+			return false;
+		}
+		
+		/**
+		 * Merges the state of the specified {@code Accumulator} created by 
+		 * the same {@code Aggregation} into this {@code Accumulator}. The 
+		 * specified {@code Accumulator} must have accumulated the values 
+		 * following the ones of this {@code Accumulator}.
+		 * 
+		 * @param accumulator The {@code Accumulator} to be merged.
+		 */
+		public abstract void combine(Accumulator<T> accumulator);
+		
+		/**
+		 * Returns the aggregation result of the accumulated values.
+		 * 
+		 * @return The aggregation result as a scalar value.
+		 */
+		public abstract T finish();
+		
+		/**
+		 * Returns the property that this {@code Accumulator} aggregates.
+		 * 
+		 * @return The property that this {@code Accumulator} aggregates.
+		 */
+		public Property<?, T> property() {
+			return property;
+		}
+		
+	}
+	
+	private class Collector extends Accumulator<T> {
+
+		private final List<T> list = new ArrayList<T>();
+		
+		private Collector() {
+			super(property);
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			list.add(value);
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			return list.remove(value);
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			list.addAll(((Collector) accumulator).list);
+		}
+		
+		@Override
+		public T finish() {
+			return aggregate(list);
+		}
+		
+	}
+	
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2011 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import org.eiichiro.acidhouse.metamodel.Property;
+
+/**
+ * {@code AggregationSession} is the optional extension of {@code Session} 
+ * which provides the entry points for the multi-aggregation and grouped 
+ * aggregation Command Builder API. The {@code Session} implementation which supports it implements this 
+ * interface in addition to {@code Session}, so the existing {@code Session} 
+ * implementations are not affected:
+ * <pre>
+ * Session session = new AppEngineDatastoreSession();
+ * 
+ * if (session instanceof AggregationSession) {
+ * 	Map&lt;List&lt;Object&gt;, Integer&gt; sums = ((AggregationSession) session)
+ * 			.groupBy(Aggregations.sum(entity3$.i), entity3$.name)
+ * 			.filter(entity3$.i.lessThan(5))
+ * 			.execute();
+ * }
+ * </pre>
+ * On the {@code Session} which does not implement this interface, the 
+ * entities fetched with {@code GetList} can be aggregated in one pass with 
+ * {@link Executions#aggregate(java.util.List, Aggregation...)} and per group 
+ * with {@link Executions#group(Aggregation, java.util.List, Property...)}.
+ * 
+ * @see Session
+ * @see GetTuple
+ * @see GetGroups
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface AggregationSession extends Session {
+
+	/**
+	 * Returns {@code GetTuple} for the specified {@code Aggregation}s.
+	 * This method is the entry point for multi-aggregation Command Builder 
+	 * API; every {@code Aggregation} is computed in one pass over the 
+	 * qualified entities.
+	 * 
+	 * @param aggregations The {@code Aggregation}s this method executes.
+	 * @return {@code GetTuple} for the specified {@code Aggregation} 
+	 * instances.
+	 */
+	public <E> GetTuple<E> get(Aggregation<?>... aggregations);
+
+	/**
+	 * Returns {@code GetGroups} for the specified {@code Aggregation} grouped 
+	 * by the values of the specified properties.
+	 * This method is the entry point for grouped aggregation Command Builder 
+	 * API.
+	 * 
+	 * @param <R> The property value type to aggregate with this 
+	 * {@code GetGroups}.
+	 * @param aggregation The {@code Aggregation} this method executes per 
+	 * group.
+	 * @param properties The properties by which the entities are grouped.
+	 * @return {@code GetGroups} for the specified {@code Aggregation} 
+	 * instance.
+	 */
+	public <E, R> GetGroups<E, R> groupBy(Aggregation<R> aggregation, Property<?, ?>... properties);
+	
+}
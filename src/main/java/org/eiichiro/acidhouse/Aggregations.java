@@ -16,9 +16,21 @@
 package org.eiichiro.acidhouse;
 
 import java.lang.reflect.Type;
-import java.util.Iterator;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
+import org.eiichiro.acidhouse.Aggregation.Accumulator;
+import org.eiichiro.acidhouse.metamodel.Accessor;
+import org.eiichiro.acidhouse.metamodel.DoubleProperty;
+import org.eiichiro.acidhouse.metamodel.IntProperty;
+import org.eiichiro.acidhouse.metamodel.LongProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodel;
 import org.eiichiro.acidhouse.metamodel.Property;
 
 /**
@@ -44,6 +56,15 @@ import org.eiichiro.acidhouse.metamodel.Property;
  * 		.execute();
  * </pre>
  * 
+ * The aggregations of {@code IntProperty}, {@code LongProperty} and 
+ * {@code DoubleProperty} aggregate the property values without boxing in 
+ * {@link Aggregation#apply(List)}. Every aggregation provides the 
+ * {@link Aggregation#accumulator()} which keeps the partial result in 
+ * constant space, except {@link #countDistinct(Property)} which keeps the 
+ * distinct values (use {@link #approxCountDistinct(Property)} for the large 
+ * number of the entities), and folds the entities in one pass with 
+ * {@link Aggregation#apply(java.util.Iterator)}.
+ * 
  * <b>Better to static-import this class.</b>
  * 
  * @see Aggregation
@@ -62,7 +83,7 @@ public abstract class Aggregations {
 	 * @return Max aggregation implementation for the specified property.
 	 */
 	public static <T extends Comparable<T>> Aggregation<T> max(Property<?, T> property) {
-		return new Max<T>(property);
+		return primitive(new Max<T>(property), Function.MAX);
 	}
 	
 	private static class Max<T extends Comparable<T>> extends Aggregation<T> {
@@ -71,24 +92,19 @@ public abstract class Aggregations {
 			super(property);
 		}
 		
+		@Override
+		public boolean combinable() {
+			return true;
+		}
+		
 		@Override
 		public T aggregate(List<T> list) {
-			if (list.size() == 0) {
-				return null;
-			}
-			
-			Iterator<T> iterator = list.iterator();
-			T max = iterator.next();
-			
-			while (iterator.hasNext()) {
-				T next = iterator.next();
-				
-				if (next.compareTo(max) > 0) {
-					max = next;
-				}
-			}
+			return fold(accumulator(), list);
+		}
 			
-			return max;
+		@Override
+		public Accumulator<T> accumulator() {
+			return new Extremum<T>(property(), 1);
 		}
 		
 	}
@@ -102,7 +118,7 @@ public abstract class Aggregations {
 	 * @return Min aggregation implementation for the specified property.
 	 */
 	public static <T extends Comparable<T>> Aggregation<T> min(Property<?, T> property) {
-		return new Min<T>(property);
+		return primitive(new Min<T>(property), Function.MIN);
 	}
 	
 	private static class Min<T extends Comparable<T>> extends Aggregation<T> {
@@ -111,30 +127,33 @@ public abstract class Aggregations {
 			super(property);
 		}
 		
+		@Override
+		public boolean combinable() {
+			return true;
+		}
+		
 		@Override
 		public T aggregate(List<T> list) {
-			if (list.size() == 0) {
-				return null;
-			}
-			
-			Iterator<T> iterator = list.iterator();
-			T min = iterator.next();
-			
-			while (iterator.hasNext()) {
-				T next = iterator.next();
-				
-				if (next.compareTo(min) < 0) {
-					min = next;
-				}
-			}
+			return fold(accumulator(), list);
+		}
 			
-			return min;
+		@Override
+		public Accumulator<T> accumulator() {
+			return new Extremum<T>(property(), -1);
 		}
 		
 	}
 	
 	/**
 	 * Get the sum aggregation implementation for the specified property.
+	 * The summation is specialized for the property type on construction:
+	 * the integral values are summed in <code>long</code> and the overflow of 
+	 * the property type throws {@code ArithmeticException} instead of wrapping 
+	 * around, the floating-point values are summed with the compensated 
+	 * (Kahan-Babuska) summation, and {@code BigDecimal} and 
+	 * {@code BigInteger} values are summed exactly. Use 
+	 * {@link #sumAsLong(Property)} or {@link #sumAsDecimal(Property)} to 
+	 * widen the sum of the large values.
 	 * 
 	 * @param <T> The property value type that this sum aggregation aggregates.
 	 * @param property The metamodel property that this sum aggregation 
@@ -142,56 +161,1285 @@ public abstract class Aggregations {
 	 * @return Sum aggregation implementation for the specified property.
 	 */
 	public static <T extends Number & Comparable<T>> Aggregation<T> sum(Property<?, T> property) {
-		return new Sum<T>(property);
+		return new Sum<T>(property, property.type());
+	}
+	
+	/**
+	 * Get the sum aggregation implementation which sums the values of the 
+	 * specified integral property (<code>byte</code>, <code>short</code>, 
+	 * <code>int</code> or <code>long</code>) into <code>long</code>. The 
+	 * overflow of <code>long</code> throws {@code ArithmeticException}.
+	 * 
+	 * @param property The metamodel property that this sum aggregation 
+	 * aggregates.
+	 * @return Sum aggregation implementation which results in 
+	 * <code>long</code>.
+	 */
+	public static Aggregation<Long> sumAsLong(Property<?, ? extends Number> property) {
+		if (Sum.kind(property.type()) != Sum.INTEGRAL) {
+			throw new IllegalArgumentException("'property' must be integral [" + property.type() + "]");
+		}
+
+		return new Sum<Long>(property, Long.class);
+	}
+	
+	/**
+	 * Get the sum aggregation implementation which sums the values of the 
+	 * specified numeric property exactly into {@code BigDecimal}. The 
+	 * <code>float</code> and <code>double</code> values are converted with 
+	 * their canonical decimal representation (e.g. <code>0.1</code> is summed 
+	 * as exactly one tenth), so that this aggregation suits the monetary 
+	 * values.
+	 * 
+	 * @param property The metamodel property that this sum aggregation 
+	 * aggregates.
+	 * @return Sum aggregation implementation which results in 
+	 * {@code BigDecimal}.
+	 */
+	public static Aggregation<BigDecimal> sumAsDecimal(Property<?, ? extends Number> property) {
+		Sum.kind(property.type());
+		return new Sum<BigDecimal>(property, BigDecimal.class);
 	}
 	
-	private static class Sum<T extends Number & Comparable<T>> extends Aggregation<T> {
+	/**
+	 * The sum of the non-null values, which specialization is chosen from the 
+	 * property type and the result type on construction. The values passed 
+	 * to {@link #aggregate(List)} may be of the property type or the result 
+	 * type (the partial sums).
+	 */
+	private static class Sum<T> extends Aggregation<T> {
 
-		private final Type type;
+		private static final int INTEGRAL = 0;
 		
-		public Sum(Property<?, T> property) {
-			super(property);
-			type = property.type();
-		}
+		private static final int REAL = 1;
+		
+		private static final int DECIMAL = 2;
+		
+		private final Type result;
+		
+		private final int kind;
 		
 		@SuppressWarnings("unchecked")
+		public Sum(Property<?, ?> property, Type result) {
+			super((Property<?, T>) property);
+			this.result = result;
+			kind = kind(result);
+		}
+		
+		@Override
+		public boolean combinable() {
+			return true;
+		}
+		
 		@Override
 		public T aggregate(List<T> list) {
-			int i = 0;
-			long l = 0;
-			double d = 0;
-			short s = 0;
-			float f = 0;
-			
-			for (T number : list) {
-				if (type.equals(Integer.class)) {
-					i += number.intValue();
-				} else if (type.equals(Long.class)) {
-					l += number.longValue();
-				} else if (type.equals(Double.class)) {
-					d += number.doubleValue();
-				} else if (type.equals(Short.class)) {
-					s += number.shortValue();
-				} else {
-					f += number.floatValue();
-				}
+			return fold(accumulator(), list);
+		}
+		
+		@Override
+		public Accumulator<T> accumulator() {
+			if (kind == INTEGRAL) {
+				return new IntegralSum<T>(property(), result);
+			} else if (kind == REAL) {
+				return new RealSum<T>(property(), result);
+			} else {
+				return new DecimalSum<T>(property(), result);
+			}
+		}
+		
+		private static int kind(Type type) {
+			if (type.equals(Integer.class) || type.equals(Long.class)
+					|| type.equals(Short.class) || type.equals(Byte.class)) {
+				return INTEGRAL;
+			} else if (type.equals(Double.class) || type.equals(Float.class)) {
+				return REAL;
+			} else if (type.equals(BigDecimal.class) || type.equals(BigInteger.class)) {
+				return DECIMAL;
 			}
 			
-			Object object;
+			throw new IllegalArgumentException("'property' must be numeric [" + type + "]");
+		}
+		
+	}
+	
+	/**
+	 * Get the count aggregation implementation for the entities of the 
+	 * specified metamodel. The count aggregation is {@link Aggregation#keysOnly()}, 
+	 * so that the {@code GetScalar} implementation can count the qualified 
+	 * entities without loading the entity bodies where the datastore 
+	 * supports it. The values passed to {@link Aggregation#aggregate(List)} 
+	 * are the partial counts. {@link Aggregation#property()} of the count 
+	 * aggregation returns <code>null</code>.
+	 * 
+	 * @param metamodel The metamodel of the entities that this count 
+	 * aggregation counts.
+	 * @return Count aggregation implementation for the specified metamodel.
+	 */
+	public static Aggregation<Long> count(Metamodel<?> metamodel) {
+		return new Count(metamodel);
+	}
+	
+	private static class Count extends Aggregation<Long> {
+
+		public Count(Metamodel<?> metamodel) {
+			super(metamodel);
+		}
+		
+		@Override
+		public boolean keysOnly() {
+			return true;
+		}
+		
+		@Override
+		public boolean combinable() {
+			return true;
+		}
+		
+		@Override
+		public Long aggregate(List<Long> list) {
+			return fold(accumulator(), list);
+		}
+		
+		@Override
+		public Accumulator<Long> accumulator() {
+			return new Counter();
+		}
+		
+	}
+	
+	/**
+	 * Get the average aggregation implementation for the specified numeric 
+	 * property. The average of the non-null values is calculated from the 
+	 * compensated sum and the count in <code>double</code>, and is 
+	 * <code>null</code> if there is no value. {@code IntProperty}, 
+	 * {@code LongProperty} and {@code DoubleProperty} are read without 
+	 * boxing.
+	 * 
+	 * @param property The metamodel property that this average aggregation 
+	 * aggregates.
+	 * @return Average aggregation implementation for the specified property.
+	 */
+	public static Aggregation<Double> avg(Property<?, ? extends Number> property) {
+		return new Avg<Double>(property);
+	}
+	
+	/**
+	 * The average of the non-null values. The values passed to 
+	 * {@link #aggregate(List)} are of the property type.
+	 */
+	private static class Avg<T> extends Aggregation<T> {
+
+		@SuppressWarnings("unchecked")
+		public Avg(Property<?, ?> property) {
+			super((Property<?, T>) property);
+		}
+		
+		@Override
+		public T aggregate(List<T> list) {
+			return fold(accumulator(), list);
+		}
+		
+		@Override
+		public Accumulator<T> accumulator() {
+			return new Mean<T>(property());
+		}
+		
+	}
+	
+	/**
+	 * Get the distinct count aggregation implementation for the specified 
+	 * property. The non-null distinct values are counted by 
+	 * {@link Object#equals(Object)}; the distinct values are kept on the heap 
+	 * while aggregating.
+	 * 
+	 * @param property The metamodel property that this distinct count 
+	 * aggregation aggregates.
+	 * @return Distinct count aggregation implementation for the specified 
+	 * property.
+	 */
+	public static Aggregation<Long> countDistinct(Property<?, ?> property) {
+		return new CountDistinct<Long>(property);
+	}
+	
+	/**
+	 * The number of the non-null distinct values. The values passed to 
+	 * {@link #aggregate(List)} are of the property type.
+	 */
+	private static class CountDistinct<T> extends Aggregation<T> {
+
+		@SuppressWarnings("unchecked")
+		public CountDistinct(Property<?, ?> property) {
+			super((Property<?, T>) property);
+		}
+		
+		@Override
+		public T aggregate(List<T> list) {
+			return fold(accumulator(), list);
+		}
+		
+		@Override
+		public Accumulator<T> accumulator() {
+			return new Distinct<T>(property());
+		}
+		
+	}
+	
+	/**
+	 * Get the approximate distinct count aggregation implementation for the 
+	 * specified property with the HyperLogLog sketch of 2<sup>14</sup>
+	 * registers (16KB), which standard error is about 0.8%.
+	 * 
+	 * @param property The metamodel property that this distinct count 
+	 * aggregation aggregates.
+	 * @return Approximate distinct count aggregation implementation for the 
+	 * specified property.
+	 * @see #approxCountDistinct(Property, int)
+	 */
+	public static Aggregation<Long> approxCountDistinct(Property<?, ?> property) {
+		return approxCountDistinct(property, 14);
+	}
+	
+	/**
+	 * Get the approximate distinct count aggregation implementation for the 
+	 * specified property with the HyperLogLog sketch of 
+	 * 2<sup><code>precision</code></sup> registers. The standard error is 
+	 * about 1.04 / &radic;(2<sup><code>precision</code></sup>), and the memory 
+	 * is bounded by the number of the registers whatever the number of the 
+	 * values is. The sketches of the partitions are merged with 
+	 * {@link Accumulator#combine(Accumulator)} without the loss of accuracy.
+	 * 
+	 * @param property The metamodel property that this distinct count 
+	 * aggregation aggregates.
+	 * @param precision The number of the index bits (4 to 18).
+	 * @return Approximate distinct count aggregation implementation for the 
+	 * specified property.
+	 */
+	public static Aggregation<Long> approxCountDistinct(Property<?, ?> property, int precision) {
+		if (precision < 4 || precision > 18) {
+			throw new IllegalArgumentException("'precision' must be 4 to 18 [" + precision + "]");
+		}
+		
+		return new ApproxCountDistinct<Long>(property, precision);
+	}
+	
+	/**
+	 * The approximate number of the non-null distinct values. The values 
+	 * passed to {@link #aggregate(List)} are of the property type.
+	 */
+	private static class ApproxCountDistinct<T> extends Aggregation<T> {
+
+		private final int precision;
+		
+		@SuppressWarnings("unchecked")
+		public ApproxCountDistinct(Property<?, ?> property, int precision) {
+			super((Property<?, T>) property);
+			this.precision = precision;
+		}
+		
+		@Override
+		public T aggregate(List<T> list) {
+			return fold(accumulator(), list);
+		}
+		
+		@Override
+		public Accumulator<T> accumulator() {
+			return new HyperLogLog<T>(property(), precision);
+		}
+		
+	}
+	
+	/**
+	 * Get the approximate percentile aggregation implementation for the 
+	 * specified numeric property with the KLL quantile sketch of the accuracy 
+	 * parameter 200, which rank error is about 1.65%.
+	 * 
+	 * @param property The metamodel property that this percentile aggregation 
+	 * aggregates.
+	 * @param percentile The percentile (0 to 100; e.g. 95 for p95).
+	 * @return Approximate percentile aggregation implementation for the 
+	 * specified property.
+	 * @see #approxPercentile(Property, double, int)
+	 */
+	public static Aggregation<Double> approxPercentile(Property<?, ? extends Number> property,
+			double percentile) {
+		return approxPercentile(property, percentile, 200);
+	}
+	
+	/**
+	 * Get the approximate percentile aggregation implementation for the 
+	 * specified numeric property with the KLL quantile sketch of the specified 
+	 * accuracy parameter <code>k</code>. The sketch keeps about 
+	 * 3<code>k</code> values whatever the number of the values is, and the 
+	 * rank error decreases in proportion to 1 / <code>k</code>; the 0th and 
+	 * 100th percentiles are exact. The sketches 
+	 * of the partitions are merged with 
+	 * {@link Accumulator#combine(Accumulator)}. The result is one of the 
+	 * non-null values, or <code>null</code> if there is no value.
+	 * 
+	 * @param property The metamodel property that this percentile aggregation 
+	 * aggregates.
+	 * @param percentile The percentile (0 to 100; e.g. 95 for p95).
+	 * @param k The accuracy parameter of the sketch (8 or more).
+	 * @return Approximate percentile aggregation implementation for the 
+	 * specified property.
+	 */
+	public static Aggregation<Double> approxPercentile(Property<?, ? extends Number> property,
+			double percentile, int k) {
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("'percentile' must be 0 to 100 [" + percentile + "]");
+		}
+		
+		if (k < 8) {
+			throw new IllegalArgumentException("'k' must be 8 or more [" + k + "]");
+		}
+		
+		return new ApproxPercentile<Double>(property, percentile / 100, k);
+	}
+	
+	/**
+	 * The approximate quantile of the non-null values. The values passed to 
+	 * {@link #aggregate(List)} are of the property type.
+	 */
+	private static class ApproxPercentile<T> extends Aggregation<T> {
+
+		private final double quantile;
+		
+		private final int k;
+		
+		@SuppressWarnings("unchecked")
+		public ApproxPercentile(Property<?, ?> property, double quantile, int k) {
+			super((Property<?, T>) property);
+			this.quantile = quantile;
+			this.k = k;
+		}
+		
+		@Override
+		public T aggregate(List<T> list) {
+			return fold(accumulator(), list);
+		}
+		
+		@Override
+		public Accumulator<T> accumulator() {
+			return new Quantiles<T>(property(), quantile, k);
+		}
+		
+	}
+	
+	private static <T> T fold(Accumulator<T> accumulator, List<T> list) {
+		for (T value : list) {
+			accumulator.accumulate(value);
+		}
+		
+		return accumulator.finish();
+	}
+	
+	private static <T> Aggregation<T> primitive(Aggregation<T> aggregation, Function function) {
+		Property<?, T> property = aggregation.property();
+		
+		if (property instanceof IntProperty<?> || property instanceof LongProperty<?>
+				|| property instanceof DoubleProperty<?>) {
+			return new Primitive<T>(aggregation, function);
+		}
+		
+		return aggregation;
+	}
+	
+	private static enum Function {
+
+		MAX, MIN
+		
+	}
+	
+	private static class Primitive<T> extends Aggregation<T> {
+
+		private final Aggregation<T> aggregation;
+		
+		private final Function function;
+		
+		public Primitive(Aggregation<T> aggregation, Function function) {
+			super(aggregation.property());
+			this.aggregation = aggregation;
+			this.function = function;
+		}
+		
+		@Override
+		public T aggregate(List<T> list) {
+			return aggregation.aggregate(list);
+		}
+		
+		@Override
+		public boolean combinable() {
+			return aggregation.combinable();
+		}
+		
+		@Override
+		public Accumulator<T> accumulator() {
+			return new Scalar<T>(property(), function);
+		}
+		
+	}
+	
+	/** The max (sign 1) or min (sign -1) of the non-null values. */
+	private static class Extremum<T extends Comparable<T>> extends Accumulator<T> {
+
+		private final int sign;
+		
+		private T result;
+		
+		public Extremum(Property<?, T> property, int sign) {
+			super(property);
+			this.sign = sign;
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			// compareTo may return Integer.MIN_VALUE, whose negation overflows.
+			if (value != null && (result == null || Integer.signum(value.compareTo(result)) * sign > 0)) {
+				result = value;
+			}
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			return value == null || (result != null && Integer.signum(value.compareTo(result)) * sign < 0);
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			accumulate(((Extremum<T>) accumulator).result);
+		}
+		
+		@Override
+		public T finish() {
+			return result;
+		}
+		
+	}
+	
+	/**
+	 * The integral sum in <code>long</code>, which throws 
+	 * {@code ArithmeticException} on the overflow of <code>long</code> or the 
+	 * result type. {@code IntProperty} and {@code LongProperty} are read 
+	 * without boxing.
+	 */
+	private static class IntegralSum<T> extends Accumulator<T> {
+
+		private final Type result;
+		
+		private final Accessor accessor;
+		
+		private long sum;
+		
+		public IntegralSum(Property<?, T> property, Type result) {
+			super(property);
+			this.result = result;
+			accessor = (property instanceof IntProperty<?> || property instanceof LongProperty<?>)
+					? property.accessor() : null;
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				add(((Number) value).longValue());
+			}
+		}
 			
-			if (type.equals(Integer.class)) {
-				object = Integer.valueOf(i);
-			} else if (type.equals(Long.class)) {
-				object = Long.valueOf(l);
-			} else if (type.equals(Double.class)) {
-				object = Double.valueOf(d);
-			} else if (type.equals(Short.class)) {
-				object = Short.valueOf(s);
+		@Override
+		public void apply(Object entity) {
+			if (accessor == null) {
+				super.apply(entity);
 			} else {
-				object = Float.valueOf(f);
+				add(accessor.getLong(entity));
 			}
-			
-			return (T) object;
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			if (value != null) {
+				subtract(((Number) value).longValue());
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public boolean invertible() {
+			return true;
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			add(((IntegralSum<T>) accumulator).sum);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			Object object;
+			
+			if (result.equals(Long.class)) {
+				object = Long.valueOf(sum);
+			} else if (result.equals(Integer.class) && sum == (int) sum) {
+				object = Integer.valueOf((int) sum);
+			} else if (result.equals(Short.class) && sum == (short) sum) {
+				object = Short.valueOf((short) sum);
+			} else if (result.equals(Byte.class) && sum == (byte) sum) {
+				object = Byte.valueOf((byte) sum);
+			} else {
+				throw new ArithmeticException("Sum [" + sum + "] overflows ["
+						+ ((Class<?>) result).getName() + "]");
+			}
+			
+			return (T) object;
+		}
+			
+		private void add(long value) {
+			long sum = this.sum + value;
+			
+			// Overflows if both operands have the opposite sign to the result.
+			if (((this.sum ^ sum) & (value ^ sum)) < 0) {
+				throw new ArithmeticException("Sum overflows [long]");
+			}
+			
+			this.sum = sum;
+		}
+		
+		private void subtract(long value) {
+			long sum = this.sum - value;
+			
+			// Overflows if the operands have the different signs and the result
+			// has the different sign from the minuend.
+			if (((this.sum ^ value) & (this.sum ^ sum)) < 0) {
+				throw new ArithmeticException("Sum overflows [long]");
+			}
+			
+			this.sum = sum;
+		}
+		
+	}
+				
+	/**
+	 * The floating-point sum with the compensated summation (Kahan-Babuska), 
+	 * which keeps the lost low-order bits in the compensation.
+	 * {@code DoubleProperty} is read without boxing.
+	 */
+	private static class RealSum<T> extends Accumulator<T> {
+
+		private final Type result;
+		
+		private final Accessor accessor;
+		
+		private double sum;
+		
+		private double compensation;
+		
+		public RealSum(Property<?, T> property, Type result) {
+			super(property);
+			this.result = result;
+			accessor = (property instanceof DoubleProperty<?>) ? property.accessor() : null;
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				add(((Number) value).doubleValue());
+			}
+		}
+		
+		@Override
+		public void apply(Object entity) {
+			if (accessor == null) {
+				super.apply(entity);
+			} else {
+				add(accessor.getDouble(entity));
+			}
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			if (value != null) {
+				add(-((Number) value).doubleValue());
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public boolean invertible() {
+			return true;
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			RealSum<T> real = (RealSum<T>) accumulator;
+			add(real.sum);
+			compensation += real.compensation;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			double sum = this.sum + compensation;
+			
+			if (result.equals(Float.class)) {
+				return (T) Float.valueOf((float) sum);
+			}
+			
+			return (T) Double.valueOf(sum);
+		}
+		
+		private void add(double value) {
+			double sum = this.sum + value;
+			
+			if (Math.abs(this.sum) >= Math.abs(value)) {
+				compensation += (this.sum - sum) + value;
+			} else {
+				compensation += (value - sum) + this.sum;
+			}
+			
+			this.sum = sum;
+		}
+		
+	}
+	
+	/** The exact sum in {@code BigDecimal}. */
+	private static class DecimalSum<T> extends Accumulator<T> {
+
+		private final Type result;
+		
+		private BigDecimal sum = BigDecimal.ZERO;
+		
+		public DecimalSum(Property<?, T> property, Type result) {
+			super(property);
+			this.result = result;
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				sum = sum.add(decimal(value));
+			}
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			if (value != null) {
+				sum = sum.subtract(decimal(value));
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public boolean invertible() {
+			return true;
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			sum = sum.add(((DecimalSum<T>) accumulator).sum);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			return (T) (result.equals(BigInteger.class) ? sum.toBigInteger() : sum);
+		}
+		
+		private static BigDecimal decimal(Object value) {
+			if (value instanceof BigDecimal) {
+				return (BigDecimal) value;
+			} else if (value instanceof BigInteger) {
+				return new BigDecimal((BigInteger) value);
+			} else if (value instanceof Double) {
+				return BigDecimal.valueOf((Double) value);
+			} else if (value instanceof Float) {
+				return new BigDecimal(value.toString());
+			}
+			
+			return BigDecimal.valueOf(((Number) value).longValue());
+		}
+		
+	}
+	
+	/** The number of the entities, or the sum of the partial counts. */
+	private static class Counter extends Accumulator<Long> {
+
+		private long count;
+		
+		public Counter() {
+			super(null);
+		}
+		
+		@Override
+		public void accumulate(Long value) {
+			if (value != null) {
+				count += value;
+			}
+		}
+		
+		@Override
+		public void apply(Object entity) {
+			count++;
+		}
+		
+		@Override
+		public boolean retract(Long value) {
+			if (value != null) {
+				count -= value;
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public boolean invertible() {
+			return true;
+		}
+		
+		@Override
+		public void combine(Accumulator<Long> accumulator) {
+			count += ((Counter) accumulator).count;
+		}
+		
+		@Override
+		public Long finish() {
+			return count;
+		}
+		
+	}
+	
+	/**
+	 * The compensated sum and the count of the non-null values, which results 
+	 * in their average as {@code Double}.
+	 */
+	private static class Mean<T> extends Accumulator<T> {
+
+		private final Accessor accessor;
+		
+		private final RealSum<T> sum = new RealSum<T>(null, Double.class);
+		
+		private long count;
+		
+		public Mean(Property<?, T> property) {
+			super(property);
+			accessor = (property instanceof IntProperty<?> || property instanceof LongProperty<?>
+					|| property instanceof DoubleProperty<?>) ? property.accessor() : null;
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				sum.accumulate(value);
+				count++;
+			}
+		}
+		
+		@Override
+		public void apply(Object entity) {
+			if (accessor == null) {
+				super.apply(entity);
+			} else {
+				sum.add(accessor.getDouble(entity));
+				count++;
+			}
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			if (value != null) {
+				sum.retract(value);
+				count--;
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public boolean invertible() {
+			return true;
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			Mean<T> mean = (Mean<T>) accumulator;
+			sum.combine(mean.sum);
+			count += mean.count;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			return (count == 0) ? null
+					: (T) Double.valueOf(((Number) sum.finish()).doubleValue() / count);
+		}
+		
+	}
+	
+	/** The non-null distinct values, which results in their number as {@code Long}. */
+	private static class Distinct<T> extends Accumulator<T> {
+
+		private final Set<Object> values = new HashSet<Object>();
+		
+		public Distinct(Property<?, T> property) {
+			super(property);
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				values.add(value);
+			}
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			// The other entities may have the same value.
+			return value == null;
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			values.addAll(((Distinct<T>) accumulator).values);
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			return (T) Long.valueOf(values.size());
+		}
+		
+	}
+	
+	/**
+	 * The HyperLogLog sketch, which keeps the max rank (the position of the 
+	 * leftmost 1-bit) of the 64-bit hashes per register indexed by the 
+	 * leading bits of the hash, and results in the approximate number of the 
+	 * distinct values as {@code Long}. {@code IntProperty}, 
+	 * {@code LongProperty} and {@code DoubleProperty} are read without boxing.
+	 */
+	private static class HyperLogLog<T> extends Accumulator<T> {
+
+		private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+		
+		private final int precision;
+		
+		private final byte[] registers;
+		
+		private final Accessor accessor;
+		
+		private final boolean real;
+		
+		public HyperLogLog(Property<?, T> property, int precision) {
+			super(property);
+			this.precision = precision;
+			registers = new byte[1 << precision];
+			accessor = (property instanceof IntProperty<?> || property instanceof LongProperty<?>
+					|| property instanceof DoubleProperty<?>) ? property.accessor() : null;
+			real = (property instanceof DoubleProperty<?>);
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				add(hash(value));
+			}
+		}
+		
+		@Override
+		public void apply(Object entity) {
+			if (accessor == null) {
+				super.apply(entity);
+			} else if (real) {
+				add(mix(Double.doubleToLongBits(accessor.getDouble(entity))));
+			} else {
+				add(mix(accessor.getLong(entity)));
+			}
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			byte[] registers = ((HyperLogLog<T>) accumulator).registers;
+			
+			for (int i = 0; i < registers.length; i++) {
+				if (registers[i] > this.registers[i]) {
+					this.registers[i] = registers[i];
+				}
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			int m = registers.length;
+			double sum = 0;
+			int zeros = 0;
+			
+			for (byte register : registers) {
+				sum += 1.0 / (1L << register);
+				
+				if (register == 0) {
+					zeros++;
+				}
+			}
+			
+			double alpha = (m == 16) ? 0.673 : ((m == 32) ? 0.697
+					: ((m == 64) ? 0.709 : 0.7213 / (1 + 1.079 / m)));
+			double estimate = alpha * m * m / sum;
+			
+			// Linear counting for the small cardinality.
+			if (estimate <= 2.5 * m && zeros > 0) {
+				estimate = m * Math.log((double) m / zeros);
+			}
+			
+			return (T) Long.valueOf(Math.round(estimate));
+		}
+		
+		private void add(long hash) {
+			int index = (int) (hash >>> (64 - precision));
+			int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+			
+			if (rank > registers[index]) {
+				registers[index] = (byte) rank;
+			}
+		}
+		
+		private static long hash(Object value) {
+			if (value instanceof Double || value instanceof Float) {
+				return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+			} else if (value instanceof Number && !(value instanceof BigDecimal)
+					&& !(value instanceof BigInteger)) {
+				return mix(((Number) value).longValue());
+			} else if (value instanceof String) {
+				String string = (String) value;
+				long hash = 1125899906842597L;
+				
+				for (int i = 0; i < string.length(); i++) {
+					hash = 31 * hash + string.charAt(i);
+				}
+				
+				return mix(hash);
+			}
+			
+			return mix(value.hashCode());
+		}
+		
+		/**
+		 * The 64-bit finalizer of MurmurHash3, seeded with the golden ratio 
+		 * so that 0 (which the finalizer maps to itself) is not hashed to 0.
+		 */
+		private static long mix(long value) {
+			value += GOLDEN;
+			value ^= value >>> 33;
+			value *= 0xff51afd7ed558ccdL;
+			value ^= value >>> 33;
+			value *= 0xc4ceb9fe1a85ec53L;
+			value ^= value >>> 33;
+			return value;
+		}
+		
+	}
+	
+	/**
+	 * The KLL quantile sketch; the stack of the compactors, each of which 
+	 * sorts its values when it is full and promotes every other value to the 
+	 * next level with the doubled weight. The capacity of the level decreases 
+	 * geometrically by 2/3 from the top level of <code>k</code>. Results in 
+	 * the approximate quantile as {@code Double}. {@code IntProperty}, 
+	 * {@code LongProperty} and {@code DoubleProperty} are read without boxing.
+	 */
+	private static class Quantiles<T> extends Accumulator<T> {
+
+		private final double quantile;
+		
+		private final int k;
+		
+		private final Accessor accessor;
+		
+		private final List<double[]> levels = new ArrayList<double[]>();
+		
+		private int[] sizes = new int[0];
+		
+		private int size;
+		
+		private double min = Double.POSITIVE_INFINITY;
+		
+		private double max = Double.NEGATIVE_INFINITY;
+		
+		private final Random random = new Random(0);
+		
+		public Quantiles(Property<?, T> property, double quantile, int k) {
+			super(property);
+			this.quantile = quantile;
+			this.k = k;
+			accessor = (property instanceof IntProperty<?> || property instanceof LongProperty<?>
+					|| property instanceof DoubleProperty<?>) ? property.accessor() : null;
+			grow();
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value != null) {
+				add(((Number) value).doubleValue());
+			}
+		}
+		
+		@Override
+		public void apply(Object entity) {
+			if (accessor == null) {
+				super.apply(entity);
+			} else {
+				add(accessor.getDouble(entity));
+			}
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			Quantiles<T> quantiles = (Quantiles<T>) accumulator;
+			
+			while (levels.size() < quantiles.levels.size()) {
+				grow();
+			}
+			
+			for (int h = 0; h < quantiles.levels.size(); h++) {
+				for (int i = 0; i < quantiles.sizes[h]; i++) {
+					push(h, quantiles.levels.get(h)[i]);
+				}
+			}
+			
+			min = Math.min(min, quantiles.min);
+			max = Math.max(max, quantiles.max);
+			compress();
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			if (size == 0) {
+				return null;
+			} else if (quantile == 0) {
+				return (T) Double.valueOf(min);
+			} else if (quantile == 1) {
+				return (T) Double.valueOf(max);
+			}
+			
+			double[] values = new double[size];
+			long[] weights = new long[size];
+			int n = 0;
+			long total = 0;
+			// Every value of the same level has the same weight; merges the
+			// sorted levels to assign the weights in the order of the values.
+			double[][] sorted = new double[levels.size()][];
+			int[] positions = new int[levels.size()];
+			
+			for (int h = 0; h < levels.size(); h++) {
+				sorted[h] = Arrays.copyOf(levels.get(h), sizes[h]);
+				Arrays.sort(sorted[h]);
+			}
+			
+			while (n < size) {
+				int level = -1;
+				
+				for (int h = 0; h < sorted.length; h++) {
+					if (positions[h] < sorted[h].length
+							&& (level < 0 || sorted[h][positions[h]] < sorted[level][positions[level]])) {
+						level = h;
+					}
+				}
+				
+				values[n] = sorted[level][positions[level]++];
+				weights[n++] = 1L << level;
+				total += 1L << level;
+			}
+			
+			double rank = quantile * total;
+			long cumulative = 0;
+			
+			for (int i = 0; i < size; i++) {
+				cumulative += weights[i];
+				
+				if (cumulative >= rank) {
+					return (T) Double.valueOf(values[i]);
+				}
+			}
+			
+			return (T) Double.valueOf(values[size - 1]);
+		}
+		
+		private void add(double value) {
+			push(0, value);
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			
+			if (size > capacity()) {
+				compress();
+			}
+		}
+		
+		private void push(int h, double value) {
+			double[] level = levels.get(h);
+			
+			if (sizes[h] == level.length) {
+				level = Arrays.copyOf(level, level.length * 2);
+				levels.set(h, level);
+			}
+			
+			level[sizes[h]++] = value;
+			size++;
+		}
+		
+		private void compress() {
+			while (size > capacity()) {
+				for (int h = 0; h < levels.size(); h++) {
+					if (sizes[h] >= capacity(h)) {
+						if (h + 1 == levels.size()) {
+							grow();
+						}
+						
+						double[] level = levels.get(h);
+						Arrays.sort(level, 0, sizes[h]);
+						// Keeps the smallest value on this level if the number
+						// of the values is odd.
+						int start = sizes[h] % 2;
+						
+						for (int i = start + random.nextInt(2); i < sizes[h]; i += 2) {
+							push(h + 1, level[i]);
+						}
+						
+						size -= sizes[h] - start;
+						sizes[h] = start;
+						break;
+					}
+				}
+			}
+		}
+		
+		private void grow() {
+			levels.add(new double[8]);
+			sizes = Arrays.copyOf(sizes, levels.size());
+		}
+		
+		private int capacity() {
+			int capacity = 0;
+			
+			for (int h = 0; h < levels.size(); h++) {
+				capacity += capacity(h);
+			}
+			
+			return capacity;
+		}
+		
+		private int capacity(int h) {
+			return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3, levels.size() - 1 - h)));
+		}
+		
+	}
+	
+	/**
+	 * The max or min of {@code IntProperty}, {@code LongProperty} or 
+	 * {@code DoubleProperty}, which reads the entity's property value without 
+	 * boxing.
+	 */
+	private static class Scalar<T> extends Accumulator<T> {
+					
+		private final Function function;
+				
+		private final Accessor accessor;
+		
+		private final boolean real;
+		
+		private boolean empty = true;
+		
+		private long l;
+		
+		private double d;
+		
+		public Scalar(Property<?, T> property, Function function) {
+			super(property);
+			this.function = function;
+			accessor = property.accessor();
+			real = (property instanceof DoubleProperty<?>);
+		}
+		
+		@Override
+		public void accumulate(T value) {
+			if (value == null) {
+				return;
+			} else if (real) {
+				add(((Number) value).doubleValue());
+			} else {
+				add(((Number) value).longValue());
+			}
+		}
+		
+		@Override
+		public void apply(Object entity) {
+			if (real) {
+				add(accessor.getDouble(entity));
+			} else {
+				add(accessor.getLong(entity));
+			}
+		}
+		
+		@Override
+		public boolean retract(T value) {
+			if (value == null) {
+				return true;
+			} else if (empty) {
+				return false;
+			}
+			
+			if (real) {
+				int compare = Double.compare(((Number) value).doubleValue(), d);
+				return (function == Function.MAX) ? compare < 0 : compare > 0;
+			}
+			
+			long integral = ((Number) value).longValue();
+			return (function == Function.MAX) ? integral < l : integral > l;
+		}
+		
+		@Override
+		public void combine(Accumulator<T> accumulator) {
+			Scalar<T> scalar = (Scalar<T>) accumulator;
+			
+			if (scalar.empty) {
+				return;
+			} else if (real) {
+				add(scalar.d);
+			} else {
+				add(scalar.l);
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public T finish() {
+			if (empty) {
+				return null;
+			} else if (real) {
+				return (T) Double.valueOf(d);
+			} else if (property() instanceof IntProperty<?>) {
+				return (T) Integer.valueOf((int) l);
+			}
+			
+			return (T) Long.valueOf(l);
+		}
+			
+		private void add(long value) {
+			if (empty || ((function == Function.MAX) ? value > l : value < l)) {
+				l = value;
+			}
+			
+			empty = false;
+		}
+		
+		private void add(double value) {
+			if (empty || ((function == Function.MAX)
+					? Double.compare(value, d) > 0 : Double.compare(value, d) < 0)) {
+				d = value;
+			}
+			
+			empty = false;
 		}
 		
 	}
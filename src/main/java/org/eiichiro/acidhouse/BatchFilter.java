@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * {@code BatchFilter} is a {@code Filter} which can evaluate the fetched page 
+ * of entities in a batch.
+ * {@link Filters#matches(Filter, List, BitSet)} invokes 
+ * {@link #matches(List, BitSet)} if the {@code Filter} implements this 
+ * interface, and falls back to {@link Filter#matches(Object)} per entity 
+ * otherwise; so the {@code Filter} implementation need not to implement 
+ * this interface.
+ * 
+ * @see Filters
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface BatchFilter<T> extends Filter<T> {
+
+	/**
+	 * Evaluates the specified entities in a batch. Only the entities which bit 
+	 * is set in the specified selection are evaluated, and the bit of the 
+	 * entity which does not match to this {@code Filter} is cleared; so that 
+	 * the selection after the invocations of several {@code Filter}s tells 
+	 * the entities which match to all of them. The implementation extracts 
+	 * the property values of the batch once and compares them in a tight 
+	 * loop. The bits beyond the size of the specified entities are ignored.
+	 * 
+	 * @param entities The entities to be filtered. {@code RandomAccess} list 
+	 * is expected.
+	 * @param selection The bits of the entities to be evaluated.
+	 */
+	public void matches(List<?> entities, BitSet selection);
+	
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eiichiro.acidhouse.ComparableFilter.Operator;
+import org.eiichiro.acidhouse.metamodel.Property;
+
+/**
+ * {@code Capabilities} has some factory methods to compose {@code Capability} 
+ * instances.
+ * For example, the backend which can evaluate the equality, range and IN 
+ * filters and can sort on 'i' and 'name' properties only declares its 
+ * capability like this:
+ * <pre>
+ * Capability capability = Capabilities.on(Capabilities.or(
+ * 		Capabilities.operators(EQUAL_TO, GREATER_THAN, GREATER_THAN_OR_EQUAL_TO,
+ * 			LESS_THAN, LESS_THAN_OR_EQUAL_TO),
+ * 		Capabilities.in(),
+ * 		Capabilities.sort()), entity3_.i, entity3_.name);
+ * </pre>
+ * 
+ * <b>Better to static-import this class.</b>
+ * 
+ * @see Capability
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public abstract class Capabilities {
+
+	private Capabilities() {}
+	
+	/**
+	 * Returns the {@code Capability} which supports every {@code Filter} and 
+	 * {@code Order}.
+	 * 
+	 * @return The {@code Capability} which supports everything.
+	 */
+	public static Capability all() {
+		return new Capability() {
+
+			@Override
+			public boolean supports(Filter<?> filter) {
+				return true;
+			}
+			
+			@Override
+			public boolean supports(Order<?, ?> order) {
+				return true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns the {@code Capability} which supports no {@code Filter} and no 
+	 * {@code Order}; every {@code Filter} and {@code Order} is evaluated 
+	 * in-memory.
+	 * 
+	 * @return The {@code Capability} which supports nothing.
+	 */
+	public static Capability none() {
+		return or();
+	}
+	
+	/**
+	 * Returns the {@code Capability} which supports the 
+	 * {@code ComparableFilter}s of the specified operators.
+	 * {@code StartsWithFilter} is supported as well if both of 
+	 * {@code GREATER_THAN_OR_EQUAL_TO} and {@code LESS_THAN} are specified, 
+	 * because it is pushed down as the half-open range.
+	 * 
+	 * @param operators The supported operators.
+	 * @return The {@code Capability} which supports the 
+	 * {@code ComparableFilter}s of the specified operators.
+	 */
+	public static Capability operators(Operator... operators) {
+		final Set<Operator> supported = EnumSet.noneOf(Operator.class);
+		supported.addAll(Arrays.asList(operators));
+		return new Capability() {
+
+			@Override
+			public boolean supports(Filter<?> filter) {
+				if (filter instanceof StartsWithFilter) {
+					return supported.contains(Operator.GREATER_THAN_OR_EQUAL_TO)
+							&& supported.contains(Operator.LESS_THAN);
+				}
+				
+				return filter instanceof ComparableFilter<?>
+						&& supported.contains(((ComparableFilter<?>) filter).operator());
+			}
+			
+			@Override
+			public boolean supports(Order<?, ?> order) {
+				return false;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns the {@code Capability} which supports {@code InFilter}.
+	 * 
+	 * @return The {@code Capability} which supports {@code InFilter}.
+	 */
+	public static Capability in() {
+		return new Capability() {
+
+			@Override
+			public boolean supports(Filter<?> filter) {
+				return filter instanceof InFilter<?>;
+			}
+			
+			@Override
+			public boolean supports(Order<?, ?> order) {
+				return false;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns the {@code Capability} which supports every {@code Order}.
+	 * 
+	 * @return The {@code Capability} which supports every {@code Order}.
+	 */
+	public static Capability sort() {
+		return new Capability() {
+
+			@Override
+			public boolean supports(Filter<?> filter) {
+				return false;
+			}
+			
+			@Override
+			public boolean supports(Order<?, ?> order) {
+				return true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Returns the {@code Capability} which supports what any of the specified 
+	 * {@code Capability}s supports.
+	 * 
+	 * @param capabilities The {@code Capability}s to be combined.
+	 * @return The union of the specified {@code Capability}s.
+	 */
+	public static Capability or(final Capability... capabilities) {
+		return new Capability() {
+
+			@Override
+			public boolean supports(Filter<?> filter) {
+				for (Capability capability : capabilities) {
+					if (capability.supports(filter)) {
+						return true;
+					}
+				}
+				
+				return false;
+			}
+			
+			@Override
+			public boolean supports(Order<?, ?> order) {
+				for (Capability capability : capabilities) {
+					if (capability.supports(order)) {
+						return true;
+					}
+				}
+				
+				return false;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Restricts the specified {@code Capability} to the {@code Filter}s and 
+	 * {@code Order}s on the specified properties.
+	 * 
+	 * @param capability The {@code Capability} to be restricted.
+	 * @param properties The properties the datastore can evaluate.
+	 * @return The {@code Capability} restricted to the specified properties.
+	 */
+	public static Capability on(final Capability capability, Property<?, ?>... properties) {
+		if (capability == null) {
+			throw new IllegalArgumentException("'capability' must not be [" + capability + "]");
+		}
+		
+		final Set<List<Object>> keys = new HashSet<List<Object>>();
+		
+		for (Property<?, ?> property : properties) {
+			keys.add(Filters.key(property));
+		}
+		
+		return new Capability() {
+
+			@Override
+			public boolean supports(Filter<?> filter) {
+				return filter.property() != null
+						&& keys.contains(Filters.key(filter.property()))
+						&& capability.supports(filter);
+			}
+			
+			@Override
+			public boolean supports(Order<?, ?> order) {
+				return keys.contains(Filters.key(order.property()))
+						&& capability.supports(order);
+			}
+			
+		};
+	}
+	
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+/**
+ * {@code Capability} declares the {@code Filter}s and {@code Order}s which a 
+ * datastore backend can evaluate natively.
+ * The backend implements this interface (or composes the ones provided by 
+ * {@link Capabilities}) and passes it to {@link Plan}, which splits the 
+ * command's {@code Filter}s and {@code Order}s into the part pushed down to 
+ * the datastore and the residual part evaluated in-memory.
+ * 
+ * @see Capabilities
+ * @see Plan
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface Capability {
+
+	/**
+	 * Indicates whether the datastore can evaluate the specified 
+	 * {@code Filter} natively or not.
+	 * 
+	 * @param filter The {@code Filter} to be evaluated.
+	 * @return Whether the datastore can evaluate the specified {@code Filter} 
+	 * natively or not.
+	 */
+	public boolean supports(Filter<?> filter);
+	
+	/**
+	 * Indicates whether the datastore can sort by the specified {@code Order} 
+	 * natively or not.
+	 * 
+	 * @param order The {@code Order} to be sorted by.
+	 * @return Whether the datastore can sort by the specified {@code Order} 
+	 * natively or not.
+	 */
+	public boolean supports(Order<?, ?> order);
+	
+}
@@ -15,6 +15,9 @@
  */
 package org.eiichiro.acidhouse;
 
+import java.util.BitSet;
+import java.util.List;
+
 import org.eiichiro.acidhouse.metamodel.ComparableProperty;
 import org.eiichiro.acidhouse.metamodel.EmbeddedProperty;
 import org.eiichiro.acidhouse.metamodel.Property;
@@ -26,7 +29,7 @@ import org.eiichiro.acidhouse.metamodel.Property;
  * 
  * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
  */
-public class ComparableFilter<T extends Comparable<T>> implements Filter<T> {
+public class ComparableFilter<T extends Comparable<T>> implements PropertyFilter<T>, BatchFilter<T> {
 
 	/**
 	 * {@code Operator} represents the type of property comparison operator.
@@ -158,8 +161,46 @@ public class ComparableFilter<T extends Comparable<T>> implements Filter<T> {
 	 */
 	@Override
 	public boolean matches(Object entity) {
-		T left = property.get(entity);
-		return operator().matches(left.compareTo(value()));
+		return evaluate(property.get(entity));
+	}
+	
+	/**
+	 * Indicates the specified property value matches to this 
+	 * {@code ComparableFilter}.
+	 */
+	@Override
+	public boolean evaluate(T value) {
+		return operator.matches(value.compareTo(this.value));
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		Object[] values = Filters.values(property, entities, selection);
+		int mask = mask(operator);
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			int compareTo = ((T) values[i]).compareTo(value);
+			
+			if ((mask & (1 << (Integer.signum(compareTo) + 1))) == 0) {
+				selection.clear(i);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the bit mask of the {@code Comparable#compareTo(Object)} 
+	 * results which the specified operator matches to: bit 0 for negative, 
+	 * bit 1 for zero and bit 2 for positive.
+	 */
+	static int mask(Operator operator) {
+		return (operator.matches(-1) ? 1 : 0) | (operator.matches(0) ? 2 : 0)
+				| (operator.matches(1) ? 4 : 0);
 	}
 	
 	/** Returns the {@code String} representation of this instance. */
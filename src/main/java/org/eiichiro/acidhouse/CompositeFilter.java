@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.eiichiro.acidhouse.metamodel.Property;
+
+/**
+ * {@code CompositeFilter} is a {@code Filter} implementation to combine the 
+ * other {@code Filter}s with "logical and", "logical or" or "logical not".
+ * You can get this instance from {@link Filters#and(Filter...)}, 
+ * {@link Filters#or(Filter...)} and {@link Filters#not(Filter)}, like this:
+ * <pre>
+ * List&lt;Entity3&gt; entity3s = session
+ * 		.get(entity3_)
+ * 		.filter(Filters.or(entity3_.entity1.i.lessThan(3),
+ * 			Filters.and(entity3_.entity1.i.greaterThanOrEqualTo(13),
+ * 				Filters.not(entity3_.entity1.i.in(15, 16)))))
+ * 		.execute();
+ * </pre>
+ * In-memory, the operands are evaluated in order and the evaluation stops as 
+ * soon as the result is determined. Each operand is compiled into 
+ * {@code Predicate} at the construction time, so that the datastore-specific 
+ * command implementation can inspect the tree with {@link #operator()} and 
+ * {@link #predicates()}; e.g. it can run the OR branches as the separate 
+ * index scans and merge the results with {@link Filters#union(List)}.
+ * 
+ * @see Filters
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class CompositeFilter implements BatchFilter<Object> {
+
+	/**
+	 * {@code Operator} represents the type of logical operator.
+	 * 
+	 * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+	 */
+	public static enum Operator {
+
+		/** The logical and (&amp;&amp;) operator. */
+		AND("&&"),
+		
+		/** The logical or (||) operator. */
+		OR("||"),
+		
+		/** The logical not (!) operator. */
+		NOT("!");
+		
+		private Operator(String expression) {
+			this.expression = expression;
+		}
+		
+		private final String expression;
+		
+		/** Returns the {@code String} representation of this operator. */
+		@Override
+		public String toString() {
+			return expression;
+		}
+		
+	}
+	
+	private final Operator operator;
+	
+	private final List<Filter<?>> filters;
+	
+	private final Predicate[] predicates;
+	
+	/**
+	 * Constructs a new {@code CompositeFilter} instance with the specified 
+	 * operator and operands.
+	 * 
+	 * @param operator The logical operator.
+	 * @param filters The operands. {@link Operator#NOT} takes exactly one 
+	 * operand.
+	 */
+	public CompositeFilter(Operator operator, Filter<?>... filters) {
+		if (operator == null) {
+			throw new IllegalArgumentException("'operator' must not be [" + operator + "]");
+		}
+		
+		if (filters == null) {
+			throw new IllegalArgumentException("'filters' must not be [" + filters + "]");
+		}
+		
+		if (filters.length == 0) {
+			throw new IllegalArgumentException("Length of 'filters' must be greater than [" + filters.length + "]");
+		}
+		
+		if (operator == Operator.NOT && filters.length != 1) {
+			throw new IllegalArgumentException("Length of 'filters' must be [1] for ["
+					+ operator + "] but [" + filters.length + "]");
+		}
+		
+		for (Filter<?> filter : filters) {
+			if (filter == null) {
+				throw new IllegalArgumentException("'filters' must not contain [" + filter + "]");
+			}
+		}
+		
+		this.operator = operator;
+		this.filters = Collections.unmodifiableList(new ArrayList<Filter<?>>(Arrays.asList(filters)));
+		
+		if (operator == Operator.OR) {
+			predicates = new Predicate[filters.length];
+			
+			for (int i = 0; i < filters.length; i++) {
+				predicates[i] = Filters.compile(filters[i]);
+			}
+		} else {
+			predicates = new Predicate[] { Filters.compile(filters) };
+		}
+	}
+	
+	/**
+	 * Returns <code>null</code>; {@code CompositeFilter} is not applied to a 
+	 * single property.
+	 */
+	@Override
+	public Property<?, Object> property() {
+		return null;
+	}
+	
+	/**
+	 * Indicates the specified entity instance matches to this 
+	 * {@code CompositeFilter}.
+	 */
+	@Override
+	public boolean matches(Object entity) {
+		if (operator == Operator.OR) {
+			for (Predicate predicate : predicates) {
+				if (predicate.matches(entity)) {
+					return true;
+				}
+			}
+			
+			return false;
+		} else if (operator == Operator.NOT) {
+			return !predicates[0].matches(entity);
+		} else {
+			return predicates[0].matches(entity);
+		}
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch. Each OR branch evaluates 
+	 * only the entities which have not matched to the preceding branches.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		if (operator == Operator.OR) {
+			BitSet remaining = (BitSet) selection.clone();
+			BitSet matched = new BitSet();
+			
+			for (Predicate predicate : predicates) {
+				BitSet branch = (BitSet) remaining.clone();
+				predicate.matches(entities, branch);
+				matched.or(branch);
+				remaining.andNot(branch);
+			}
+			
+			selection.and(matched);
+		} else if (operator == Operator.NOT) {
+			BitSet negated = (BitSet) selection.clone();
+			predicates[0].matches(entities, negated);
+			selection.andNot(negated);
+		} else {
+			predicates[0].matches(entities, selection);
+		}
+	}
+	
+	/** Returns the logical operator of this {@code CompositeFilter}. */
+	public Operator operator() {
+		return operator;
+	}
+	
+	/** Returns the operands of this {@code CompositeFilter}. */
+	public List<Filter<?>> filters() {
+		return filters;
+	}
+	
+	/**
+	 * Returns the compiled operands of this {@code CompositeFilter}: one 
+	 * {@code Predicate} per branch for {@link Operator#OR}, and one 
+	 * {@code Predicate} of all the operands for {@link Operator#AND} and 
+	 * {@link Operator#NOT}.
+	 * 
+	 * @return The compiled operands of this {@code CompositeFilter}.
+	 */
+	public List<Predicate> predicates() {
+		return Collections.unmodifiableList(Arrays.asList(predicates));
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		if (operator == Operator.NOT) {
+			return operator + "(" + filters.get(0) + ")";
+		}
+		
+		StringBuilder builder = new StringBuilder("(");
+		builder.append(filters.get(0));
+		
+		for (int i = 1; i < filters.size(); i++) {
+			builder.append(" " + operator + " " + filters.get(i));
+		}
+		
+		return builder.append(")").toString();
+	}
+	
+}
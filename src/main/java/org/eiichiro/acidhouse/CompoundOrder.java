@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eiichiro.acidhouse.metamodel.Accessor;
+import org.eiichiro.acidhouse.metamodel.DoubleProperty;
+import org.eiichiro.acidhouse.metamodel.IntProperty;
+import org.eiichiro.acidhouse.metamodel.LongProperty;
+
+/**
+ * {@code CompoundOrder} is a {@code Comparator} composed of the 
+ * {@code Order}s specified to {@link GetList#sort(Order...)}.
+ * The preceding {@code Order} takes priority, and the 
+ * {@link Order#direction()} of each {@code Order} is applied. The 
+ * <code>null</code> property value precedes any other value in ascending 
+ * order.
+ * {@link #sort(List)} reads every sort key once per entity into a key tuple, 
+ * sorts the tuples and then unwraps the entities (decorate-sort-undecorate), 
+ * so sorting <i>n</i> entities by <i>k</i> {@code Order}s reads the 
+ * properties <i>n</i> &times; <i>k</i> times instead of twice per 
+ * comparison. The sort is stable.
+ * The sort keys of {@code IntProperty}, {@code LongProperty} and 
+ * {@code DoubleProperty} are read with {@link Accessor#getLong(Object)} and 
+ * {@link Accessor#getDouble(Object)} into the <code>long</code> array of the 
+ * key tuple and compared without boxing, so their values must not be 
+ * <code>null</code>.
+ * {@link #sort(List, int, int)} returns the page of the sorted entities with 
+ * the bounded heap of the top-<i>k</i> key tuples, which is used when 
+ * {@code GetList} has the limit and offset as well as the sort orders.
+ * <pre>
+ * List&lt;Entity3&gt; sorted = new CompoundOrder&lt;Entity3&gt;(
+ * 		entity3_.entity1.i.desc, entity3_.i.asc).sort(entity3s);
+ * </pre>
+ * 
+ * @see Executions#sort(List, Order...)
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class CompoundOrder<E> implements Comparator<E> {
+
+	/** The sort key compared as {@code Comparable}. */
+	private static final int OBJECT = 0;
+	
+	/** The sort key read with {@link Accessor#getLong(Object)}. */
+	private static final int INTEGRAL = 1;
+	
+	/**
+	 * The sort key read with {@link Accessor#getDouble(Object)} and stored as 
+	 * <code>long</code> in the same order as {@link Double#compare(double, double)}.
+	 */
+	private static final int REAL = 2;
+	
+	private final Order<E, ?>[] orders;
+	
+	private final boolean[] descending;
+	
+	private final int[] kinds;
+	
+	private final boolean primitive;
+	
+	private final Comparator<Key<E>> ranking = new Comparator<Key<E>>() {
+
+		@Override
+		public int compare(Key<E> key1, Key<E> key2) {
+			int compare = comparator.compare(key1, key2);
+			return (compare != 0) ? compare
+					: ((key1.index < key2.index) ? -1 : ((key1.index == key2.index) ? 0 : 1));
+		}
+		
+	};
+	
+	private final Comparator<Key<E>> comparator = new Comparator<Key<E>>() {
+
+		@Override
+		public int compare(Key<E> key1, Key<E> key2) {
+			for (int i = 0; i < orders.length; i++) {
+				int compare = (kinds[i] == OBJECT)
+						? CompoundOrder.this.compare(i, key1.values[i], key2.values[i])
+						: CompoundOrder.this.compare(i, key1.longs[i], key2.longs[i]);
+				
+				if (compare != 0) {
+					return compare;
+				}
+			}
+			
+			return 0;
+		}
+		
+	};
+	
+	/**
+	 * Constructs a new {@code CompoundOrder} with the specified {@code Order}s.
+	 * 
+	 * @param orders The {@code Order}s the entities are sorted by.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompoundOrder(Order<E, ?>... orders) {
+		if (orders == null) {
+			throw new IllegalArgumentException("'orders' must not be [" + orders + "]");
+		}
+		
+		for (Order<E, ?> order : orders) {
+			if (order == null) {
+				throw new IllegalArgumentException("'orders' must not contain [" + order + "]");
+			}
+		}
+		
+		this.orders = orders.clone();
+		descending = new boolean[orders.length];
+		kinds = new int[orders.length];
+		boolean primitive = false;
+		
+		for (int i = 0; i < orders.length; i++) {
+			descending[i] = (orders[i].direction() == Order.Direction.DESC);
+			Object property = orders[i].property();
+			kinds[i] = (property instanceof IntProperty<?> || property instanceof LongProperty<?>)
+					? INTEGRAL : ((property instanceof DoubleProperty<?>) ? REAL : OBJECT);
+			primitive |= (kinds[i] != OBJECT);
+		}
+		
+		this.primitive = primitive;
+	}
+	
+	/**
+	 * Compares the specified two entities by the {@code Order}s in their 
+	 * directions.
+	 * 
+	 * @param entity1 An entity to be compared.
+	 * @param entity2 An entity to be compared.
+	 * @return The comparison result.
+	 */
+	@Override
+	public int compare(E entity1, E entity2) {
+		for (int i = 0; i < orders.length; i++) {
+			int compare = (kinds[i] == OBJECT)
+					? compare(i, orders[i].property().get(entity1), orders[i].property().get(entity2))
+					: compare(i, primitive(i, entity1), primitive(i, entity2));
+					
+			if (compare != 0) {
+				return compare;
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Returns the new list of the specified entities sorted by this 
+	 * {@code CompoundOrder}. Each sort key is read once per entity.
+	 * 
+	 * @param entities The entities to be sorted.
+	 * @return The sorted entities.
+	 */
+	public List<E> sort(List<E> entities) {
+		List<Key<E>> keys = keys(entities);
+		Collections.sort(keys, comparator);
+		return entities(keys);
+	}
+	
+	/**
+	 * Returns the page of the specified entities sorted by this 
+	 * {@code CompoundOrder}; equivalent to slicing the result of 
+	 * {@link #sort(List)} from the specified offset up to the specified limit, 
+	 * without sorting every entity. The entities are streamed through the 
+	 * bounded heap of (<code>offset</code> + <code>limit</code>) key tuples, 
+	 * so it takes <i>O(n log k)</i> time and <i>O(k)</i> memory.
+	 * 
+	 * @param entities The entities to be sorted.
+	 * @param offset The offset of the page.
+	 * @param limit The maximum size of the page.
+	 * @return The sorted page of the entities.
+	 */
+	public List<E> sort(List<E> entities, int offset, int limit) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("'offset' must not be [" + offset + "]");
+		}
+		
+		if (limit < 0) {
+			throw new IllegalArgumentException("'limit' must not be [" + limit + "]");
+		}
+		
+		int k = offset + limit;
+		
+		if (k < 0 || k >= entities.size()) {
+			return Executions.slice(sort(entities), offset, limit);
+		}
+		
+		return Executions.slice(entities(top(entities, k)), offset, limit);
+	}
+	
+	/**
+	 * Returns the {@code Order}s this {@code CompoundOrder} is composed of.
+	 * 
+	 * @return The {@code Order}s this {@code CompoundOrder} is composed of.
+	 */
+	public List<Order<E, ?>> orders() {
+		return Collections.unmodifiableList(Arrays.asList(orders));
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		return Arrays.toString(orders);
+	}
+	
+	/** Reads the sort keys of the specified entities into the key tuples. */
+	List<Key<E>> keys(List<E> entities) {
+		List<Key<E>> keys = new ArrayList<Key<E>>(entities.size());
+		int index = 0;
+		
+		for (E entity : entities) {
+			keys.add(key(entity, index++));
+		}
+		
+		return keys;
+	}
+	
+	/**
+	 * Returns the first <code>k</code> key tuples of the specified entities in 
+	 * sorted order, keeping only <code>k</code> key tuples on the heap. The 
+	 * sort keys of the rejected entity are read into the reused array.
+	 */
+	List<Key<E>> top(List<E> entities, int k) {
+		if (k == 0) {
+			return new ArrayList<Key<E>>();
+		}
+		
+		PriorityQueue<Key<E>> heap = new PriorityQueue<Key<E>>(k, Collections.reverseOrder(ranking));
+		Object[] values = new Object[orders.length];
+		long[] longs = primitive ? new long[orders.length] : null;
+		int index = 0;
+		
+		for (E entity : entities) {
+			read(entity, values, longs);
+			Key<E> key = new Key<E>(entity, values, longs, index++);
+			
+			if (heap.size() < k) {
+				heap.add(key);
+				values = new Object[orders.length];
+				longs = primitive ? new long[orders.length] : null;
+			} else if (ranking.compare(key, heap.peek()) < 0) {
+				Key<E> rejected = heap.poll();
+				values = rejected.values;
+				longs = rejected.longs;
+				heap.add(key);
+			}
+		}
+		
+		List<Key<E>> keys = new ArrayList<Key<E>>(heap.size());
+		
+		while (!heap.isEmpty()) {
+			keys.add(heap.poll());
+		}
+		
+		Collections.reverse(keys);
+		return keys;
+	}
+	
+	/** Reads the sort keys of the specified entity into the key tuple. */
+	Key<E> key(E entity, int index) {
+		Object[] values = new Object[orders.length];
+		long[] longs = primitive ? new long[orders.length] : null;
+		read(entity, values, longs);
+		return new Key<E>(entity, values, longs, index);
+	}
+	
+	/** Returns the {@code Comparator} of the key tuples. */
+	Comparator<Key<E>> comparator() {
+		return comparator;
+	}
+	
+	/**
+	 * Returns the {@code Comparator} of the key tuples which breaks ties by 
+	 * the index of the key tuple.
+	 */
+	Comparator<Key<E>> ranking() {
+		return ranking;
+	}
+	
+	/** Unwraps the entities from the specified key tuples. */
+	static <E> List<E> entities(List<Key<E>> keys) {
+		List<E> entities = new ArrayList<E>(keys.size());
+		
+		for (Key<E> key : keys) {
+			entities.add(key.entity);
+		}
+		
+		return entities;
+	}
+	
+	private void read(E entity, Object[] values, long[] longs) {
+		for (int i = 0; i < orders.length; i++) {
+			if (kinds[i] == OBJECT) {
+				values[i] = orders[i].property().get(entity);
+			} else {
+				longs[i] = primitive(i, entity);
+			}
+		}
+	}
+	
+	private long primitive(int i, E entity) {
+		Accessor accessor = orders[i].property().accessor();
+		
+		if (kinds[i] == INTEGRAL) {
+			return accessor.getLong(entity);
+		}
+		
+		// Flips the magnitude bits of the negative value so that the signed
+		// comparison of the bits agrees with Double#compare(double, double).
+		long bits = Double.doubleToLongBits(accessor.getDouble(entity));
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+	
+	private int compare(int i, long value1, long value2) {
+		int compare = (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+		return descending[i] ? -compare : compare;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int compare(int i, Object value1, Object value2) {
+		int compare;
+		
+		if (value1 == null) {
+			compare = (value2 == null) ? 0 : -1;
+		} else if (value2 == null) {
+			compare = 1;
+		} else {
+			compare = ((Comparable) value1).compareTo(value2);
+		}
+		
+		// Negating Integer.MIN_VALUE overflows; normalizes the sign first.
+		return descending[i] ? -Integer.signum(compare) : compare;
+	}
+	
+	/** The entity and its sort keys. */
+	static final class Key<E> {
+
+		private final E entity;
+		
+		private final Object[] values;
+		
+		private final long[] longs;
+		
+		private final int index;
+		
+		private Key(E entity, Object[] values, long[] longs, int index) {
+			this.entity = entity;
+			this.values = values;
+			this.longs = longs;
+			this.index = index;
+		}
+		
+		E entity() {
+			return entity;
+		}
+		
+		int index() {
+			return index;
+		}
+		
+	}
+	
+}
@@ -64,6 +64,14 @@ public interface Coordinator {
 	/**
 	 * Commits every operation in the current transaction with Two-phase commit 
 	 * protocol.
+	 * The implementation must publish the committed {@code Log}s with 
+	 * {@link MaterializedAggregates#publish(java.util.List)} after the commit, 
+	 * recording the copy of the entity got in the transaction as 
+	 * {@link Log#previous()} of {@link Log.Operation#UPDATE} and 
+	 * {@link Log.Operation#DELETE}; otherwise the registered 
+	 * {@code MaterializedAggregate}s are not kept up to date. The updated 
+	 * entity instance itself must not be recorded as the previous entity, 
+	 * since it has the values after the update.
 	 * 
 	 * @throws IndoubtException If the data consistency is broken.
 	 */
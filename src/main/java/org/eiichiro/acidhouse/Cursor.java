@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eiichiro.reverb.lang.UncheckedException;
+
+/**
+ * {@code Cursor} is the streaming result of {@link StreamingGetList#iterate()}.
+ * The entities are fetched lazily page by page with the {@code Fetcher} the 
+ * datastore backend provides, filtered with the residual {@code Predicate} 
+ * and paged with the offset and the limit as the iteration goes, so the heap 
+ * holds only the pages in flight instead of the whole result. If the 
+ * prefetch is specified, the following pages are read ahead on the 
+ * background thread while the current page is consumed. The prefetch is 
+ * stopped when the iteration reaches the end or {@link #close()} is invoked, 
+ * so close it when the iteration is abandoned:
+ * <pre>
+ * Cursor&lt;Entity3&gt; cursor = ((StreamingGetList&lt;Entity3&gt;) session.get(entity3_))
+ * 		.filter(entity3_.i.lessThan(5))
+ * 		.batch(500)
+ * 		.prefetch(2)
+ * 		.iterate();
+ * 
+ * try {
+ * 	while (cursor.hasNext()) {
+ * 		...
+ * 	}
+ * } finally {
+ * 	cursor.close();
+ * }
+ * </pre>
+ * 
+ * @see Plan#iterate(Cursor.Fetcher, int, int, int, int)
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class Cursor<E> implements Iterator<E>, Closeable {
+
+	/** The marker of the end of the pages in the prefetch queue. */
+	private static final Object END = new Object();
+	
+	/** The interval in milliseconds the producer checks if it is closed. */
+	private static final long INTERVAL = 100;
+	
+	private static final AtomicInteger sequence = new AtomicInteger();
+	
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "acidhouse-cursor-" + sequence.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+	});
+	
+	private final Fetcher<E> fetcher;
+	
+	private final Predicate predicate;
+	
+	private final int batch;
+	
+	private final BlockingQueue<Object> pages;
+	
+	private Future<?> producer;
+	
+	private volatile boolean closed;
+	
+	private Iterator<E> page = Collections.<E>emptyList().iterator();
+	
+	private int offset;
+	
+	private int limit;
+	
+	private boolean exhausted;
+	
+	private E next;
+	
+	private boolean ready;
+	
+	/**
+	 * Constructs a new {@code Cursor} which fetches the entities with the 
+	 * specified {@code Fetcher}.
+	 * 
+	 * @param fetcher The {@code Fetcher} of the pages.
+	 * @param predicate The residual {@code Predicate} the entities are 
+	 * filtered with, or <code>null</code>.
+	 * @param offset The number of the matching entities to be skipped.
+	 * @param limit The maximum number of the entities to be returned 
+	 * ({@code Integer#MAX_VALUE} for no limit).
+	 * @param batch The number of the entities fetched per page.
+	 * @param prefetch The number of the pages read ahead, or <code>0</code>
+	 * to fetch the pages on the calling thread.
+	 */
+	public Cursor(Fetcher<E> fetcher, Predicate predicate, int offset, int limit,
+			int batch, int prefetch) {
+		if (fetcher == null) {
+			throw new IllegalArgumentException("'fetcher' must not be [" + fetcher + "]");
+		}
+		
+		if (offset < 0) {
+			throw new IllegalArgumentException("'offset' must not be [" + offset + "]");
+		}
+		
+		if (limit < 0) {
+			throw new IllegalArgumentException("'limit' must not be [" + limit + "]");
+		}
+		
+		if (batch < 1) {
+			throw new IllegalArgumentException("'batch' must not be [" + batch + "]");
+		}
+		
+		if (prefetch < 0) {
+			throw new IllegalArgumentException("'prefetch' must not be [" + prefetch + "]");
+		}
+		
+		this.fetcher = fetcher;
+		this.predicate = predicate;
+		this.offset = offset;
+		this.limit = limit;
+		this.batch = batch;
+		
+		if (prefetch > 0 && limit > 0) {
+			pages = new ArrayBlockingQueue<Object>(prefetch);
+			producer = executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					produce();
+				}
+				
+			});
+		} else {
+			pages = null;
+			exhausted = (limit == 0);
+		}
+	}
+	
+	/** Indicates whether the next entity exists or not. */
+	@Override
+	public boolean hasNext() {
+		if (ready) {
+			return true;
+		}
+		
+		while (limit > 0) {
+			while (page.hasNext()) {
+				E entity = page.next();
+				
+				if (predicate != null && !predicate.matches(entity)) {
+					continue;
+				} else if (offset > 0) {
+					offset--;
+					continue;
+				}
+				
+				next = entity;
+				ready = true;
+				return true;
+			}
+			
+			if (!fetch()) {
+				break;
+			}
+		}
+		
+		close();
+		return false;
+	}
+	
+	/** Returns the next entity. */
+	@Override
+	public E next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		
+		E entity = next;
+		next = null;
+		ready = false;
+		limit--;
+		return entity;
+	}
+	
+	/**
+	 * Throws {@code UnsupportedOperationException}; {@code Cursor} is 
+	 * read-only.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/** Stops the prefetch and releases the pages read ahead. */
+	@Override
+	public void close() {
+		closed = true;
+		exhausted = true;
+		page = Collections.<E>emptyList().iterator();
+		
+		if (producer != null) {
+			producer.cancel(true);
+			producer = null;
+			pages.clear();
+		}
+	}
+	
+	/** Moves to the next page; returns <code>false</code> at the end. */
+	@SuppressWarnings("unchecked")
+	private boolean fetch() {
+		if (exhausted) {
+			return false;
+		}
+		
+		if (pages == null) {
+			List<E> entities = fetcher.fetch(batch);
+			exhausted = (entities.size() < batch);
+			page = entities.iterator();
+			return true;
+		}
+		
+		Object object;
+		
+		try {
+			object = pages.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new UncheckedException(e);
+		}
+		
+		if (object == END) {
+			exhausted = true;
+			return false;
+		} else if (object instanceof Throwable) {
+			close();
+			
+			if (object instanceof RuntimeException) {
+				throw (RuntimeException) object;
+			} else if (object instanceof Error) {
+				throw (Error) object;
+			}
+			
+			throw new UncheckedException((Throwable) object);
+		}
+		
+		page = ((List<E>) object).iterator();
+		return true;
+	}
+	
+	/**
+	 * Fetches the pages into the prefetch queue on the background thread 
+	 * until the end or {@link #close()}. The producer does not rely on the 
+	 * interruption to stop, since the {@code Fetcher} may swallow it.
+	 */
+	private void produce() {
+		try {
+			while (!closed) {
+				List<E> entities = fetcher.fetch(batch);
+				
+				if (!entities.isEmpty() && !offer(entities)) {
+					return;
+				}
+				
+				if (entities.size() < batch) {
+					offer(END);
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// Closed.
+		} catch (Throwable e) {
+			try {
+				offer(e);
+			} catch (InterruptedException ie) {}
+		}
+	}
+	
+	/**
+	 * Puts the specified object into the prefetch queue; returns 
+	 * <code>false</code> if this {@code Cursor} is closed while waiting for 
+	 * the space.
+	 */
+	private boolean offer(Object object) throws InterruptedException {
+		while (!closed) {
+			if (pages.offer(object, INTERVAL, TimeUnit.MILLISECONDS)) {
+				if (closed) {
+					pages.clear();
+				}
+				
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * {@code Fetcher} fetches the entities page by page from the datastore 
+	 * for {@code Cursor}; the backend implements it with the datastore's 
+	 * cursor or the continuation of the query. Without the prefetch, 
+	 * {@link #fetch(int)} is invoked on the thread iterating the 
+	 * {@code Cursor}. With the prefetch, {@link #fetch(int)} is invoked on 
+	 * the thread of the shared background pool, one page at a time; so the 
+	 * {@code Fetcher} must not depend on the state bound to the calling thread 
+	 * (e.g. the transaction of the datastore API bound to the thread), and 
+	 * the backend of such datastore must build the {@code Cursor} without the 
+	 * prefetch.
+	 * 
+	 * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+	 */
+	public static interface Fetcher<E> {
+
+		/**
+		 * Fetches the next page of the entities.
+		 * 
+		 * @param size The maximum number of the entities in the page.
+		 * @return The next page of the entities; the page shorter than the 
+		 * specified size is the last page.
+		 */
+		public List<E> fetch(int size);
+		
+	}
+	
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.eiichiro.acidhouse.metamodel.Accessor;
+import org.eiichiro.acidhouse.metamodel.DoubleProperty;
+
+/**
+ * {@code DoubleFilter} is a {@code ComparableFilter} specialized for 
+ * <code>double</code> property. It reads the property value with 
+ * {@code Accessor#getDouble(Object)} and compares it as <code>double</code>
+ * in the same manner as {@code Double#compareTo(Double)} without boxing.
+ * You can get this instance from {@code DoubleProperty}'s filtering methods.
+ * 
+ * @see DoubleProperty
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class DoubleFilter extends ComparableFilter<Double> {
+
+	private final double value;
+	
+	/**
+	 * Constructs a new {@code DoubleFilter} instance with the specified 
+	 * {@code DoubleProperty}, property value and operator type.
+	 * 
+	 * @param property The {@code DoubleProperty} instance
+	 * @param value The property value
+	 * @param operator The operator type.
+	 */
+	public DoubleFilter(DoubleProperty<?> property, double value, Operator operator) {
+		super(property, value, operator);
+		this.value = value;
+	}
+	
+	/**
+	 * Indicates the specified entity instance matches to this 
+	 * {@code DoubleFilter}.
+	 */
+	@Override
+	public boolean matches(Object entity) {
+		return evaluate(property().accessor().getDouble(entity));
+	}
+	
+	/**
+	 * Indicates the specified property value matches to this 
+	 * {@code DoubleFilter}.
+	 */
+	@Override
+	public boolean evaluate(Double value) {
+		return evaluate(value.doubleValue());
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch; the property values are 
+	 * read into <code>double</code> array at once and compared in a tight loop.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		Accessor accessor = property().accessor();
+		double[] values = new double[entities.size()];
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			values[i] = accessor.getDouble(entities.get(i));
+		}
+		
+		int mask = mask(operator());
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			int compareTo = Integer.signum(Double.compare(values[i], value)) + 1;
+			
+			if ((mask & (1 << compareTo)) == 0) {
+				selection.clear(i);
+			}
+		}
+	}
+	
+	private boolean evaluate(double value) {
+		return operator().matches(Double.compare(value, this.value));
+	}
+	
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eiichiro.reverb.lang.UncheckedException;
+
+/**
+ * {@code Encoding} writes the property values of the spilled entities into 
+ * the binary stream and reads them back. The values of the basic types are 
+ * written in the compact form, and the other values with the Java 
+ * serialization. The classes of the enum and serialized values are resolved with the context class loader, or 
+ * with the class loader of the entity type if the context class loader is not 
+ * set or does not find them.
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+class Encoding {
+
+	private static final int NULL = 0;
+	
+	private static final int STRING = 1;
+	
+	private static final int INTEGER = 2;
+	
+	private static final int LONG = 3;
+	
+	private static final int DOUBLE = 4;
+	
+	private static final int BOOLEAN = 5;
+	
+	private static final int SHORT = 6;
+	
+	private static final int BYTE = 7;
+	
+	private static final int CHARACTER = 8;
+	
+	private static final int FLOAT = 9;
+	
+	private static final int DATE = 10;
+	
+	private static final int BIG_INTEGER = 11;
+	
+	private static final int ENUM = 12;
+	
+	private static final int SERIALIZED = 13;
+	
+	private final ClassLoader loader;
+	
+	private final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+	
+	/**
+	 * Constructs a new {@code Encoding} of the property values of the 
+	 * specified entity type.
+	 * 
+	 * @param type The entity type.
+	 */
+	Encoding(Class<?> type) {
+		loader = type.getClassLoader();
+	}
+	
+	/** Writes the specified value into the specified output. */
+	void write(DataOutput out, Object value) throws IOException {
+		Class<?> c = (value == null) ? null : value.getClass();
+		
+		if (c == null) {
+			out.writeByte(NULL);
+		} else if (c == String.class) {
+			String string = (String) value;
+			out.writeByte(STRING);
+			out.writeInt(string.length());
+			out.writeChars(string);
+		} else if (c == Integer.class) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (c == Long.class) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (c == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (c == Boolean.class) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (c == Short.class) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (c == Byte.class) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (c == Character.class) {
+			out.writeByte(CHARACTER);
+			out.writeChar((Character) value);
+		} else if (c == Float.class) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (c == Date.class) {
+			out.writeByte(DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (c == BigInteger.class) {
+			byte[] bytes = ((BigInteger) value).toByteArray();
+			out.writeByte(BIG_INTEGER);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else if (value instanceof Enum<?>) {
+			out.writeByte(ENUM);
+			out.writeUTF(((Enum<?>) value).getDeclaringClass().getName());
+			out.writeUTF(((Enum<?>) value).name());
+		} else {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream stream = new ObjectOutputStream(bytes);
+			stream.writeObject(value);
+			stream.close();
+			out.writeByte(SERIALIZED);
+			out.writeInt(bytes.size());
+			out.write(bytes.toByteArray());
+		}
+	}
+	
+	/** Reads the value from the specified input. */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Object read(DataInput in) throws IOException {
+		int tag = in.readByte();
+		
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			char[] chars = new char[in.readInt()];
+			
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = in.readChar();
+			}
+			
+			return new String(chars);
+		case INTEGER:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case DOUBLE:
+			return in.readDouble();
+		case BOOLEAN:
+			return in.readBoolean();
+		case SHORT:
+			return in.readShort();
+		case BYTE:
+			return in.readByte();
+		case CHARACTER:
+			return in.readChar();
+		case FLOAT:
+			return in.readFloat();
+		case DATE:
+			return new Date(in.readLong());
+		case BIG_INTEGER:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return new BigInteger(bytes);
+		case ENUM:
+			try {
+				return Enum.valueOf((Class) type(in.readUTF()), in.readUTF());
+			} catch (ClassNotFoundException e) {
+				throw new UncheckedException(e);
+			}
+		case SERIALIZED:
+			byte[] serialized = new byte[in.readInt()];
+			in.readFully(serialized);
+			ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(serialized)) {
+
+				@Override
+				protected Class<?> resolveClass(ObjectStreamClass desc)
+						throws IOException, ClassNotFoundException {
+					try {
+						return type(desc.getName());
+					} catch (ClassNotFoundException e) {
+						// Primitive types are resolved by the default.
+						return super.resolveClass(desc);
+					}
+				}
+				
+			};
+			
+			try {
+				return stream.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new UncheckedException(e);
+			} finally {
+				stream.close();
+			}
+		default:
+			throw new IOException("Unknown value tag [" + tag + "]");
+		}
+	}
+	
+	/**
+	 * Resolves the class of the specified name with the context class loader 
+	 * or the class loader of the entity type.
+	 */
+	Class<?> type(String name) throws ClassNotFoundException {
+		Class<?> type = classes.get(name);
+		
+		if (type == null) {
+			ClassLoader context = Thread.currentThread().getContextClassLoader();
+			
+			if (context != null) {
+				try {
+					type = Class.forName(name, false, context);
+				} catch (ClassNotFoundException e) {}
+			}
+			
+			if (type == null) {
+				type = Class.forName(name, false, loader);
+			}
+			
+			classes.put(name, type);
+		}
+		
+		return type;
+	}
+	
+}
@@ -16,10 +16,12 @@
 package org.eiichiro.acidhouse;
 
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
-import org.eiichiro.reverb.lang.UncheckedException;
+import org.eiichiro.acidhouse.metamodel.Accessor;
+import org.eiichiro.acidhouse.metamodel.Accessors;
 
 /**
  * {@code Entities} is a utility class to provide convenient methods for 
@@ -33,26 +35,68 @@ public class Entities {
 	
 	private static Map<Class<?>, Field> fields = new ConcurrentHashMap<Class<?>, Field>();
 	
+	private static Map<Class<?>, Accessor> keys = new ConcurrentHashMap<Class<?>, Accessor>();
+	
 	/**
 	 * Returns key value of the specified entity instance.
+	 * {@code String} and composite (object) key value is returned as it is 
+	 * without any conversion. Use {@link #longKeyValue(Object)} for the 
+	 * primitive integral key not to box the key value.
 	 * 
 	 * @param entity An entity instance.
 	 * @return The id value of the specified entity instance.
 	 */
 	public static Object keyValue(Object entity) {
-		Class<?> clazz = entity.getClass();
-		Field key = fields.get(clazz);
+		return keyAccessor(entity.getClass()).get(entity);
+	}
+	
+	/**
+	 * Returns integral key value of the specified entity instance as 
+	 * <code>long</code> without boxing.
+	 * 
+	 * @param entity An entity instance which has an integral key.
+	 * @return The key value of the specified entity instance.
+	 */
+	public static long longKeyValue(Object entity) {
+		return keyAccessor(entity.getClass()).getLong(entity);
+	}
+	
+	/**
+	 * Registers the key {@code Accessor} of the specified entity class.
+	 * This method is invoked by {@code Metamodels#metamodel(Class)} when the 
+	 * metamodel of the entity class is registered, so that the key lookups on 
+	 * the commit and lock paths do not resolve the key field.
+	 * 
+	 * @param clazz An entity class.
+	 */
+	public static void register(Class<?> clazz) {
+		keyAccessor(clazz);
+	}
+		
+	/**
+	 * Returns the {@code Accessor} to the key field of the specified entity 
+	 * class. If the bytecode generation is enabled by 
+	 * {@code Accessors#generation(boolean)}, the generated {@code Accessor} is 
+	 * returned.
+	 * 
+	 * @param clazz An entity class.
+	 * @return The {@code Accessor} to the key field of the specified entity 
+	 * class.
+	 */
+	public static Accessor keyAccessor(Class<?> clazz) {
+		Accessor key = keys.get(clazz);
 		
-		try {
-			if (key == null) {
-				return keyField(clazz).get(entity);
-			} else {
-				return key.get(entity);
+		if (key == null) {
+			key = Accessors.accessor(clazz, Collections.singletonList(keyField(clazz).getName()));
+			
+			if (Accessors.generation()) {
+				key = Accessors.generate(key);
 			}
 			
-		} catch (IllegalAccessException e) {
-			throw new UncheckedException(e);
+			keys.put(clazz, key);
 		}
+		
+		return key;
 	}
 	
 	/**
@@ -62,6 +106,12 @@ public class Entities {
 	 * @return The key field of the specified entity class.
 	 */
 	public static Field keyField(Class<?> clazz) {
+		Field key = fields.get(clazz);
+		
+		if (key != null) {
+			return key;
+		}
+		
 		for (Field field : clazz.getDeclaredFields()) {
 			if (field.getAnnotation(Key.class) != null) {
 				field.setAccessible(true);
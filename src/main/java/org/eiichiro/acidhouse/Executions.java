@@ -0,0 +1,746 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eiichiro.acidhouse.Aggregation.Accumulator;
+import org.eiichiro.acidhouse.CompoundOrder.Key;
+import org.eiichiro.acidhouse.metamodel.Metamodel;
+import org.eiichiro.acidhouse.metamodel.Property;
+import org.eiichiro.reverb.lang.UncheckedException;
+
+/**
+ * {@code Executions} provides the in-memory filtering, sorting and aggregation 
+ * for the {@code Command} implementations which post-process the fetched 
+ * entities, like this:
+ * <pre>
+ * public List&lt;E&gt; execute() {
+ * 	List&lt;E&gt; entities = Executions.filter(Filters.compile(filters), fetch());
+ * 	return Executions.sort(entities, orders);
+ * }
+ * </pre>
+ * The candidate set is processed on the calling thread by default. If the 
+ * parallelism is set with {@link #parallelism(int)} (or 
+ * <code>-Dorg.eiichiro.acidhouse.parallelism=&lt;threads&gt;</code>), the 
+ * candidate set larger than {@link #threshold()} is split into the chunks 
+ * which are processed on the shared worker threads: the filtered chunks are 
+ * concatenated in order, the sorted chunks are merged, and the 
+ * {@link Aggregation#accumulator()}s of the chunks are combined. The sort 
+ * larger than {@link #budget()} can be spilled to the temporary files with 
+ * {@link #sort(Metamodel, Iterator, Order...)}. The {@code Aggregation}s of 
+ * {@code GetTuple} are computed in one pass with 
+ * {@link #aggregate(Iterator, Aggregation...)}, and the grouped aggregation 
+ * of {@code GetGroups} is executed with 
+ * {@link #group(Aggregation, Iterator, Property...)}.
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public abstract class Executions {
+
+	private static volatile int threshold = Integer.getInteger(
+			"org.eiichiro.acidhouse.parallelism.threshold", 10000);
+			
+	private static volatile int budget = Integer.getInteger(
+			"org.eiichiro.acidhouse.sort.budget", 100000);
+			
+	private static volatile int parallelism;
+	
+	private static volatile ExecutorService executor;
+	
+	static {
+		parallelism(Integer.getInteger("org.eiichiro.acidhouse.parallelism", 0));
+	}
+	
+	private Executions() {}
+	
+	/**
+	 * Sets the number of the worker threads for the parallel execution. The 
+	 * parallel execution is disabled if the specified parallelism is less 
+	 * than 2. The worker threads of the previous parallelism finish the tasks 
+	 * in progress and then terminate; the executions which start afterward 
+	 * use the new worker threads.
+	 * 
+	 * @param parallelism The number of the worker threads.
+	 */
+	public static synchronized void parallelism(int parallelism) {
+		ExecutorService previous = executor;
+		ExecutorService executor = null;
+		
+		if (parallelism > 1) {
+			final AtomicInteger sequence = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable,
+							"acidhouse-execution-" + sequence.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+				
+			});
+		}
+		
+		Executions.executor = executor;
+		Executions.parallelism = (parallelism > 1) ? parallelism : 0;
+		
+		if (previous != null) {
+			previous.shutdown();
+		}
+	}
+	
+	/**
+	 * Returns the number of the worker threads for the parallel execution.
+	 * 
+	 * @return The number of the worker threads, or <code>0</code> if the 
+	 * parallel execution is disabled.
+	 */
+	public static int parallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * Sets the minimum size of the candidate set which is processed in 
+	 * parallel.
+	 * 
+	 * @param threshold The minimum size of the candidate set which is 
+	 * processed in parallel.
+	 */
+	public static void threshold(int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("'threshold' must be greater than [" + threshold + "]");
+		}
+		
+		Executions.threshold = threshold;
+	}
+	
+	/**
+	 * Returns the minimum size of the candidate set which is processed in 
+	 * parallel.
+	 * 
+	 * @return The minimum size of the candidate set which is processed in 
+	 * parallel.
+	 */
+	public static int threshold() {
+		return threshold;
+	}
+	
+	/**
+	 * Sets the maximum number of the entities held in-memory by the 
+	 * memory-bounded sort with {@link #sort(Metamodel, Iterator, Order...)}.
+	 * 
+	 * @param budget The maximum number of the entities held in-memory.
+	 */
+	public static void budget(int budget) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("'budget' must be greater than [" + budget + "]");
+		}
+		
+		Executions.budget = budget;
+	}
+	
+	/**
+	 * Returns the maximum number of the entities held in-memory by the 
+	 * memory-bounded sort (<code>-Dorg.eiichiro.acidhouse.sort.budget</code>, 
+	 * 100000 by default).
+	 * 
+	 * @return The maximum number of the entities held in-memory.
+	 */
+	public static int budget() {
+		return budget;
+	}
+	
+	/**
+	 * Returns the new list of the specified entities which match to the 
+	 * specified {@code Predicate}. The order of the entities is kept.
+	 * 
+	 * @param <E> The entity type.
+	 * @param predicate The {@code Predicate} the entities are filtered with.
+	 * @param entities The entities to be filtered.
+	 * @return The entities which match to the specified {@code Predicate}.
+	 */
+	public static <E> List<E> filter(final Predicate predicate, List<E> entities) {
+		List<List<E>> chunks = chunks(entities);
+		
+		if (chunks == null) {
+			return predicate.filter(entities);
+		}
+		
+		List<Callable<List<E>>> tasks = new ArrayList<Callable<List<E>>>(chunks.size());
+		
+		for (final List<E> chunk : chunks) {
+			tasks.add(new Callable<List<E>>() {
+
+				@Override
+				public List<E> call() throws Exception {
+					return predicate.filter(chunk);
+				}
+				
+			});
+		}
+		
+		List<E> filtered = new ArrayList<E>();
+		
+		for (List<E> result : invoke(tasks)) {
+			filtered.addAll(result);
+		}
+		
+		return filtered;
+	}
+	
+	/**
+	 * Returns the new list of the specified entities sorted by the specified 
+	 * {@code Order}s. The preceding {@code Order} takes priority, and the 
+	 * {@link Order#direction()} of each {@code Order} is applied. The sort is 
+	 * stable. Each sort key is read once per entity with 
+	 * {@link CompoundOrder}, and the key tuples of the chunks are sorted and 
+	 * merged in parallel.
+	 * 
+	 * @param <E> The entity type.
+	 * @param entities The entities to be sorted.
+	 * @param orders The {@code Order}s the entities are sorted by.
+	 * @return The sorted entities.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> List<E> sort(List<E> entities, Order<E, ?>... orders) {
+		final CompoundOrder<E> order = new CompoundOrder<E>(orders);
+		List<List<E>> chunks = chunks(entities);
+		
+		if (chunks == null) {
+			return order.sort(entities);
+		}
+		
+		List<Callable<List<Key<E>>>> tasks = new ArrayList<Callable<List<Key<E>>>>(chunks.size());
+		
+		for (final List<E> chunk : chunks) {
+			tasks.add(new Callable<List<Key<E>>>() {
+
+				@Override
+				public List<Key<E>> call() throws Exception {
+					List<Key<E>> keys = order.keys(chunk);
+					Collections.sort(keys, order.comparator());
+					return keys;
+				}
+				
+			});
+		}
+		
+		List<List<Key<E>>> runs = invoke(tasks);
+		
+		while (runs.size() > 1) {
+			List<Callable<List<Key<E>>>> merges = new ArrayList<Callable<List<Key<E>>>>();
+			
+			for (int i = 0; i < runs.size(); i += 2) {
+				final List<Key<E>> run1 = runs.get(i);
+				final List<Key<E>> run2 = (i + 1 < runs.size()) ? runs.get(i + 1) : null;
+				merges.add(new Callable<List<Key<E>>>() {
+
+					@Override
+					public List<Key<E>> call() throws Exception {
+						return (run2 == null) ? run1 : merge(run1, run2, order.comparator());
+					}
+					
+				});
+			}
+			
+			runs = invoke(merges);
+		}
+		
+		return CompoundOrder.entities(runs.get(0));
+	}
+	
+	/**
+	 * Returns the page of the specified entities sorted by the specified 
+	 * {@code Order}s; equivalent to slicing the result of 
+	 * {@link #sort(List, Order...)} from the specified offset up to the 
+	 * specified limit. When the page ends before the last entity, only the 
+	 * top (<code>offset</code> + <code>limit</code>) entities are kept on the 
+	 * bounded heap with {@link CompoundOrder#sort(List, int, int)} instead of 
+	 * sorting every entity. In parallel, each chunk keeps its own top 
+	 * entities and they are merged.
+	 * 
+	 * @param <E> The entity type.
+	 * @param entities The entities to be sorted.
+	 * @param offset The offset of the page.
+	 * @param limit The maximum size of the page.
+	 * @param orders The {@code Order}s the entities are sorted by.
+	 * @return The sorted page of the entities.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> List<E> sort(List<E> entities, int offset, int limit, Order<E, ?>... orders) {
+		final CompoundOrder<E> order = new CompoundOrder<E>(orders);
+		final int k = offset + limit;
+		List<List<E>> chunks = chunks(entities);
+		
+		if (chunks == null || offset < 0 || limit < 0) {
+			return order.sort(entities, offset, limit);
+		} else if (k < 0 || k >= entities.size()) {
+			return slice(sort(entities, orders), offset, limit);
+		}
+		
+		List<Callable<List<Key<E>>>> tasks = new ArrayList<Callable<List<Key<E>>>>(chunks.size());
+		
+		for (final List<E> chunk : chunks) {
+			tasks.add(new Callable<List<Key<E>>>() {
+
+				@Override
+				public List<Key<E>> call() throws Exception {
+					return order.top(chunk, Math.min(k, chunk.size()));
+				}
+				
+			});
+		}
+		
+		List<Key<E>> top = null;
+		
+		for (List<Key<E>> run : invoke(tasks)) {
+			top = (top == null) ? run : merge(top, run, order.comparator());
+			top = top.subList(0, Math.min(k, top.size()));
+		}
+		
+		return slice(CompoundOrder.entities(top), offset, limit);
+	}
+	
+	/**
+	 * Sorts the specified entities by the specified {@code Order}s within the 
+	 * memory {@link #budget()}. The entities are consumed from the specified 
+	 * {@code Iterator} (e.g. the cursor of the datastore query) and sorted 
+	 * in-memory while they fit in the budget, and returned as they are; beyond 
+	 * that, the sorted runs of the entities are spilled to the temporary files 
+	 * and streamed back through the k-way merge, so the entities on the heap 
+	 * stay bounded whatever the number of the entities is. The spilled 
+	 * entities are written through the specified {@code Metamodel} and read 
+	 * back into new instances, so their identity and the state which the 
+	 * {@code Metamodel} does not have (e.g. {@code @Transient} fields) are 
+	 * dropped. The sort is stable.
+	 * 
+	 * @param <E> The entity type.
+	 * @param metamodel The {@code Metamodel} of the entities, through which 
+	 * the entities are spilled.
+	 * @param entities The entities to be sorted.
+	 * @param orders The {@code Order}s the entities are sorted by.
+	 * @return The {@code SortedIterator} of the sorted entities.
+	 * @see SortedIterator
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> SortedIterator<E> sort(Metamodel<E> metamodel,
+			Iterator<? extends E> entities, Order<E, ?>... orders) {
+		if (metamodel == null) {
+			throw new IllegalArgumentException("'metamodel' must not be [" + metamodel + "]");
+		}
+		
+		if (entities == null) {
+			throw new IllegalArgumentException("'entities' must not be [" + entities + "]");
+		}
+		
+		return new SortedIterator<E>(metamodel, entities, budget, new CompoundOrder<E>(orders));
+	}
+	
+	/**
+	 * Aggregates the property values of the specified entities with the 
+	 * specified {@code Aggregation}. In parallel, the property values of each 
+	 * chunk are folded into its own {@link Aggregation#accumulator()}, and the 
+	 * {@code Accumulator}s are combined in the order of the chunks.
+	 * 
+	 * @param <T> The aggregation result type.
+	 * @param aggregation The {@code Aggregation} to be applied.
+	 * @param entities The entities which property values are aggregated.
+	 * @return The aggregation result.
+	 */
+	public static <T> T aggregate(final Aggregation<T> aggregation, List<?> entities) {
+		List<? extends List<?>> chunks = chunks(entities);
+		
+		if (chunks == null) {
+			return aggregation.apply(entities);
+		}
+		
+		List<Callable<Accumulator<T>>> tasks = new ArrayList<Callable<Accumulator<T>>>(chunks.size());
+		
+		for (final List<?> chunk : chunks) {
+			tasks.add(new Callable<Accumulator<T>>() {
+
+				@Override
+				public Accumulator<T> call() throws Exception {
+					Accumulator<T> accumulator = aggregation.accumulator();
+					
+					for (Object entity : chunk) {
+						accumulator.apply(entity);
+					}
+					
+					return accumulator;
+				}
+				
+			});
+		}
+		
+		List<Accumulator<T>> accumulators = invoke(tasks);
+		Accumulator<T> accumulator = accumulators.get(0);
+		
+		for (int i = 1; i < accumulators.size(); i++) {
+			accumulator.combine(accumulators.get(i));
+		}
+		
+		return accumulator.finish();
+	}
+	
+	/**
+	 * Aggregates the entities streamed from the specified iterator with every 
+	 * specified {@code Aggregation} in one pass; each entity is folded into 
+	 * the {@link Aggregation#accumulator()}s of all the {@code Aggregation}s 
+	 * before the next one is read.
+	 * 
+	 * @param entities The iterator of the entities to be aggregated.
+	 * @param aggregations The {@code Aggregation}s to be applied.
+	 * @return The {@code Tuple} of the aggregation results.
+	 */
+	public static Tuple aggregate(Iterator<?> entities, Aggregation<?>... aggregations) {
+		List<Accumulator<?>> accumulators = accumulators(aggregations);
+		
+		while (entities.hasNext()) {
+			Object entity = entities.next();
+			
+			for (Accumulator<?> accumulator : accumulators) {
+				accumulator.apply(entity);
+			}
+		}
+		
+		return tuple(aggregations, accumulators);
+	}
+	
+	/**
+	 * Aggregates the specified entities with every specified 
+	 * {@code Aggregation} in one pass. In parallel, each chunk is folded into 
+	 * its own {@code Accumulator}s, and the {@code Accumulator}s of each 
+	 * {@code Aggregation} are combined in the order of the chunks.
+	 * 
+	 * @param entities The entities to be aggregated.
+	 * @param aggregations The {@code Aggregation}s to be applied.
+	 * @return The {@code Tuple} of the aggregation results.
+	 * @see #aggregate(Iterator, Aggregation...)
+	 */
+	public static Tuple aggregate(List<?> entities, final Aggregation<?>... aggregations) {
+		List<? extends List<?>> chunks = chunks(entities);
+		
+		if (chunks == null) {
+			return aggregate(entities.iterator(), aggregations);
+		}
+		
+		// Validates the aggregations on the calling thread.
+		accumulators(aggregations);
+		List<Callable<List<Accumulator<?>>>> tasks
+				= new ArrayList<Callable<List<Accumulator<?>>>>(chunks.size());
+				
+		for (final List<?> chunk : chunks) {
+			tasks.add(new Callable<List<Accumulator<?>>>() {
+
+				@Override
+				public List<Accumulator<?>> call() throws Exception {
+					List<Accumulator<?>> accumulators = accumulators(aggregations);
+					
+					for (Object entity : chunk) {
+						for (Accumulator<?> accumulator : accumulators) {
+							accumulator.apply(entity);
+						}
+					}
+					
+					return accumulators;
+				}
+				
+			});
+		}
+		
+		List<List<Accumulator<?>>> results = invoke(tasks);
+		List<Accumulator<?>> accumulators = results.get(0);
+		
+		for (int i = 1; i < results.size(); i++) {
+			for (int j = 0; j < accumulators.size(); j++) {
+				combine(accumulators.get(j), results.get(i).get(j));
+			}
+		}
+		
+		return tuple(aggregations, accumulators);
+	}
+	
+	/**
+	 * Aggregates the property values of the entities streamed from the 
+	 * specified iterator per group of the values of the specified properties 
+	 * (hash aggregation). Each entity is folded into the 
+	 * {@link Aggregation#accumulator()} of its group in one pass, so the heap 
+	 * holds one {@code Accumulator} per group rather than the entities.
+	 * 
+	 * @param <T> The aggregation result type.
+	 * @param aggregation The {@code Aggregation} to be applied.
+	 * @param entities The iterator of the entities to be aggregated.
+	 * @param properties The properties by which the entities are grouped.
+	 * @return The map from the group key (the list of the values of the 
+	 * specified properties) to the aggregation result of the group, in the 
+	 * order the groups are encountered.
+	 */
+	public static <T> Map<List<Object>, T> group(Aggregation<T> aggregation,
+			Iterator<?> entities, Property<?, ?>... properties) {
+		return finish(groups(aggregation, entities, properties));
+	}
+	
+	/**
+	 * Aggregates the property values of the specified entities per group of 
+	 * the values of the specified properties. In parallel, each chunk is 
+	 * aggregated into its own groups, and the {@code Accumulator}s of the same 
+	 * group are combined in the order of the chunks.
+	 * 
+	 * @param <T> The aggregation result type.
+	 * @param aggregation The {@code Aggregation} to be applied.
+	 * @param entities The entities to be aggregated.
+	 * @param properties The properties by which the entities are grouped.
+	 * @return The map from the group key (the list of the values of the 
+	 * specified properties) to the aggregation result of the group, in the 
+	 * order the groups are encountered.
+	 * @see #group(Aggregation, Iterator, Property...)
+	 */
+	public static <T> Map<List<Object>, T> group(final Aggregation<T> aggregation,
+			List<?> entities, final Property<?, ?>... properties) {
+		List<? extends List<?>> chunks = chunks(entities);
+		
+		if (chunks == null) {
+			return group(aggregation, entities.iterator(), properties);
+		}
+		
+		List<Callable<Map<List<Object>, Accumulator<T>>>> tasks
+				= new ArrayList<Callable<Map<List<Object>, Accumulator<T>>>>(chunks.size());
+				
+		for (final List<?> chunk : chunks) {
+			tasks.add(new Callable<Map<List<Object>, Accumulator<T>>>() {
+
+				@Override
+				public Map<List<Object>, Accumulator<T>> call() throws Exception {
+					return groups(aggregation, chunk.iterator(), properties);
+				}
+				
+			});
+		}
+		
+		List<Map<List<Object>, Accumulator<T>>> results = invoke(tasks);
+		Map<List<Object>, Accumulator<T>> groups = results.get(0);
+		
+		for (int i = 1; i < results.size(); i++) {
+			for (Map.Entry<List<Object>, Accumulator<T>> entry : results.get(i).entrySet()) {
+				Accumulator<T> accumulator = groups.get(entry.getKey());
+				
+				if (accumulator == null) {
+					groups.put(entry.getKey(), entry.getValue());
+				} else {
+					accumulator.combine(entry.getValue());
+				}
+			}
+		}
+		
+		return finish(groups);
+	}
+	
+	/**
+	 * Returns the new list of the specified entities from the specified offset 
+	 * up to the specified limit.
+	 */
+	static <E> List<E> slice(List<E> entities, int offset, int limit) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("'offset' must not be [" + offset + "]");
+		}
+		
+		if (limit < 0) {
+			throw new IllegalArgumentException("'limit' must not be [" + limit + "]");
+		}
+		
+		int from = Math.min(offset, entities.size());
+		int to = (limit > entities.size() - from) ? entities.size() : from + limit;
+		return new ArrayList<E>(entities.subList(from, to));
+	}
+	
+	private static List<Accumulator<?>> accumulators(Aggregation<?>... aggregations) {
+		if (aggregations == null) {
+			throw new IllegalArgumentException("'aggregations' must not be [" + aggregations + "]");
+		}
+		
+		List<Accumulator<?>> accumulators = new ArrayList<Accumulator<?>>(aggregations.length);
+		
+		for (Aggregation<?> aggregation : aggregations) {
+			if (aggregation == null) {
+				throw new IllegalArgumentException("'aggregations' must not contain [" + aggregation + "]");
+			}
+			
+			accumulators.add(aggregation.accumulator());
+		}
+		
+		return accumulators;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> void combine(Accumulator<T> accumulator, Accumulator<?> other) {
+		accumulator.combine((Accumulator<T>) other);
+	}
+	
+	private static Tuple tuple(Aggregation<?>[] aggregations, List<Accumulator<?>> accumulators) {
+		List<Object> values = new ArrayList<Object>(accumulators.size());
+		
+		for (Accumulator<?> accumulator : accumulators) {
+			values.add(accumulator.finish());
+		}
+		
+		return new Tuple(Arrays.asList(aggregations), values);
+	}
+	
+	private static <T> Map<List<Object>, Accumulator<T>> groups(Aggregation<T> aggregation,
+			Iterator<?> entities, Property<?, ?>... properties) {
+		if (properties == null) {
+			throw new IllegalArgumentException("'properties' must not be [" + properties + "]");
+		}
+		
+		for (Property<?, ?> property : properties) {
+			if (property == null) {
+				throw new IllegalArgumentException("'properties' must not contain [" + property + "]");
+			}
+		}
+		
+		Map<List<Object>, Accumulator<T>> groups = new LinkedHashMap<List<Object>, Accumulator<T>>();
+		
+		while (entities.hasNext()) {
+			Object entity = entities.next();
+			Object[] values = new Object[properties.length];
+			
+			for (int i = 0; i < properties.length; i++) {
+				values[i] = properties[i].get(entity);
+			}
+			
+			List<Object> key = Arrays.asList(values);
+			Accumulator<T> accumulator = groups.get(key);
+			
+			if (accumulator == null) {
+				accumulator = aggregation.accumulator();
+				groups.put(key, accumulator);
+			}
+			
+			accumulator.apply(entity);
+		}
+		
+		return groups;
+	}
+	
+	private static <T> Map<List<Object>, T> finish(Map<List<Object>, Accumulator<T>> groups) {
+		Map<List<Object>, T> results = new LinkedHashMap<List<Object>, T>(groups.size() * 4 / 3 + 1);
+		
+		for (Map.Entry<List<Object>, Accumulator<T>> entry : groups.entrySet()) {
+			results.put(entry.getKey(), entry.getValue().finish());
+		}
+		
+		return results;
+	}
+	
+	private static <E> List<List<E>> chunks(List<E> entities) {
+		int parallelism = Executions.parallelism;
+		
+		if (parallelism == 0 || entities.size() < threshold) {
+			return null;
+		}
+		
+		List<List<E>> chunks = new ArrayList<List<E>>(parallelism);
+		List<E> batch = (entities instanceof RandomAccess) ? entities : new ArrayList<E>(entities);
+		int size = (batch.size() + parallelism - 1) / parallelism;
+		
+		for (int i = 0; i < batch.size(); i += size) {
+			chunks.add(batch.subList(i, Math.min(i + size, batch.size())));
+		}
+		
+		return chunks;
+	}
+	
+	private static <T> List<T> invoke(List<Callable<T>> tasks) {
+		ExecutorService executor = Executions.executor;
+		List<T> results = new ArrayList<T>(tasks.size());
+		
+		try {
+			List<Future<T>> futures = null;
+			
+			try {
+				if (executor != null) {
+					futures = executor.invokeAll(tasks);
+				}
+			} catch (RejectedExecutionException e) {
+				// The executor has been replaced by parallelism(int) and shut
+				// down; runs the tasks on the current thread.
+			}
+			
+			if (futures == null) {
+				for (Callable<T> task : tasks) {
+					results.add(task.call());
+				}
+			} else {
+				for (Future<T> future : futures) {
+					results.add(future.get());
+				}
+			}
+			
+			return results;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			
+			throw new UncheckedException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedException(e);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new UncheckedException(e);
+		}
+	}
+	
+	private static <E> List<E> merge(List<E> run1, List<E> run2, Comparator<E> comparator) {
+		List<E> merged = new ArrayList<E>(run1.size() + run2.size());
+		int i = 0;
+		int j = 0;
+		
+		while (i < run1.size() && j < run2.size()) {
+			// Takes from the former run on tie to keep the sort stable.
+			if (comparator.compare(run2.get(j), run1.get(i)) < 0) {
+				merged.add(run2.get(j++));
+			} else {
+				merged.add(run1.get(i++));
+			}
+		}
+		
+		merged.addAll(run1.subList(i, run1.size()));
+		merged.addAll(run2.subList(j, run2.size()));
+		return merged;
+	}
+	
+}
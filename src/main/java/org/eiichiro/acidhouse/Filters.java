@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eiichiro.acidhouse.ComparableFilter.Operator;
+import org.eiichiro.acidhouse.Predicate.FilterTerm;
+import org.eiichiro.acidhouse.Predicate.PropertyTerm;
+import org.eiichiro.acidhouse.Predicate.Term;
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.Property;
+
+/**
+ * {@code Filters} provides {@code Filter} control methods for the 
+ * {@code Command} implementations.
+ * {@link #compile(Filter...)} fuses the {@code Filter}s passed to command's 
+ * {@code filter(Filter...)} method into one {@code Predicate}, like this:
+ * <pre>
+ * public List&lt;E&gt; execute() {
+ * 	Predicate predicate = Filters.compile(filters);
+ * 
+ * 	if (!predicate.satisfiable()) {
+ * 		return new ArrayList&lt;E&gt;();
+ * 	}
+ * 	List&lt;E&gt; entities = new ArrayList&lt;E&gt;();
+ * 
+ * 	for (E entity : fetch()) {
+ * 		if (predicate.matches(entity)) {
+ * 			entities.add(entity);
+ * 		}
+ * 	}
+ * 
+ * 	return entities;
+ * }
+ * </pre>
+ * {@link #and(Filter...)}, {@link #or(Filter...)} and {@link #not(Filter)} 
+ * combine {@code Filter}s into {@code CompositeFilter}.
+ * 
+ * @see Predicate
+ * @see CompositeFilter
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public abstract class Filters {
+
+	private static final Comparator<Term> COST = new Comparator<Term>() {
+
+		@Override
+		public int compare(Term term1, Term term2) {
+			return (term1.cost() < term2.cost()) ? -1
+					: ((term1.cost() == term2.cost()) ? 0 : 1);
+		}
+		
+	};
+	
+	private static final Comparator<Filter<?>> RANK = new Comparator<Filter<?>>() {
+
+		@Override
+		public int compare(Filter<?> filter1, Filter<?> filter2) {
+			return rank(filter1) - rank(filter2);
+		}
+		
+	};
+	
+	private Filters() {}
+	
+	/**
+	 * Compiles the specified {@code Filter}s combined with "logical and" into 
+	 * one {@code Predicate}.
+	 * {@code PropertyFilter}s on the same property are grouped so that the 
+	 * property is read once per entity. The groups and the {@code Filter}s in 
+	 * each group are ordered by the estimated cost and selectivity: equality, 
+	 * IN, range and inequality in this order, and the shallower property 
+	 * first. Any other {@code Filter} is evaluated last as it is.
+	 * 
+	 * @param filters The {@code Filter}s to be compiled.
+	 * @return The {@code Predicate} compiled from the specified 
+	 * {@code Filter}s.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Predicate compile(Filter<?>... filters) {
+		if (filters == null) {
+			throw new IllegalArgumentException("'filters' must not be [" + filters + "]");
+		}
+		
+		Map<List<Object>, List<PropertyFilter<?>>> groups
+				= new LinkedHashMap<List<Object>, List<PropertyFilter<?>>>();
+		List<Term> terms = new ArrayList<Term>();
+		
+		for (Filter<?> filter : flatten(filters, new ArrayList<Filter<?>>())) {
+			if (filter instanceof PropertyFilter<?> && filter.property() != null) {
+				List<Object> key = key(filter.property());
+				List<PropertyFilter<?>> group = groups.get(key);
+				
+				if (group == null) {
+					group = new ArrayList<PropertyFilter<?>>();
+					groups.put(key, group);
+				}
+				
+				group.add((PropertyFilter<?>) filter);
+			} else {
+				terms.add(new FilterTerm(filter, Integer.MAX_VALUE));
+			}
+		}
+		
+		List<Range<?>> ranges = new ArrayList<Range<?>>();
+		
+		for (List<PropertyFilter<?>> group : groups.values()) {
+			int depth = group.get(0).property().path().size();
+			Range<?> range = range(group);
+			List<PropertyFilter<?>> others = new ArrayList<PropertyFilter<?>>();
+			
+			for (PropertyFilter<?> filter : group) {
+				if (range == null || !range.filters().contains(filter)) {
+					others.add(filter);
+				}
+			}
+			
+			Collections.sort(others, RANK);
+			
+			if (range != null) {
+				ranges.add(range);
+				others.add(0, range);
+			}
+			
+			PropertyFilter<Object>[] ordered = array(others);
+			int cost = rank(ordered[0]) * 16 + Math.min(depth, 15);
+			
+			if (group.size() == 1) {
+				// Lets the single filter read the property by itself (e.g.
+				// IntFilter reads the primitive value without boxing).
+				terms.add(new FilterTerm(group.get(0), cost));
+			} else {
+				terms.add(new PropertyTerm((Property<?, Object>) group.get(0).property(), ordered, cost));
+			}
+		}
+		
+		Collections.sort(terms, COST);
+		return new Predicate(Arrays.asList(filters), terms, ranges);
+	}
+	
+	/**
+	 * Combines the specified {@code Filter}s with "logical and".
+	 * 
+	 * @param filters The {@code Filter}s to be combined.
+	 * @return The {@code CompositeFilter} of the specified {@code Filter}s.
+	 */
+	public static CompositeFilter and(Filter<?>... filters) {
+		return new CompositeFilter(CompositeFilter.Operator.AND, filters);
+	}
+	
+	/**
+	 * Combines the specified {@code Filter}s with "logical or".
+	 * 
+	 * @param filters The {@code Filter}s to be combined.
+	 * @return The {@code CompositeFilter} of the specified {@code Filter}s.
+	 */
+	public static CompositeFilter or(Filter<?>... filters) {
+		return new CompositeFilter(CompositeFilter.Operator.OR, filters);
+	}
+	
+	/**
+	 * Negates the specified {@code Filter}.
+	 * 
+	 * @param filter The {@code Filter} to be negated.
+	 * @return The {@code CompositeFilter} of the specified {@code Filter}.
+	 */
+	public static CompositeFilter not(Filter<?> filter) {
+		return new CompositeFilter(CompositeFilter.Operator.NOT, filter);
+	}
+	
+	/**
+	 * Evaluates the specified entities against the specified {@code Filter} 
+	 * in a batch. Only the entities which bit is set in the specified 
+	 * selection are evaluated, and the bit of the entity which does not match 
+	 * to the {@code Filter} is cleared. If the {@code Filter} is 
+	 * {@code BatchFilter}, this method invokes its 
+	 * {@link BatchFilter#matches(List, BitSet)}; otherwise evaluates the 
+	 * entities one by one with {@link Filter#matches(Object)}.
+	 * 
+	 * @param filter The {@code Filter} to be evaluated.
+	 * @param entities The entities to be filtered. {@code RandomAccess} list 
+	 * is expected.
+	 * @param selection The bits of the entities to be evaluated.
+	 */
+	public static void matches(Filter<?> filter, List<?> entities, BitSet selection) {
+		if (filter == null) {
+			throw new IllegalArgumentException("'filter' must not be [" + filter + "]");
+		}
+		
+		if (filter instanceof BatchFilter<?>) {
+			((BatchFilter<?>) filter).matches(entities, selection);
+			return;
+		}
+		
+		int size = entities.size();
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < size; i = selection.nextSetBit(i + 1)) {
+			if (!filter.matches(entities.get(i))) {
+				selection.clear(i);
+			}
+		}
+	}
+	
+	/**
+	 * Merges the specified results of the OR branches into one list without 
+	 * duplication. The entities are identified by 
+	 * {@link Entities#keyValue(Object)} and the first occurrence is kept.
+	 * 
+	 * @param <E> The entity type.
+	 * @param results The results of the OR branches.
+	 * @return The merged result.
+	 */
+	public static <E> List<E> union(List<? extends List<E>> results) {
+		if (results == null) {
+			throw new IllegalArgumentException("'results' must not be [" + results + "]");
+		}
+		
+		Set<Object> keys = new HashSet<Object>();
+		List<E> union = new ArrayList<E>();
+		
+		for (List<E> result : results) {
+			for (E entity : result) {
+				Object key = Entities.keyValue(entity);
+				
+				if (key == null || keys.add(Arrays.asList(entity.getClass(), key))) {
+					union.add(entity);
+				}
+			}
+		}
+		
+		return union;
+	}
+	
+	/** Flattens the nested "logical and" {@code CompositeFilter}s. */
+	static List<Filter<?>> flatten(Filter<?>[] filters, List<Filter<?>> flattened) {
+		for (Filter<?> filter : filters) {
+			if (filter instanceof CompositeFilter
+					&& ((CompositeFilter) filter).operator() == CompositeFilter.Operator.AND) {
+				List<Filter<?>> operands = ((CompositeFilter) filter).filters();
+				flatten(operands.toArray(new Filter<?>[operands.size()]), flattened);
+			} else {
+				flattened.add(filter);
+			}
+		}
+		
+		return flattened;
+	}
+	
+	/**
+	 * Merges the {@code ComparableFilter}s, {@code InFilter}s and 
+	 * {@code StartsWithFilter}s in the specified group on the same property 
+	 * into one {@code Range}.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Range<?> range(List<PropertyFilter<?>> group) {
+		Range range = null;
+		
+		for (PropertyFilter<?> filter : group) {
+			if (filter instanceof ComparableFilter<?>
+					&& ((ComparableFilter<?>) filter).value() != null) {
+				range = (range == null) ? new Range((ComparableProperty) filter.property()) : range;
+				range.merge((ComparableFilter) filter);
+			} else if (filter instanceof InFilter<?>) {
+				range = (range == null) ? new Range((ComparableProperty) filter.property()) : range;
+				range.merge((InFilter) filter);
+			} else if (filter instanceof StartsWithFilter) {
+				range = (range == null) ? new Range((ComparableProperty) filter.property()) : range;
+				range.merge((StartsWithFilter) filter);
+			}
+		}
+		
+		if (range != null) {
+			range.normalize();
+		}
+		
+		return range;
+	}
+	
+	/**
+	 * Copies the specified {@code PropertyFilter}s into the array; the generic 
+	 * array can be created only with the raw type.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static PropertyFilter<Object>[] array(List<PropertyFilter<?>> filters) {
+		return filters.toArray(new PropertyFilter[filters.size()]);
+	}
+	
+	/**
+	 * Reads the property values of the entities selected in the specified 
+	 * selection at once; the value of the unselected entity is 
+	 * <code>null</code>.
+	 */
+	static Object[] values(Property<?, ?> property, List<?> entities, BitSet selection) {
+		Object[] values = new Object[entities.size()];
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			values[i] = property.get(entities.get(i));
+		}
+		
+		return values;
+	}
+	
+	static List<Object> key(Property<?, ?> property) {
+		Object root = (property.metamodel() == null) ? null
+				: property.metamodel().root().type();
+		return Arrays.<Object>asList(root, property.path());
+	}
+	
+	private static int rank(Filter<?> filter) {
+		if (filter instanceof Range<?>) {
+			Range<?> range = (Range<?>) filter;
+			
+			if (range.isEmpty()) {
+				return 0;
+			} else if (range.values() != null) {
+				return (range.values().size() == 1) ? 0 : 1;
+			} else if (range.lower() != null || range.upper() != null) {
+				return 2;
+			} else {
+				return 3;
+			}
+		} else if (filter instanceof ComparableFilter<?>) {
+			Operator operator = ((ComparableFilter<?>) filter).operator();
+			
+			if (operator == Operator.EQUAL_TO) {
+				return 0;
+			} else if (operator == Operator.NOT_EQUAL_TO) {
+				return 3;
+			} else {
+				return 2;
+			}
+		} else if (filter instanceof InFilter<?>) {
+			return 1;
+		} else if (filter instanceof StartsWithFilter) {
+			return 2;
+		} else {
+			return 4;
+		}
+	}
+	
+}
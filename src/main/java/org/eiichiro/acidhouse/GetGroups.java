@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code GetGroups} is a command interface to get the scalar value per group 
+ * as the result for aggregating of entity list matches to the specified 
+ * {@code Filter}s, grouped by the values of the properties specified to 
+ * {@link AggregationSession#groupBy(Aggregation, org.eiichiro.acidhouse.metamodel.Property...)}.
+ * This command's execution result is the map from the group key, the list of 
+ * the grouping property values in the specified order, to the aggregation 
+ * result of the group, in the order the groups are encountered.
+ * You can build &amp; execute this command as the following code, in App 
+ * Engine:
+ * <pre>
+ * import org.eiichiro.acidhouse.AggregationSession;
+ * import org.eiichiro.acidhouse.appengine.AppEngineDatastoreSession;
+ * ...
+ * 
+ * // Create 'Session' instance which supports 'AggregationSession'.
+ * AggregationSession session = new AppEngineDatastoreSession();
+ * // Get metamodel instance of 'Entity3' class.
+ * Entity3$ entity3$ = Metamodels.metamodel(Entity3.class);
+ * // Get summary of 'i' field of the 'Entity3' entities which their 'i' field
+ * // is less than 5, per 'name' field.
+ * Map&lt;List&lt;Object&gt;, Integer&gt; sums = session
+ * 		.groupBy(Aggregations.sum(entity3$.i), entity3$.name)
+ * 		.filter(entity3$.i.lessThan(5))
+ * 		.execute();
+ * </pre>
+ * The implementation can push the grouping down to the datastore where it is 
+ * supported, or fold the streamed entities into one {@code Accumulator} per 
+ * group in one scan with 
+ * {@link Executions#group(Aggregation, java.util.Iterator, org.eiichiro.acidhouse.metamodel.Property...)}.
+ * 
+ * @see Aggregation
+ * @see Aggregations
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface GetGroups<E, R> extends Command<Map<List<Object>, R>> {
+
+	/**
+	 * Qualifies entities to be aggregated with the specified {@code Filter}s.
+	 * Each of the specified filters is combined with "logical and".
+	 * 
+	 * @param filters {@code Filter}s to qualify the aggregated entities.
+	 * @return The {@code GetGroups} which the aggregated entities are 
+	 * qualified by the specified filters.
+	 */
+	public GetGroups<E, R> filter(Filter<?>... filters);
+	
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+/**
+ * {@code GetTuple} is a command interface to get the results of several 
+ * {@code Aggregation}s of entity list matches to the specified 
+ * {@code Filter}s in one pass over the entities. This command's execution 
+ * result is the {@code Tuple} of the aggregation results.
+ * You can build &amp; execute this command as the following code, in App 
+ * Engine:
+ * <pre>
+ * import org.eiichiro.acidhouse.AggregationSession;
+ * import org.eiichiro.acidhouse.appengine.AppEngineDatastoreSession;
+ * ...
+ * 
+ * // Create 'Session' instance which supports 'AggregationSession'.
+ * AggregationSession session = new AppEngineDatastoreSession();
+ * // Get metamodel instance of 'Entity3' class.
+ * Entity3$ entity3$ = Metamodels.metamodel(Entity3.class);
+ * // Get min, max and summary of 'i' field of the 'Entity3' entities which
+ * // their 'i' field is less than 5.
+ * Aggregation&lt;Integer&gt; min = Aggregations.min(entity3$.i);
+ * Aggregation&lt;Integer&gt; max = Aggregations.max(entity3$.i);
+ * Aggregation&lt;Integer&gt; sum = Aggregations.sum(entity3$.i);
+ * Tuple tuple = session
+ * 		.get(min, max, sum)
+ * 		.filter(entity3$.i.lessThan(5))
+ * 		.execute();
+ * int i = tuple.get(max);
+ * </pre>
+ * The implementation can fold the streamed entities into the 
+ * {@code Accumulator}s of every {@code Aggregation} at once with 
+ * {@link Executions#aggregate(java.util.Iterator, Aggregation...)}.
+ * 
+ * @see Tuple
+ * @see Aggregation
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface GetTuple<E> extends Command<Tuple> {
+
+	/**
+	 * Specifies sort orders by which the entities are passed to the 
+	 * {@code Aggregation}s.
+	 * 
+	 * @param orders The sort orders by which the entities are sorted.
+	 * @return The {@code GetTuple} which the entities passed to the 
+	 * {@code Aggregation}s are sorted by the specified sort orders.
+	 */
+	public GetTuple<E> sort(Order<?, ?>... orders);
+	
+	/**
+	 * Qualifies entities to be aggregated with the specified {@code Filter}s.
+	 * Each of the specified filters is combined with "logical and".
+	 * 
+	 * @param filters {@code Filter}s to qualify the aggregated entities.
+	 * @return The {@code GetTuple} which the aggregated entities are 
+	 * qualified by the specified filters.
+	 */
+	public GetTuple<E> filter(Filter<?>... filters);
+	
+}
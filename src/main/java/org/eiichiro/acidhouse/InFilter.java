@@ -15,8 +15,13 @@
  */
 package org.eiichiro.acidhouse;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eiichiro.acidhouse.ComparableFilter.Operator;
 import org.eiichiro.acidhouse.metamodel.ComparableProperty;
@@ -29,16 +34,35 @@ import org.eiichiro.acidhouse.metamodel.Property;
  * SQL 'IN' predicate).
  * You can get this instance from {@code ComparableProperty#in(Comparable...)} 
  * method.
+ * The membership test is decided once at the construction time according to 
+ * the number and type of the values: the values are tested one by one if only 
+ * a few values are specified, hashed if every value is of the type which 
+ * {@code equals(Object)} is consistent with {@code compareTo(Object)} (e.g.
+ * {@code String}, {@code Long}, enum), and binary-searched in the sorted 
+ * array otherwise. The <code>null</code> value in the specified values never 
+ * matches, and the <code>null</code> property value never matches whatever 
+ * the number of the values is.
  * 
  * @see ComparableProperty
  * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
  */
-public class InFilter<T extends Comparable<T>> implements Filter<T> {
+public class InFilter<T extends Comparable<T>> implements PropertyFilter<T>, BatchFilter<T> {
 
+	private static final int THRESHOLD = 8;
+	
+	private static final Set<Class<?>> HASHABLES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+			String.class, Integer.class, Long.class, Short.class, Byte.class,
+			Character.class, Boolean.class, Double.class, Float.class,
+			BigInteger.class));
+			
 	private final Property<?, T> property;
 	
 	private final List<T> values;
 	
+	private final Set<T> hashed;
+	
+	private final Object[] sorted;
+	
 	/**
 	 * Constructs a new {@code InFilter} instance with the specified 
 	 * {@code ComparableProperty} instance and values.
@@ -60,7 +84,9 @@ public class InFilter<T extends Comparable<T>> implements Filter<T> {
 		}
 		
 		this.property = property;
-		this.values = Arrays.asList(values);
+		this.values = Arrays.asList(values.clone());
+		this.hashed = hashed(this.values);
+		this.sorted = (hashed == null) ? sorted(this.values) : null;
 	}
 	
 	/**
@@ -84,7 +110,9 @@ public class InFilter<T extends Comparable<T>> implements Filter<T> {
 		}
 		
 		this.property = property;
-		this.values = values;
+		this.values = new ArrayList<T>(values);
+		this.hashed = hashed(this.values);
+		this.sorted = (hashed == null) ? sorted(this.values) : null;
 	}
 	
 	/**
@@ -107,10 +135,29 @@ public class InFilter<T extends Comparable<T>> implements Filter<T> {
 	 */
 	@Override
 	public boolean matches(Object entity) {
-		T t = property.get(entity);
+		return evaluate(property.get(entity));
+	}
+		
+	/**
+	 * Indicates whether the specified property value matches to this 
+	 * {@code InFilter} or not.
+	 * 
+	 * @param t The property value to be evaluated.
+	 * @return Whether the specified property value matches to this 
+	 * {@code InFilter} or not.
+	 */
+	@Override
+	public boolean evaluate(T t) {
+		if (t == null) {
+			return false;
+		} else if (hashed != null) {
+			return hashed.contains(t);
+		} else if (sorted != null) {
+			return Arrays.binarySearch(sorted, t) >= 0;
+		}
 		
 		for (T value : values) {
-			if (t.compareTo(value) == 0) {
+			if (value != null && t.compareTo(value) == 0) {
 				return true;
 			}
 		}
@@ -118,6 +165,23 @@ public class InFilter<T extends Comparable<T>> implements Filter<T> {
 		return false;
 	}
 
+	/**
+	 * Evaluates the specified entities in a batch.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		Object[] values = Filters.values(property, entities, selection);
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			if (!evaluate((T) values[i])) {
+				selection.clear(i);
+			}
+		}
+	}
+	
 	/**
 	 * Returns values to be tested.
 	 * 
@@ -147,8 +211,60 @@ public class InFilter<T extends Comparable<T>> implements Filter<T> {
 		return builder.append(")").toString();
 	}
 	
+	private static <T> Set<T> hashed(List<T> values) {
+		if (values.size() < THRESHOLD) {
+			return null;
+		}
+		
+		Set<T> hashed = new HashSet<T>();
+		Class<?> type = null;
+		
+		for (T value : values) {
+			if (value == null) {
+				continue;
+			}
+			
+			if (type == null) {
+				type = value.getClass();
+				
+				if (!HASHABLES.contains(type) && !type.isEnum()) {
+					return null;
+				}
+			} else if (value.getClass() != type) {
+				return null;
+			}
+			
+			hashed.add(value);
+		}
+		
+		return hashed;
+	}
+	
+	private static Object[] sorted(List<?> values) {
+		if (values.size() < THRESHOLD) {
+			return null;
+		}
+		
+		List<Object> nonNulls = new ArrayList<Object>(values.size());
+		
+		for (Object value : values) {
+			if (value != null) {
+				nonNulls.add(value);
+			}
+		}
+		
+		Object[] sorted = nonNulls.toArray();
+		
+		try {
+			Arrays.sort(sorted);
+			return sorted;
+		} catch (ClassCastException e) {
+			return null;
+		}
+	}
+	
 	private String toFilterString(final Object object) {
-		return (object instanceof String) ? "\"" + object + "\"" : object.toString();
+		return (object instanceof String) ? "\"" + object + "\"" : String.valueOf(object);
 	}
 	
 }
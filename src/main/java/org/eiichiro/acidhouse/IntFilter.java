@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import org.eiichiro.acidhouse.metamodel.IntProperty;
+
+/**
+ * {@code IntFilter} is a {@code ComparableFilter} specialized for 
+ * <code>int</code> property. It reads the property value with 
+ * {@code Accessor#getLong(Object)} and compares it as <code>long</code>
+ * without boxing.
+ * You can get this instance from {@code IntProperty}'s filtering methods.
+ * 
+ * @see IntProperty
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class IntFilter extends IntegralFilter<Integer> {
+	
+	/**
+	 * Constructs a new {@code IntFilter} instance with the specified 
+	 * {@code IntProperty}, property value and operator type.
+	 * 
+	 * @param property The {@code IntProperty} instance
+	 * @param value The property value
+	 * @param operator The operator type.
+	 */
+	public IntFilter(IntProperty<?> property, int value, Operator operator) {
+		super(property, value, operator);
+	}
+	
+}
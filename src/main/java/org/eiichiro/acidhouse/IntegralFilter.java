@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.eiichiro.acidhouse.metamodel.Accessor;
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+
+/**
+ * {@code IntegralFilter} is the base of {@code IntFilter} and 
+ * {@code LongFilter}. It reads the property value with 
+ * {@code Accessor#getLong(Object)}, which the <code>int</code> property is 
+ * widened by without boxing, and compares it as <code>long</code>.
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+abstract class IntegralFilter<T extends Number & Comparable<T>> extends ComparableFilter<T> {
+
+	private final long value;
+	
+	IntegralFilter(ComparableProperty<?, T> property, T value, Operator operator) {
+		super(property, value, operator);
+		this.value = value.longValue();
+	}
+	
+	/**
+	 * Indicates the specified entity instance matches to this 
+	 * {@code Filter}.
+	 */
+	@Override
+	public boolean matches(Object entity) {
+		return evaluate(property().accessor().getLong(entity));
+	}
+	
+	/**
+	 * Indicates the specified property value matches to this 
+	 * {@code Filter}.
+	 */
+	@Override
+	public boolean evaluate(T value) {
+		return evaluate(value.longValue());
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch; the property values are 
+	 * read into <code>long</code> array at once and compared in a tight loop.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		Accessor accessor = property().accessor();
+		long[] values = new long[entities.size()];
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			values[i] = accessor.getLong(entities.get(i));
+		}
+		
+		int mask = mask(operator());
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			long v = values[i];
+			int compareTo = (v < value) ? 0 : ((v == value) ? 1 : 2);
+			
+			if ((mask & (1 << compareTo)) == 0) {
+				selection.clear(i);
+			}
+		}
+	}
+	
+	private boolean evaluate(long value) {
+		return operator().matches((value < this.value) ? -1 : ((value == this.value) ? 0 : 1));
+	}
+	
+}
@@ -75,6 +75,8 @@ public class Log {
 	
 	private final Object entity;
 	
+	private final Object previous;
+	
 	/**
 	 * Constructs a new {@code Log} instance with the specified operation 
 	 * sequence in session, operation type and the entity which this operation 
@@ -85,9 +87,26 @@ public class Log {
 	 * @param entity The entity which this operation is applied to.
 	 */
 	public Log(long sequence, Operation operation, Object entity) {
+		this(sequence, operation, entity, null);
+	}
+	
+	/**
+	 * Constructs a new {@code Log} instance with the specified operation 
+	 * sequence in session, operation type, the entity which this operation 
+	 * is applied to and the entity in the datastore before this operation 
+	 * (the before-image of {@link Operation#UPDATE} or 
+	 * {@link Operation#DELETE}).
+	 * 
+	 * @param sequence The operation sequence in one {@code Session}.
+	 * @param operation The operation.
+	 * @param entity The entity which this operation is applied to.
+	 * @param previous The entity before this operation.
+	 */
+	public Log(long sequence, Operation operation, Object entity, Object previous) {
 		this.sequence = sequence;
 		this.operation = operation;
 		this.entity = entity;
+		this.previous = previous;
 	}
 	
 	/**
@@ -117,6 +136,16 @@ public class Log {
 		return entity;
 	}
 
+	/**
+	 * Returns the entity before this operation, or <code>null</code> if it is 
+	 * not recorded.
+	 * 
+	 * @return The entity before this operation.
+	 */
+	public Object previous() {
+		return previous;
+	}
+	
 	/**
 	 * Sets the specified state into this log.
 	 * 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import org.eiichiro.acidhouse.metamodel.LongProperty;
+
+/**
+ * {@code LongFilter} is a {@code ComparableFilter} specialized for 
+ * <code>long</code> property. It reads the property value with 
+ * {@code Accessor#getLong(Object)} and compares it as <code>long</code>
+ * without boxing.
+ * You can get this instance from {@code LongProperty}'s filtering methods.
+ * 
+ * @see LongProperty
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class LongFilter extends IntegralFilter<Long> {
+	
+	/**
+	 * Constructs a new {@code LongFilter} instance with the specified 
+	 * {@code LongProperty}, property value and operator type.
+	 * 
+	 * @param property The {@code LongProperty} instance
+	 * @param value The property value
+	 * @param operator The operator type.
+	 */
+	public LongFilter(LongProperty<?> property, long value, Operator operator) {
+		super(property, value, operator);
+	}
+	
+}
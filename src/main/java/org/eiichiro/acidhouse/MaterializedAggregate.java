@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eiichiro.acidhouse.Aggregation.Accumulator;
+
+/**
+ * {@code MaterializedAggregate} is the result of an {@code Aggregation} over 
+ * the entities qualified by the {@code Filter}s, which is kept up to date 
+ * from the committed {@code Log}s instead of being computed by scanning the 
+ * datastore on every read.
+ * If the {@code Accumulator} of the {@code Aggregation} is 
+ * {@link Accumulator#invertible()} (e.g. count, sum and average), 
+ * {@code MaterializedAggregate} keeps only the {@code Accumulator}: the value 
+ * replaced by {@link Log.Operation#UPDATE} or removed by 
+ * {@link Log.Operation#DELETE} is read from {@link Log#previous()} and 
+ * retracted with {@link Accumulator#retract(Object)}, so the 
+ * {@code Coordinator} implementation must record the before-image (the copy 
+ * of the entity taken before it is mutated, not the updated instance itself) 
+ * in the {@code Log} of {@link Log.Operation#UPDATE} (the deleted entity 
+ * itself is used if the previous entity of {@link Log.Operation#DELETE} is 
+ * not recorded). Otherwise (e.g. max and min), {@code MaterializedAggregate} keeps 
+ * the aggregated property value of each qualified entity by its key; if the 
+ * {@code Accumulator} cannot retract the value (e.g. the current max is 
+ * deleted), the result is recomputed from the kept values on the next read, 
+ * which is bounded by the number of the qualified entities and does not 
+ * access the datastore. {@link #get()} takes constant time otherwise.
+ * <pre>
+ * MaterializedAggregate&lt;Integer&gt; max = MaterializedAggregates.register(
+ * 		Aggregations.max(entity3_.i), entity3_.name.equalTo("Key3"));
+ * max.load(session.get(entity3_).filter(entity3_.name.equalTo("Key3")).execute().iterator());
+ * ...
+ * int i = max.get();
+ * </pre>
+ * 
+ * @see MaterializedAggregates
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class MaterializedAggregate<T> {
+
+	private final Aggregation<T> aggregation;
+	
+	private final Predicate predicate;
+	
+	private final Class<?> type;
+	
+	private final Map<Object, Object> values;
+	
+	private Accumulator<T> accumulator;
+	
+	private boolean stale;
+	
+	private T result;
+	
+	private boolean finished;
+	
+	/**
+	 * Constructs a new {@code MaterializedAggregate} of the specified 
+	 * {@code Aggregation} over the entities qualified by the specified 
+	 * {@code Filter}s. The {@code Aggregation} must aggregate a property or be 
+	 * {@link Aggregation#keysOnly()}.
+	 * 
+	 * @param aggregation The {@code Aggregation} to be materialized.
+	 * @param filters The {@code Filter}s to qualify the aggregated entities.
+	 */
+	public MaterializedAggregate(Aggregation<T> aggregation, Filter<?>... filters) {
+		if (aggregation == null) {
+			throw new IllegalArgumentException("'aggregation' must not be [" + aggregation + "]");
+		}
+		
+		if (aggregation.property() == null && !aggregation.keysOnly()) {
+			throw new IllegalArgumentException("'aggregation' must aggregate a property or be keys-only ["
+					+ aggregation + "]");
+		}
+		
+		this.aggregation = aggregation;
+		predicate = Filters.compile(filters);
+		type = aggregation.metamodel().root().type();
+		accumulator = aggregation.accumulator();
+		values = accumulator.invertible() ? null : new LinkedHashMap<Object, Object>();
+	}
+	
+	/**
+	 * Replaces the state of this {@code MaterializedAggregate} with the 
+	 * specified entities; the entities which do not match to the 
+	 * {@code Filter}s are skipped. Load the current entities from the 
+	 * datastore once on registration.
+	 * 
+	 * @param entities The iterator of the entities.
+	 */
+	public synchronized void load(Iterator<?> entities) {
+		if (values != null) {
+			values.clear();
+		}
+		
+		accumulator = aggregation.accumulator();
+		stale = false;
+		finished = false;
+		
+		while (entities.hasNext()) {
+			Object entity = entities.next();
+			
+			if (type.isInstance(entity) && predicate.matches(entity)) {
+				add(Entities.keyValue(entity), value(entity));
+			}
+		}
+	}
+	
+	/**
+	 * Applies the specified {@code Log} to this {@code MaterializedAggregate}.
+	 * The {@code Log} which is not {@link Log.State#COMMITTED}, the 
+	 * {@link Log.Operation#GET} and the {@code Log} of the other entity class 
+	 * are ignored.
+	 * 
+	 * @param log The committed {@code Log}.
+	 * @throws IllegalArgumentException If the {@code Log} of 
+	 * {@link Log.Operation#UPDATE} has the updated entity itself as 
+	 * {@link Log#previous()}, or does not have {@link Log#previous()} and the 
+	 * {@code Accumulator} is {@link Accumulator#invertible()}.
+	 */
+	public synchronized void apply(Log log) {
+		if (log.state() != Log.State.COMMITTED || log.operation() == Log.Operation.GET
+				|| !type.isInstance(log.entity())) {
+			return;
+		}
+		
+		Object entity = log.entity();
+		Object key = Entities.keyValue(entity);
+		
+		// The updated instance has the new values and cannot be retracted.
+		if (log.operation() == Log.Operation.UPDATE && log.previous() == entity) {
+			throw new IllegalArgumentException("'log' must have the before-image of ["
+					+ key + "] as the previous entity, not the updated entity itself");
+		}
+		
+		if (values == null) {
+			Object previous = (log.operation() == Log.Operation.DELETE && log.previous() == null)
+					? entity : log.previous();
+			
+			if (log.operation() == Log.Operation.UPDATE && previous == null) {
+				throw new IllegalArgumentException("'log' must have the previous entity of ["
+						+ key + "] to retract it from [" + aggregation + "]");
+			}
+			
+			if (previous != null && predicate.matches(previous)) {
+				retract(value(previous));
+			}
+		} else if (values.containsKey(key)) {
+			remove(key);
+		}
+		
+		if (log.operation() != Log.Operation.DELETE && predicate.matches(entity)) {
+			add(key, value(entity));
+		}
+	}
+	
+	/**
+	 * Applies the specified {@code Log}s of one transaction to this 
+	 * {@code MaterializedAggregate} at once, so that {@link #get()} does not 
+	 * return the result of the part of the transaction.
+	 * 
+	 * @param logs The committed {@code Log}s.
+	 */
+	public synchronized void apply(List<Log> logs) {
+		for (Log log : logs) {
+			apply(log);
+		}
+	}
+	
+	/**
+	 * Returns the current aggregation result.
+	 * 
+	 * @return The current aggregation result.
+	 */
+	public synchronized T get() {
+		if (stale) {
+			accumulator = aggregation.accumulator();
+			
+			for (Object value : values.values()) {
+				accumulate(value);
+			}
+			
+			stale = false;
+		}
+		
+		if (!finished) {
+			result = accumulator.finish();
+			finished = true;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the {@code Aggregation} this {@code MaterializedAggregate} 
+	 * materializes.
+	 * 
+	 * @return The {@code Aggregation} this {@code MaterializedAggregate} 
+	 * materializes.
+	 */
+	public Aggregation<T> aggregation() {
+		return aggregation;
+	}
+	
+	/**
+	 * Returns the {@code Predicate} which qualifies the aggregated entities.
+	 * 
+	 * @return The {@code Predicate} which qualifies the aggregated entities.
+	 */
+	public Predicate predicate() {
+		return predicate;
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		return aggregation + " " + predicate;
+	}
+	
+	/**
+	 * Returns the value folded into the {@code Accumulator} for the specified 
+	 * entity; the count of the entity for the keys-only {@code Aggregation}.
+	 */
+	private Object value(Object entity) {
+		return (aggregation.property() == null) ? Long.valueOf(1) : aggregation.property().get(entity);
+	}
+	
+	private void add(Object key, Object value) {
+		if (values != null) {
+			values.put(key, value);
+		}
+		
+		finished = false;
+		
+		if (!stale) {
+			accumulate(value);
+		}
+	}
+	
+	private void remove(Object key) {
+		retract(values.remove(key));
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void retract(Object value) {
+		finished = false;
+		
+		if (!stale && !accumulator.retract((T) value)) {
+			stale = true;
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void accumulate(Object value) {
+		accumulator.accumulate((T) value);
+	}
+	
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@code MaterializedAggregates} is the registry of the 
+ * {@code MaterializedAggregate}s. The application registers the 
+ * {@code Aggregation} and the {@code Filter}s it polls, and the 
+ * {@code Coordinator} (or {@code ResourceManager}) implementation publishes 
+ * the {@code Log}s of the transaction after they are committed. Acid House 
+ * does not publish the {@code Log}s by itself; the {@code Coordinator} 
+ * implementation must invoke {@link #publish(List)}, with the entity before 
+ * the operation recorded in the {@code Log} of {@link Log.Operation#UPDATE} 
+ * and {@link Log.Operation#DELETE}. The previous entity must be the 
+ * before-image: the copy taken when the entity is got from the datastore, 
+ * not the instance which the application has mutated and passes to 
+ * {@code update(Object)}:
+ * <pre>
+ * public &lt;E&gt; E get(Class&lt;E&gt; clazz, Object key) {
+ * 	E entity = ...;
+ * 	snapshots.put(key, copy(entity));
+ * 	return entity;
+ * }
+ * 
+ * public void update(Object entity) {
+ * 	Object previous = snapshots.get(Entities.keyValue(entity));
+ * 	logs.add(new Log(sequence++, Operation.UPDATE, entity, previous));
+ * 	...
+ * }
+ * 
+ * public void commit() {
+ * 	...
+ * 	for (Log log : logs) {
+ * 		log.state(State.COMMITTED);
+ * 	}
+ * 
+ * 	MaterializedAggregates.publish(logs);
+ * }
+ * </pre>
+ * 
+ * @see MaterializedAggregate
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public abstract class MaterializedAggregates {
+
+	private static final List<MaterializedAggregate<?>> aggregates
+			= new CopyOnWriteArrayList<MaterializedAggregate<?>>();
+			
+	private MaterializedAggregates() {}
+	
+	/**
+	 * Registers the {@code MaterializedAggregate} of the specified 
+	 * {@code Aggregation} over the entities qualified by the specified 
+	 * {@code Filter}s. The registered {@code MaterializedAggregate} is empty 
+	 * until {@link MaterializedAggregate#load(java.util.Iterator)} is invoked.
+	 * 
+	 * @param <T> The aggregation result type.
+	 * @param aggregation The {@code Aggregation} to be materialized.
+	 * @param filters The {@code Filter}s to qualify the aggregated entities.
+	 * @return The registered {@code MaterializedAggregate}.
+	 */
+	public static <T> MaterializedAggregate<T> register(Aggregation<T> aggregation,
+			Filter<?>... filters) {
+		MaterializedAggregate<T> aggregate = new MaterializedAggregate<T>(aggregation, filters);
+		aggregates.add(aggregate);
+		return aggregate;
+	}
+	
+	/**
+	 * Unregisters the specified {@code MaterializedAggregate}; it is no 
+	 * longer updated.
+	 * 
+	 * @param aggregate The {@code MaterializedAggregate} to be unregistered.
+	 */
+	public static void unregister(MaterializedAggregate<?> aggregate) {
+		aggregates.remove(aggregate);
+	}
+	
+	/**
+	 * Applies the specified committed {@code Log}s to every registered 
+	 * {@code MaterializedAggregate} in the order of the {@code Log}s.
+	 * 
+	 * @param logs The committed {@code Log}s.
+	 */
+	public static void publish(List<Log> logs) {
+		for (MaterializedAggregate<?> aggregate : aggregates) {
+			aggregate.apply(logs);
+		}
+	}
+	
+}
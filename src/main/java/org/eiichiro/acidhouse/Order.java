@@ -98,7 +98,9 @@ public class Order<E, T extends Comparable<T>> implements Comparator<E> {
 	}
 
 	/**
-	 * Compares the specified two entities.
+	 * Compares the specified two entities in ascending order regardless of 
+	 * {@link #direction()}. Use {@link CompoundOrder} to compare by multiple 
+	 * {@code Order}s in their directions.
 	 * 
 	 * @param entity1 An entity to be compared.
 	 * @param entity2 An entity to be compared.
@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code Plan} splits the {@code Filter}s and {@code Order}s of a command 
+ * into the part pushed down to the datastore and the residual part evaluated 
+ * in-memory, according to the backend's {@code Capability}.
+ * The command implementation builds {@code Plan} on execution, queries the 
+ * datastore with {@link #pushdown()} and {@link #orders()}, and then applies 
+ * the residual part to the fetched entities, like this:
+ * <pre>
+ * public List&lt;E&gt; execute() {
+ * 	Plan plan = new Plan(capability, filters, orders);
+ * 
+ * 	if (!plan.satisfiable()) {
+ * 		return new ArrayList&lt;E&gt;();
+ * 	}
+ * 
+ * 	Query query = query(plan.pushdown().ranges(), plan.orders());
+ * 
+ * 	if (plan.exact()) {
+ * 		query.offset(offset).limit(limit);
+ * 		return query.list();
+ * 	}
+ * 
+ * 	return plan.apply(query.list(), offset, limit);
+ * }
+ * </pre>
+ * Top-level "logical and" {@code CompositeFilter}s are flattened before the 
+ * split. {@code Order}s are pushed down only while they are supported from 
+ * the first one; if any {@code Order} is not supported, every {@code Order} is 
+ * applied in-memory again.
+ * 
+ * @see Capability
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class Plan {
+
+	private final Predicate pushdown;
+	
+	private final Predicate residual;
+	
+	private final List<Order<?, ?>> orders;
+	
+	private final List<Order<?, ?>> residualOrders;
+	
+	private final boolean satisfiable;
+	
+	/**
+	 * Constructs a new {@code Plan} which splits the specified {@code Filter}s 
+	 * and {@code Order}s according to the specified {@code Capability}.
+	 * 
+	 * @param capability The {@code Capability} of the backend.
+	 * @param filters The {@code Filter}s of the command.
+	 * @param orders The {@code Order}s of the command.
+	 */
+	public Plan(Capability capability, Filter<?>[] filters, Order<?, ?>[] orders) {
+		if (capability == null) {
+			throw new IllegalArgumentException("'capability' must not be [" + capability + "]");
+		}
+		
+		if (filters == null) {
+			throw new IllegalArgumentException("'filters' must not be [" + filters + "]");
+		}
+		
+		if (orders == null) {
+			throw new IllegalArgumentException("'orders' must not be [" + orders + "]");
+		}
+		
+		List<Filter<?>> pushdown = new ArrayList<Filter<?>>();
+		List<Filter<?>> residual = new ArrayList<Filter<?>>();
+		
+		for (Filter<?> filter : Filters.flatten(filters, new ArrayList<Filter<?>>())) {
+			if (capability.supports(filter)) {
+				pushdown.add(filter);
+			} else {
+				residual.add(filter);
+			}
+		}
+		
+		int i = 0;
+		
+		while (i < orders.length && capability.supports(orders[i])) {
+			i++;
+		}
+		
+		this.pushdown = Filters.compile(pushdown.toArray(new Filter<?>[pushdown.size()]));
+		this.residual = Filters.compile(residual.toArray(new Filter<?>[residual.size()]));
+		this.orders = Collections.unmodifiableList(Arrays.asList(orders).subList(0, i));
+		this.residualOrders = (i == orders.length) ? Collections.<Order<?, ?>>emptyList()
+				: Collections.unmodifiableList(Arrays.asList(orders));
+		this.satisfiable = this.pushdown.satisfiable() && this.residual.satisfiable()
+				&& Filters.compile(filters).satisfiable();
+	}
+	
+	/**
+	 * Returns the {@code Predicate} compiled from the {@code Filter}s pushed 
+	 * down to the datastore. {@link Predicate#filters()} and 
+	 * {@link Predicate#ranges()} tell the {@code Filter}s to be translated into 
+	 * the datastore query.
+	 * 
+	 * @return The {@code Predicate} of the {@code Filter}s pushed down.
+	 */
+	public Predicate pushdown() {
+		return pushdown;
+	}
+	
+	/**
+	 * Returns the {@code Predicate} compiled from the {@code Filter}s the 
+	 * datastore does not support, which is evaluated in-memory.
+	 * 
+	 * @return The {@code Predicate} of the residual {@code Filter}s.
+	 */
+	public Predicate residual() {
+		return residual;
+	}
+	
+	/**
+	 * Returns the {@code Order}s pushed down to the datastore.
+	 * 
+	 * @return The {@code Order}s pushed down to the datastore.
+	 */
+	public List<Order<?, ?>> orders() {
+		return orders;
+	}
+	
+	/**
+	 * Returns the {@code Order}s applied in-memory; empty if every 
+	 * {@code Order} is pushed down.
+	 * 
+	 * @return The {@code Order}s applied in-memory.
+	 */
+	public List<Order<?, ?>> residualOrders() {
+		return residualOrders;
+	}
+	
+	/**
+	 * Indicates whether any entity can match to the {@code Filter}s or not.
+	 * If this method returns <code>false</code>, the command implementation 
+	 * should return the empty result (or zero) without accessing the 
+	 * datastore.
+	 * 
+	 * @return Whether any entity can match to the {@code Filter}s or not.
+	 */
+	public boolean satisfiable() {
+		return satisfiable;
+	}
+	
+	/**
+	 * Indicates whether the datastore query of the pushed down part returns 
+	 * the exact result or not; i.e. there is neither residual {@code Filter} 
+	 * nor residual {@code Order}, so that the limit and offset of the command 
+	 * can be pushed down as well.
+	 * 
+	 * @return Whether the pushed down part returns the exact result or not.
+	 */
+	public boolean exact() {
+		return residual.filters().isEmpty() && residualOrders.isEmpty();
+	}
+	
+	/**
+	 * Applies the residual part of this {@code Plan} to the specified entities 
+	 * fetched with the pushed down part: filters them with the residual 
+	 * {@code Filter}s and sorts them with the residual {@code Order}s.
+	 * 
+	 * @param <E> The entity type.
+	 * @param entities The entities fetched from the datastore.
+	 * @return The entities to which the residual part is applied.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <E> List<E> apply(List<E> entities) {
+		if (!satisfiable) {
+			return new ArrayList<E>();
+		}
+		
+		List<E> applied = residual.filters().isEmpty() ? entities
+				: Executions.filter(residual, entities);
+				
+		if (!residualOrders.isEmpty()) {
+			applied = Executions.sort(applied, residualOrders.toArray(new Order[residualOrders.size()]));
+		}
+		
+		return applied;
+	}
+	
+	/**
+	 * Applies the residual part of this {@code Plan} to the specified entities 
+	 * and returns the page from the specified offset up to the specified limit.
+	 * If the residual {@code Order}s are applied, only the top 
+	 * (<code>offset</code> + <code>limit</code>) entities are kept while 
+	 * sorting with {@link Executions#sort(List, int, int, Order...)}.
+	 * 
+	 * @param <E> The entity type.
+	 * @param entities The entities fetched from the datastore.
+	 * @param offset The offset of the command.
+	 * @param limit The limit of the command.
+	 * @return The page of the entities to which the residual part is applied.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public <E> List<E> apply(List<E> entities, int offset, int limit) {
+		if (!satisfiable) {
+			return new ArrayList<E>();
+		}
+		
+		List<E> applied = residual.filters().isEmpty() ? entities
+				: Executions.filter(residual, entities);
+				
+		if (!residualOrders.isEmpty()) {
+			return Executions.sort(applied, offset, limit,
+					residualOrders.toArray(new Order[residualOrders.size()]));
+		}
+		
+		return Executions.slice(applied, offset, limit);
+	}
+	
+	/**
+	 * Returns the {@code Cursor} which streams the entities fetched page by 
+	 * page with the specified {@code Fetcher} of the pushed down part, 
+	 * filtering them with the residual {@code Filter}s and paging them with 
+	 * the specified offset and limit as the iteration goes.
+	 * The residual {@code Order}s cannot be applied to the stream within the 
+	 * bounded heap; if {@link #residualOrders()} is not empty, sort the 
+	 * entities with {@link Executions#sort(org.eiichiro.acidhouse.metamodel.Metamodel, java.util.Iterator, Order...)} 
+	 * instead.
+	 * 
+	 * @param <E> The entity type.
+	 * @param fetcher The {@code Fetcher} of the pushed down part.
+	 * @param offset The offset of the command.
+	 * @param limit The limit of the command ({@code Integer#MAX_VALUE} for no 
+	 * limit).
+	 * @param batch The number of the entities fetched per page.
+	 * @param prefetch The number of the pages read ahead.
+	 * @return The {@code Cursor} of the entities to which the residual part is 
+	 * applied.
+	 * @throws IllegalStateException If this {@code Plan} has the residual 
+	 * {@code Order}s.
+	 */
+	public <E> Cursor<E> iterate(Cursor.Fetcher<E> fetcher, int offset, int limit, int batch,
+			int prefetch) {
+		if (!residualOrders.isEmpty()) {
+			throw new IllegalStateException("Residual orders " + residualOrders
+					+ " cannot be applied to the stream");
+		}
+		
+		return new Cursor<E>(fetcher, residual.filters().isEmpty() ? null : residual,
+				offset, satisfiable ? limit : 0, batch, prefetch);
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		return "pushdown " + pushdown + " " + orders + ", residual " + residual
+				+ " " + residualOrders;
+	}
+	
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.eiichiro.acidhouse.metamodel.Property;
+
+/**
+ * {@code Predicate} is the compiled form of the {@code Filter}s passed to 
+ * command's {@code filter(Filter...)} method, combined with "logical and".
+ * {@code Predicate} is built by {@link Filters#compile(Filter...)}; it reads 
+ * every filtered property once per entity, evaluates the cheap and selective 
+ * conjuncts first and stops at the first conjunct which does not match.
+ * The same {@code Predicate} instance can be shared by the in-memory and the 
+ * datastore-specific command implementations, and can be used from multiple 
+ * threads.
+ * 
+ * @see Filters
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class Predicate {
+
+	private final List<Filter<?>> filters;
+	
+	private final Term[] terms;
+	
+	private final List<Range<?>> ranges;
+	
+	private final boolean satisfiable;
+	
+	Predicate(List<Filter<?>> filters, List<Term> terms, List<Range<?>> ranges) {
+		this.filters = Collections.unmodifiableList(new ArrayList<Filter<?>>(filters));
+		this.terms = terms.toArray(new Term[terms.size()]);
+		this.ranges = Collections.unmodifiableList(new ArrayList<Range<?>>(ranges));
+		boolean satisfiable = true;
+		
+		for (Range<?> range : ranges) {
+			satisfiable &= !range.isEmpty();
+		}
+		
+		this.satisfiable = satisfiable;
+	}
+	
+	/**
+	 * Indicates whether the specified entity matches to every {@code Filter} 
+	 * this {@code Predicate} is compiled from or not.
+	 * 
+	 * @param entity The entity to be filtered.
+	 * @return Whether the specified entity matches to this {@code Predicate} 
+	 * or not.
+	 */
+	public boolean matches(Object entity) {
+		if (!satisfiable) {
+			return false;
+		}
+		
+		for (Term term : terms) {
+			if (!term.matches(entity)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the new list of the entities in the specified list which match 
+	 * to this {@code Predicate}. The order of the entities is kept.
+	 * 
+	 * @param <E> The entity type.
+	 * @param entities The entities to be filtered.
+	 * @return The entities which match to this {@code Predicate}.
+	 */
+	public <E> List<E> filter(List<E> entities) {
+		List<E> filtered = new ArrayList<E>();
+		
+		if (!satisfiable) {
+			return filtered;
+		}
+		
+		List<E> batch = (entities instanceof RandomAccess) ? entities : new ArrayList<E>(entities);
+		BitSet selection = new BitSet(batch.size());
+		selection.set(0, batch.size());
+		matches(batch, selection);
+		
+		for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+			filtered.add(batch.get(i));
+		}
+		
+		return filtered;
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch, conjunct by conjunct.
+	 * The bit of the entity which does not match to this {@code Predicate} is 
+	 * cleared from the specified selection, and the following conjuncts 
+	 * evaluate only the remaining entities.
+	 * 
+	 * @param entities The entities to be filtered. {@code RandomAccess} list 
+	 * is expected.
+	 * @param selection The bits of the entities to be evaluated.
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	public void matches(List<?> entities, BitSet selection) {
+		if (!satisfiable) {
+			selection.clear();
+			return;
+		}
+		
+		for (Term term : terms) {
+			if (selection.isEmpty()) {
+				return;
+			}
+			
+			term.matches(entities, selection);
+		}
+	}
+	
+	/**
+	 * Indicates whether any entity can match to this {@code Predicate} or not.
+	 * If this method returns <code>false</code>, the command implementation 
+	 * should return the empty result (or zero) without accessing the 
+	 * datastore.
+	 * 
+	 * @return Whether any entity can match to this {@code Predicate} or not.
+	 */
+	public boolean satisfiable() {
+		return satisfiable;
+	}
+	
+	/**
+	 * Returns the {@code Range}s which the {@code ComparableFilter}s, 
+	 * {@code InFilter}s and {@code StartsWithFilter}s are merged into per 
+	 * property. The datastore-specific command implementations can map them 
+	 * onto the index range scans.
+	 * 
+	 * @return The {@code Range}s merged per property.
+	 */
+	public List<Range<?>> ranges() {
+		return ranges;
+	}
+	
+	/**
+	 * Returns the {@code Filter}s this {@code Predicate} is compiled from.
+	 * 
+	 * @return The {@code Filter}s this {@code Predicate} is compiled from.
+	 */
+	public List<Filter<?>> filters() {
+		return filters;
+	}
+	
+	/**
+	 * Returns the {@code String} representation of this instance, the 
+	 * conjuncts in the evaluation order.
+	 * 
+	 * @return The {@code String} representation of this instance.
+	 */
+	@Override
+	public String toString() {
+		return Arrays.toString(terms);
+	}
+	
+	/** A conjunct of {@code Predicate}. */
+	static abstract class Term {
+
+		abstract boolean matches(Object entity);
+		
+		abstract void matches(List<?> entities, BitSet selection);
+		
+		abstract int cost();
+		
+	}
+	
+	/** The conjunct of the {@code PropertyFilter}s on the same property. */
+	static class PropertyTerm extends Term {
+
+		private final Property<?, Object> property;
+		
+		private final PropertyFilter<Object>[] filters;
+		
+		private final int cost;
+		
+		PropertyTerm(Property<?, Object> property, PropertyFilter<Object>[] filters, int cost) {
+			this.property = property;
+			this.filters = filters;
+			this.cost = cost;
+		}
+		
+		@Override
+		boolean matches(Object entity) {
+			Object value = property.get(entity);
+			
+			for (PropertyFilter<Object> filter : filters) {
+				if (!filter.evaluate(value)) {
+					return false;
+				}
+			}
+			
+			return true;
+		}
+		
+		@Override
+		void matches(List<?> entities, BitSet selection) {
+			Object[] values = Filters.values(property, entities, selection);
+			
+			for (PropertyFilter<Object> filter : filters) {
+				for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+					if (!filter.evaluate(values[i])) {
+						selection.clear(i);
+					}
+				}
+			}
+		}
+		
+		@Override
+		int cost() {
+			return cost;
+		}
+		
+		@Override
+		public String toString() {
+			return Arrays.toString(filters);
+		}
+		
+	}
+	
+	/** The conjunct of a {@code Filter} which is evaluated as it is. */
+	static class FilterTerm extends Term {
+
+		private final Filter<?> filter;
+		
+		private final int cost;
+		
+		FilterTerm(Filter<?> filter, int cost) {
+			this.filter = filter;
+			this.cost = cost;
+		}
+		
+		@Override
+		boolean matches(Object entity) {
+			return filter.matches(entity);
+		}
+		
+		@Override
+		void matches(List<?> entities, BitSet selection) {
+			Filters.matches(filter, entities, selection);
+		}
+		
+		@Override
+		int cost() {
+			return cost;
+		}
+		
+		@Override
+		public String toString() {
+			return String.valueOf(filter);
+		}
+		
+	}
+	
+}
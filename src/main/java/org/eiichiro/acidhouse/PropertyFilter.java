@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+/**
+ * {@code PropertyFilter} is a {@code Filter} which qualifies entities only by 
+ * the value of its {@code Filter#property()}.
+ * {@code Filters#compile(Filter...)} reads the property value once per entity 
+ * and evaluates every {@code PropertyFilter} on the same property against the 
+ * value.
+ * 
+ * @see Filters
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface PropertyFilter<T> extends Filter<T> {
+
+	/**
+	 * Indicates whether the specified property value matches to this 
+	 * {@code Filter} or not.
+	 * 
+	 * @param value The property value to be evaluated.
+	 * @return Whether the specified property value matches to this 
+	 * {@code Filter} or not.
+	 */
+	public boolean evaluate(T value);
+	
+}
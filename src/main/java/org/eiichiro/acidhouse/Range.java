@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.eiichiro.acidhouse.ComparableFilter.Operator;
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.EmbeddedProperty;
+import org.eiichiro.acidhouse.metamodel.Property;
+
+/**
+ * {@code Range} is a {@code Filter} implementation which the 
+ * {@code ComparableFilter}s, {@code InFilter}s and {@code StartsWithFilter}s 
+ * on the same property are merged into.
+ * {@code Range} is built by {@link Filters#compile(Filter...)} and consists of 
+ * the lower bound, the upper bound, the candidate values (the intersection of 
+ * the equality and IN conditions) and the excluded values. If the merged 
+ * conditions can never be satisfied, {@link #isEmpty()} returns 
+ * <code>true</code>.
+ * The datastore-specific command implementations can map {@code Range} onto 
+ * a single index range scan, like this:
+ * <pre>
+ * for (Range&lt;?&gt; range : predicate.ranges()) {
+ * 	if (range.lower() != null) {
+ * 		query.addFilter(range.property().name(),
+ * 				range.lowerInclusive() ? GREATER_THAN_OR_EQUAL : GREATER_THAN,
+ * 				range.lower());
+ * 	}
+ * 	...
+ * }
+ * </pre>
+ * 
+ * @see Filters
+ * @see Predicate#ranges()
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class Range<T extends Comparable<T>> implements PropertyFilter<T>, BatchFilter<T> {
+
+	private final ComparableProperty<?, T> property;
+	
+	private final List<PropertyFilter<T>> filters = new ArrayList<PropertyFilter<T>>();
+	
+	private final List<T> excluded = new ArrayList<T>();
+	
+	private T lower;
+	
+	private boolean lowerInclusive;
+	
+	private T upper;
+	
+	private boolean upperInclusive;
+	
+	private List<T> values;
+	
+	private InFilter<T> membership;
+	
+	private boolean empty;
+	
+	Range(ComparableProperty<?, T> property) {
+		this.property = property;
+	}
+	
+	/** Returns the property that this {@code Range} does filtering. */
+	@Override
+	public Property<?, T> property() {
+		return property;
+	}
+	
+	/**
+	 * Indicates the specified entity instance matches to this {@code Range}.
+	 */
+	@Override
+	public boolean matches(Object entity) {
+		return !empty && evaluate(property.get(entity));
+	}
+	
+	/**
+	 * Indicates the specified property value matches to this {@code Range}.
+	 */
+	@Override
+	public boolean evaluate(T value) {
+		if (empty) {
+			return false;
+		}
+		
+		if (membership != null) {
+			return membership.evaluate(value);
+		}
+		
+		return withinBounds(value) && !contains(excluded, value);
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		if (empty) {
+			selection.clear();
+			return;
+		}
+		
+		Object[] values = Filters.values(property, entities, selection);
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			if (!evaluate((T) values[i])) {
+				selection.clear(i);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the lower bound of this {@code Range}.
+	 * 
+	 * @return The lower bound, or <code>null</code> if not bounded.
+	 */
+	public T lower() {
+		return lower;
+	}
+	
+	/** Indicates whether the lower bound is inclusive or not. */
+	public boolean lowerInclusive() {
+		return lowerInclusive;
+	}
+	
+	/**
+	 * Returns the upper bound of this {@code Range}.
+	 * 
+	 * @return The upper bound, or <code>null</code> if not bounded.
+	 */
+	public T upper() {
+		return upper;
+	}
+	
+	/** Indicates whether the upper bound is inclusive or not. */
+	public boolean upperInclusive() {
+		return upperInclusive;
+	}
+	
+	/**
+	 * Returns the candidate values of this {@code Range}, the intersection of 
+	 * the equality and IN conditions within the bounds except the excluded 
+	 * values.
+	 * 
+	 * @return The candidate values, or <code>null</code> if neither equality 
+	 * nor IN condition is merged.
+	 */
+	public List<T> values() {
+		return (values == null) ? null : Collections.unmodifiableList(values);
+	}
+	
+	/**
+	 * Returns the values excluded by the not-equal conditions.
+	 * 
+	 * @return The values excluded by the not-equal conditions.
+	 */
+	public List<T> excluded() {
+		return Collections.unmodifiableList(excluded);
+	}
+	
+	/**
+	 * Indicates whether this {@code Range} can never be satisfied or not.
+	 * 
+	 * @return Whether this {@code Range} can never be satisfied or not.
+	 */
+	public boolean isEmpty() {
+		return empty;
+	}
+	
+	/**
+	 * Returns the {@code Filter}s merged into this {@code Range}.
+	 * 
+	 * @return The {@code Filter}s merged into this {@code Range}.
+	 */
+	public List<PropertyFilter<T>> filters() {
+		return Collections.unmodifiableList(filters);
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		if (membership != null) {
+			return membership.toString();
+		}
+		
+		String name = (property.parent() instanceof EmbeddedProperty)
+				? property.parent().name() + "." + property.name() : property.name();
+		List<Object> conditions = new ArrayList<Object>();
+		
+		if (empty) {
+			conditions.addAll(filters);
+		} else if (lower != null) {
+			conditions.add(name + " " + (lowerInclusive ? Operator.GREATER_THAN_OR_EQUAL_TO
+					: Operator.GREATER_THAN) + " " + toFilterString(lower));
+		}
+		
+		if (!empty && upper != null) {
+			conditions.add(name + " " + (upperInclusive ? Operator.LESS_THAN_OR_EQUAL_TO
+					: Operator.LESS_THAN) + " " + toFilterString(upper));
+		}
+		
+		for (int i = 0; !empty && i < excluded.size(); i++) {
+			conditions.add(name + " " + Operator.NOT_EQUAL_TO + " " + toFilterString(excluded.get(i)));
+		}
+		
+		StringBuilder builder = new StringBuilder("(");
+		
+		for (int i = 0; i < conditions.size(); i++) {
+			builder.append((i == 0) ? "" : " && ").append(conditions.get(i));
+		}
+		
+		return builder.append(")").toString();
+	}
+	
+	void merge(ComparableFilter<T> filter) {
+		T value = filter.value();
+		Operator operator = filter.operator();
+		
+		if (operator == Operator.EQUAL_TO) {
+			intersect(Collections.singletonList(value));
+		} else if (operator == Operator.NOT_EQUAL_TO) {
+			excluded.add(value);
+		} else if (operator == Operator.GREATER_THAN
+				|| operator == Operator.GREATER_THAN_OR_EQUAL_TO) {
+			lower(value, operator == Operator.GREATER_THAN_OR_EQUAL_TO);
+		} else {
+			upper(value, operator == Operator.LESS_THAN_OR_EQUAL_TO);
+		}
+		
+		filters.add(filter);
+	}
+	
+	void merge(InFilter<T> filter) {
+		intersect(filter.values());
+		filters.add(filter);
+	}
+	
+	@SuppressWarnings("unchecked")
+	void merge(StartsWithFilter filter) {
+		lower((T) filter.lower(), true);
+		
+		if (filter.upper() != null) {
+			upper((T) filter.upper(), false);
+		}
+		
+		filters.add((PropertyFilter<T>) filter);
+	}
+	
+	/** Resolves the merged conditions; invoked once after every merge. */
+	void normalize() {
+		if (values != null) {
+			List<T> normalized = new ArrayList<T>();
+			
+			for (T value : values) {
+				// The null value in IN condition never matches.
+				if (value != null && withinBounds(value) && !contains(excluded, value)) {
+					normalized.add(value);
+				}
+			}
+			
+			values = normalized;
+			empty = values.isEmpty();
+			membership = empty ? null : new InFilter<T>(property, values);
+		} else if (lower != null && upper != null) {
+			int compareTo = lower.compareTo(upper);
+			empty = compareTo > 0 || (compareTo == 0
+					&& (!lowerInclusive || !upperInclusive || contains(excluded, lower)));
+		}
+	}
+	
+	private void lower(T value, boolean inclusive) {
+		int compareTo = (lower == null) ? 1 : value.compareTo(lower);
+		
+		if (compareTo > 0 || (compareTo == 0 && !inclusive)) {
+			lower = value;
+			lowerInclusive = inclusive;
+		}
+	}
+	
+	private void upper(T value, boolean inclusive) {
+		int compareTo = (upper == null) ? -1 : value.compareTo(upper);
+		
+		if (compareTo < 0 || (compareTo == 0 && !inclusive)) {
+			upper = value;
+			upperInclusive = inclusive;
+		}
+	}
+	
+	private void intersect(List<T> values) {
+		if (this.values == null) {
+			this.values = new ArrayList<T>(values);
+			return;
+		}
+		
+		InFilter<T> filter = new InFilter<T>(property, values);
+		List<T> intersection = new ArrayList<T>();
+		
+		for (T value : this.values) {
+			if (filter.evaluate(value)) {
+				intersection.add(value);
+			}
+		}
+		
+		this.values = intersection;
+	}
+	
+	private boolean withinBounds(T value) {
+		if (lower != null) {
+			int compareTo = value.compareTo(lower);
+			
+			if (compareTo < 0 || (compareTo == 0 && !lowerInclusive)) {
+				return false;
+			}
+		}
+		
+		if (upper != null) {
+			int compareTo = value.compareTo(upper);
+			
+			if (compareTo > 0 || (compareTo == 0 && !upperInclusive)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static <T extends Comparable<T>> boolean contains(List<T> values, T value) {
+		for (T v : values) {
+			if (value.compareTo(v) == 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private String toFilterString(final Object object) {
+		return (object instanceof String) ? "\"" + object + "\"" : object.toString();
+	}
+	
+}
@@ -0,0 +1,467 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.eiichiro.acidhouse.CompoundOrder.Key;
+import org.eiichiro.acidhouse.metamodel.Accessor;
+import org.eiichiro.acidhouse.metamodel.Accessors;
+import org.eiichiro.acidhouse.metamodel.EmbeddedProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodel;
+import org.eiichiro.acidhouse.metamodel.Property;
+import org.eiichiro.reverb.lang.UncheckedException;
+
+/**
+ * {@code SortedIterator} is the result of the memory-bounded sort with 
+ * {@link Executions#sort(Metamodel, Iterator, Order...)}.
+ * The key tuples (the sort key values of each entity) are sorted in-memory 
+ * while they fit in the budget, and then the consumed entity instances are 
+ * returned as they are. Once the budget is exceeded, every budget-sized 
+ * batch of the entities is sorted and spilled to the local temporary file as 
+ * a run, and the runs are streamed back through the k-way merge; only one 
+ * entity per run is held on the heap while iterating, and no reference to 
+ * the consumed entities is kept. The spilled entity is written as the values 
+ * of the properties and the child entities of the {@code Metamodel}, and is 
+ * read back into the new instance created with the no-argument constructor 
+ * of its class. So in the spilled case, the identity of the entities and the 
+ * state which the {@code Metamodel} does not have (e.g. {@code @Transient} 
+ * fields) are not kept, and the property values which are not written in 
+ * the compact form must be {@code Serializable} (see {@code Encoding}). The 
+ * temporary files are deleted when the iteration reaches the end or 
+ * {@link #close()} is invoked, so close it when the iteration is abandoned:
+ * <pre>
+ * SortedIterator&lt;Entity3&gt; iterator = Executions.sort(entity3_, entities, entity3_.i.desc);
+ * 
+ * try {
+ * 	while (iterator.hasNext()) {
+ * 		...
+ * 	}
+ * } finally {
+ * 	iterator.close();
+ * }
+ * </pre>
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class SortedIterator<E> implements Iterator<E>, Closeable {
+
+	/** The maximum number of the runs merged at once. */
+	private static final int FAN_IN = 64;
+	
+	private final Metamodel<E> metamodel;
+	
+	private final CompoundOrder<E> order;
+	
+	private final Encoding encoding;
+	
+	private final Map<Class<?>, Constructor<?>> constructors = new HashMap<Class<?>, Constructor<?>>();
+	
+	private final Map<Metamodel<?>, Accessor> accessors = new HashMap<Metamodel<?>, Accessor>();
+	
+	private final List<File> files = new ArrayList<File>();
+	
+	private final List<Run> runs = new ArrayList<Run>();
+	
+	private final PriorityQueue<Run> queue;
+	
+	private Iterator<E> iterator;
+	
+	SortedIterator(Metamodel<E> metamodel, Iterator<? extends E> entities, int budget,
+			CompoundOrder<E> order) {
+		this.metamodel = metamodel;
+		this.order = order;
+		encoding = new Encoding(metamodel.type());
+		queue = new PriorityQueue<Run>(FAN_IN);
+		
+		try {
+			List<Key<E>> buffer = new ArrayList<Key<E>>();
+			int index = 0;
+			
+			while (entities.hasNext()) {
+				buffer.add(order.key(entities.next(), index++));
+				
+				if (buffer.size() >= budget) {
+					files.add(spill(sort(buffer)));
+					buffer.clear();
+				}
+			}
+			
+			if (files.isEmpty()) {
+				iterator = CompoundOrder.entities(sort(buffer)).iterator();
+				return;
+			}
+			
+			if (!buffer.isEmpty()) {
+				files.add(spill(sort(buffer)));
+				buffer.clear();
+			}
+			
+			while (files.size() > FAN_IN) {
+				// Merges the earliest runs into one in front of the others to
+				// keep the merge stable.
+				List<File> merged = new ArrayList<File>(files.subList(0, FAN_IN));
+				files.subList(0, FAN_IN).clear();
+				files.add(0, merge(merged));
+			}
+			
+			for (File file : files) {
+				open(file);
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedException(e);
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/** Indicates whether the next sorted entity exists or not. */
+	@Override
+	public boolean hasNext() {
+		return (iterator != null) ? iterator.hasNext() : !queue.isEmpty();
+	}
+	
+	/** Returns the next sorted entity. */
+	@Override
+	public E next() {
+		if (iterator != null) {
+			return iterator.next();
+		}
+		
+		Run run = queue.poll();
+		
+		if (run == null) {
+			throw new NoSuchElementException();
+		}
+		
+		E entity = run.head.entity();
+		
+		try {
+			if (run.advance()) {
+				queue.add(run);
+			} else if (queue.isEmpty()) {
+				close();
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedException(e);
+		}
+		
+		return entity;
+	}
+	
+	/**
+	 * Throws {@code UnsupportedOperationException}; {@code SortedIterator} is 
+	 * read-only.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/** Closes the runs and deletes the temporary files. */
+	@Override
+	public void close() {
+		for (Run run : runs) {
+			try {
+				run.in.close();
+			} catch (IOException e) {}
+		}
+		
+		for (File file : files) {
+			file.delete();
+		}
+		
+		runs.clear();
+		files.clear();
+		queue.clear();
+	}
+	
+	private List<Key<E>> sort(List<Key<E>> keys) {
+		Collections.sort(keys, order.comparator());
+		return keys;
+	}
+	
+	private File spill(List<Key<E>> keys) throws IOException {
+		File file = File.createTempFile("acidhouse-", ".run");
+		file.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+				
+		try {
+			out.writeInt(keys.size());
+			
+			for (Key<E> key : keys) {
+				write(out, key);
+			}
+		} finally {
+			out.close();
+		}
+		
+		return file;
+	}
+	
+	private void write(DataOutputStream out, Key<E> key) throws IOException {
+		out.writeInt(key.index());
+		write(out, key.entity());
+		write(out, key.entity(), metamodel, null);
+	}
+		
+	/**
+	 * Writes the values of the properties under the specified parent 
+	 * property (or the top-level properties if it is <code>null</code>) and 
+	 * the child entities of the specified {@code Metamodel} from the specified 
+	 * root entity. The {@code @Embedded} values and the child entities are 
+	 * written as their class names followed by their properties.
+	 */
+	private void write(DataOutputStream out, Object entity, Metamodel<?> metamodel,
+			Property<?, ?> parent) throws IOException {
+		for (Property<?, ?> property : metamodel.properties()) {
+			if (property.parent() != parent) {
+				continue;
+			}
+			
+			Object value = property.get(entity);
+			
+			if (property instanceof EmbeddedProperty<?, ?>) {
+				write(out, value);
+				
+				if (value != null) {
+					write(out, entity, metamodel, property);
+				}
+			} else {
+				encoding.write(out, value);
+			}
+		}
+		
+		if (parent == null) {
+			for (Metamodel<?> child : metamodel.children()) {
+				Object value = accessor(child).get(entity);
+				write(out, value);
+				
+				if (value != null) {
+					write(out, entity, child, null);
+				}
+			}
+		}
+	}
+	
+	private void write(DataOutputStream out, Object value) throws IOException {
+		out.writeBoolean(value != null);
+		
+		if (value != null) {
+			out.writeUTF(value.getClass().getName());
+		}
+	}
+	
+	/**
+	 * Reads the values written by 
+	 * {@link #write(DataOutputStream, Object, Metamodel, Property)} into the 
+	 * specified root entity.
+	 */
+	private void read(DataInputStream in, Object entity, Metamodel<?> metamodel,
+			Property<?, ?> parent) throws IOException {
+		for (Property<?, ?> property : metamodel.properties()) {
+			if (property.parent() != parent) {
+				continue;
+			}
+			
+			if (property instanceof EmbeddedProperty<?, ?>) {
+				Object value = instantiate(in);
+				property.accessor().set(entity, value);
+				
+				if (value != null) {
+					read(in, entity, metamodel, property);
+				}
+			} else {
+				property.accessor().set(entity, encoding.read(in));
+			}
+		}
+		
+		if (parent == null) {
+			for (Metamodel<?> child : metamodel.children()) {
+				Object value = instantiate(in);
+				accessor(child).set(entity, value);
+				
+				if (value != null) {
+					read(in, entity, child, null);
+				}
+			}
+		}
+	}
+	
+	/** Creates the new instance of the class written by {@link #write(DataOutputStream, Object)}. */
+	private Object instantiate(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		
+		try {
+			Class<?> type = encoding.type(in.readUTF());
+			Constructor<?> constructor = constructors.get(type);
+			
+			if (constructor == null) {
+				constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				constructors.put(type, constructor);
+			}
+			
+			return constructor.newInstance();
+		} catch (Exception e) {
+			throw new UncheckedException(e);
+		}
+	}
+	
+	/** Returns the {@code Accessor} to the child entity from the root entity. */
+	private Accessor accessor(Metamodel<?> child) {
+		Accessor accessor = accessors.get(child);
+		
+		if (accessor == null) {
+			List<String> path = new ArrayList<String>();
+			
+			for (Metamodel<?> m = child; !m.isRoot(); m = m.parent()) {
+				path.add(0, m.name());
+			}
+			
+			accessor = Accessors.accessor(child.root().type(), path);
+			accessors.put(child, accessor);
+		}
+		
+		return accessor;
+	}
+	
+	private File merge(List<File> files) throws IOException {
+		File file = File.createTempFile("acidhouse-", ".run");
+		file.deleteOnExit();
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(files.size());
+		List<Run> runs = new ArrayList<Run>(files.size());
+		int size = 0;
+		
+		try {
+			for (File f : files) {
+				Run run = new Run(f);
+				runs.add(run);
+				size += run.remaining;
+				
+				if (run.advance()) {
+					queue.add(run);
+				}
+			}
+			
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+					
+			try {
+				out.writeInt(size);
+				
+				while (!queue.isEmpty()) {
+					Run run = queue.poll();
+					write(out, run.head);
+					
+					if (run.advance()) {
+						queue.add(run);
+					}
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		} catch (RuntimeException e) {
+			file.delete();
+			throw e;
+		} finally {
+			for (Run run : runs) {
+				run.in.close();
+			}
+			
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		
+		return file;
+	}
+	
+	private void open(File file) throws IOException {
+		Run run = new Run(file);
+		runs.add(run);
+		
+		if (run.advance()) {
+			queue.add(run);
+		}
+	}
+	
+	/**
+	 * The sorted run of the key tuples in the temporary file; ordered by the 
+	 * sort keys of the head and then by the position of the entity to keep 
+	 * the merge stable.
+	 */
+	private class Run implements Comparable<Run> {
+
+		private final DataInputStream in;
+		
+		private int remaining;
+		
+		private Key<E> head;
+		
+		private Run(File file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			remaining = in.readInt();
+		}
+		
+		private boolean advance() throws IOException {
+			if (remaining == 0) {
+				head = null;
+				return false;
+			}
+			
+			remaining--;
+			int index = in.readInt();
+			E entity = metamodel.type().cast(instantiate(in));
+			read(in, entity, metamodel, null);
+			head = order.key(entity, index);
+			return true;
+		}
+		
+		@Override
+		public int compareTo(Run run) {
+			return order.ranking().compare(head, run.head);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.EmbeddedProperty;
+import org.eiichiro.acidhouse.metamodel.Property;
+import org.eiichiro.acidhouse.metamodel.StringProperty;
+
+/**
+ * {@code StartsWithFilter} is a {@code Filter} implementation to do filtering 
+ * the <code>String</code> property which starts with the specified prefix.
+ * You can get this instance from {@code StringProperty#startsWith(String)}, 
+ * or construct it for the <code>String</code> {@code ComparableProperty} 
+ * directly.
+ * The prefix is equivalent to the half-open range from {@link #lower()} 
+ * (inclusive) to {@link #upper()} (exclusive), so that 
+ * {@link Filters#compile(Filter...)} merges it into {@code Range} and the 
+ * backend can map it onto an index range scan. In-memory, the property value 
+ * is tested with {@code String#regionMatches(int, String, int, int)} without 
+ * allocating substrings.
+ * 
+ * @see StringProperty
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class StartsWithFilter implements PropertyFilter<String>, BatchFilter<String> {
+
+	private final Property<?, String> property;
+	
+	private final String prefix;
+	
+	private final String upper;
+	
+	/**
+	 * Constructs a new {@code StartsWithFilter} instance with the specified 
+	 * {@code ComparableProperty} and prefix.
+	 * 
+	 * @param property The <code>String</code> {@code ComparableProperty} 
+	 * instance.
+	 * @param prefix The prefix.
+	 */
+	public StartsWithFilter(ComparableProperty<?, String> property, String prefix) {
+		if (property == null) {
+			throw new IllegalArgumentException("'property' must not be [" + property + "]");
+		}
+		
+		if (prefix == null) {
+			throw new IllegalArgumentException("'prefix' must not be [" + prefix + "]");
+		}
+		
+		this.property = property;
+		this.prefix = prefix;
+		this.upper = upper(prefix);
+	}
+	
+	/** Returns the property that this {@code StartsWithFilter} does filtering. */
+	@Override
+	public Property<?, String> property() {
+		return property;
+	}
+	
+	/**
+	 * Indicates the specified entity instance matches to this 
+	 * {@code StartsWithFilter}.
+	 */
+	@Override
+	public boolean matches(Object entity) {
+		return evaluate(property.get(entity));
+	}
+	
+	/**
+	 * Indicates the specified property value matches to this 
+	 * {@code StartsWithFilter}.
+	 */
+	@Override
+	public boolean evaluate(String value) {
+		return value.regionMatches(0, prefix, 0, prefix.length());
+	}
+	
+	/**
+	 * Evaluates the specified entities in a batch.
+	 * 
+	 * @see BatchFilter#matches(List, BitSet)
+	 */
+	@Override
+	public void matches(List<?> entities, BitSet selection) {
+		Object[] values = Filters.values(property, entities, selection);
+		int length = prefix.length();
+		
+		for (int i = selection.nextSetBit(0); i >= 0 && i < values.length; i = selection.nextSetBit(i + 1)) {
+			if (!((String) values[i]).regionMatches(0, prefix, 0, length)) {
+				selection.clear(i);
+			}
+		}
+	}
+	
+	/** Returns the prefix this {@code StartsWithFilter} does filtering. */
+	public String prefix() {
+		return prefix;
+	}
+	
+	/**
+	 * Returns the inclusive lower bound of the range equivalent to this 
+	 * {@code StartsWithFilter}; the prefix itself.
+	 * 
+	 * @return The inclusive lower bound.
+	 */
+	public String lower() {
+		return prefix;
+	}
+	
+	/**
+	 * Returns the exclusive upper bound of the range equivalent to this 
+	 * {@code StartsWithFilter}; the least <code>String</code> which is greater 
+	 * than every <code>String</code> starting with the prefix.
+	 * 
+	 * @return The exclusive upper bound, or <code>null</code> if not bounded 
+	 * (the prefix is empty or consists of <code>'&#92;uffff'</code> only).
+	 */
+	public String upper() {
+		return upper;
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		String name = (property.parent() instanceof EmbeddedProperty)
+				? property.parent().name() + "." + property.name() : property.name();
+		return name + " startsWith \"" + prefix + "\"";
+	}
+	
+	private static String upper(String prefix) {
+		for (int i = prefix.length() - 1; i >= 0; i--) {
+			char c = prefix.charAt(i);
+			
+			if (c != Character.MAX_VALUE) {
+				return prefix.substring(0, i) + (char) (c + 1);
+			}
+		}
+		
+		return null;
+	}
+	
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+/**
+ * {@code StreamingGetList} is the optional extension of {@code GetList} 
+ * which executes the command in the streaming mode with {@link #iterate()}.
+ * The {@code GetList} implementation which supports it implements this 
+ * interface in addition to {@code GetList}, so the existing {@code GetList} 
+ * implementations are not affected. The implementation builds the 
+ * {@code Cursor} with 
+ * {@link Plan#iterate(Cursor.Fetcher, int, int, int, int)}:
+ * <pre>
+ * GetList&lt;Entity3&gt; command = session.get(entity3$);
+ * 
+ * if (command instanceof StreamingGetList) {
+ * 	Cursor&lt;Entity3&gt; cursor = ((StreamingGetList&lt;Entity3&gt;) command)
+ * 			.filter(entity3$.i.lessThan(5))
+ * 			.batch(500)
+ * 			.iterate();
+ * 	...
+ * }
+ * </pre>
+ * 
+ * @see GetList
+ * @see Cursor
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface StreamingGetList<E> extends GetList<E> {
+
+	/**
+	 * Specifies sort orders by which the returned list is sorted.
+	 * 
+	 * @param orders The sort orders by which the returned list is sorted.
+	 * @return The {@code StreamingGetList} which the execution result is 
+	 * sorted by the specified sort orders.
+	 */
+	public StreamingGetList<E> sort(Order<?, ?>... orders);
+	
+	/**
+	 * Qualifies entities to be retrieved with the specified {@code Filter}s.
+	 * Each of the specified filters is combined with "logical and".
+	 * 
+	 * @param filters {@code Filter}s to qualify entities to be retrieved.
+	 * @return The {@code StreamingGetList} which the execution result is 
+	 * qualified with the specified {@code Filter}s.
+	 */
+	public StreamingGetList<E> filter(Filter<?>... filters);
+	
+	/**
+	 * Qualifies limit size of returned list.
+	 * 
+	 * @param limit The limit size of returned list.
+	 * @return The {@code StreamingGetList} which the execution result is 
+	 * qualified with the specified limit.
+	 */
+	public StreamingGetList<E> limit(int limit);
+	
+	/**
+	 * Qualifies offset of execution result to be contained in the returned list 
+	 * at first.
+	 * 
+	 * @param offset The offset of execution result to be contained in the 
+	 * returned list at first.
+	 * @return The {@code StreamingGetList} which the execution result is 
+	 * qualified with the specified offset.
+	 */
+	public StreamingGetList<E> offset(int offset);
+	
+	/**
+	 * Specifies the number of the entities fetched from the datastore per 
+	 * page by {@link #iterate()}. The default batch size depends on the 
+	 * implementation.
+	 * 
+	 * @param batch The number of the entities fetched per page.
+	 * @return The {@code StreamingGetList} which fetches the entities by the 
+	 * specified batch size.
+	 */
+	public StreamingGetList<E> batch(int batch);
+	
+	/**
+	 * Specifies the number of the pages {@link #iterate()} reads ahead on the 
+	 * background thread while the current page is consumed. No page is read 
+	 * ahead by default. The pages read ahead are fetched outside of the 
+	 * calling thread; don't specify the prefetch if the implementation reads 
+	 * the datastore within the thread-bound transaction (see 
+	 * {@link Cursor.Fetcher}).
+	 * 
+	 * @param prefetch The number of the pages read ahead.
+	 * @return The {@code StreamingGetList} which reads ahead the specified 
+	 * number of the pages.
+	 */
+	public StreamingGetList<E> prefetch(int prefetch);
+	
+	/**
+	 * Executes this command in the streaming mode. The returned 
+	 * {@code Cursor} fetches the entities lazily page by page, so the heap 
+	 * usage is bounded by the batch size and the prefetch instead of the size 
+	 * of the result. Close the {@code Cursor} when the iteration is 
+	 * abandoned.
+	 * 
+	 * @return The {@code Cursor} of the entities.
+	 */
+	public Cursor<E> iterate();
+	
+}
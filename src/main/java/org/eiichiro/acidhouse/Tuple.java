@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code Tuple} is the execution result of {@code GetTuple}; the results of 
+ * the {@code Aggregation}s in the order they are specified. Each result is 
+ * got in its type with the {@code Aggregation} instance which computed it:
+ * <pre>
+ * Tuple tuple = session.get(min, max, sum).execute();
+ * int i = tuple.get(max);
+ * </pre>
+ * 
+ * @see GetTuple
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class Tuple {
+
+	private final List<Aggregation<?>> aggregations;
+	
+	private final List<Object> values;
+	
+	/**
+	 * Constructs a new {@code Tuple} of the specified aggregation results.
+	 * 
+	 * @param aggregations The {@code Aggregation}s.
+	 * @param values The results of the {@code Aggregation}s in the same order.
+	 */
+	public Tuple(List<? extends Aggregation<?>> aggregations, List<?> values) {
+		if (aggregations == null) {
+			throw new IllegalArgumentException("'aggregations' must not be [" + aggregations + "]");
+		}
+		
+		if (values == null || values.size() != aggregations.size()) {
+			throw new IllegalArgumentException("'values' must not be [" + values + "]");
+		}
+		
+		this.aggregations = Collections.unmodifiableList(new ArrayList<Aggregation<?>>(aggregations));
+		this.values = Collections.unmodifiableList(new ArrayList<Object>(values));
+	}
+	
+	/**
+	 * Returns the result of the specified {@code Aggregation}.
+	 * 
+	 * @param <T> The aggregation result type.
+	 * @param aggregation The {@code Aggregation} specified to {@code GetTuple}.
+	 * @return The result of the specified {@code Aggregation}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Aggregation<T> aggregation) {
+		int index = aggregations.indexOf(aggregation);
+		
+		if (index < 0) {
+			throw new IllegalArgumentException("'aggregation' must be one of " + aggregations
+					+ " [" + aggregation + "]");
+		}
+		
+		return (T) values.get(index);
+	}
+	
+	/**
+	 * Returns the result of the {@code Aggregation} at the specified position.
+	 * 
+	 * @param index The position of the {@code Aggregation}.
+	 * @return The result of the {@code Aggregation} at the specified position.
+	 */
+	public Object get(int index) {
+		return values.get(index);
+	}
+	
+	/**
+	 * Returns the {@code Aggregation}s of this {@code Tuple}.
+	 * 
+	 * @return The {@code Aggregation}s of this {@code Tuple}.
+	 */
+	public List<Aggregation<?>> aggregations() {
+		return aggregations;
+	}
+	
+	/**
+	 * Returns the number of the aggregation results.
+	 * 
+	 * @return The number of the aggregation results.
+	 */
+	public int size() {
+		return values.size();
+	}
+	
+	/** Returns the {@code String} representation of this instance. */
+	@Override
+	public String toString() {
+		return values.toString();
+	}
+	
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+/**
+ * {@code Accessor} reads and writes the value at the end of a field path from 
+ * an entity instance.
+ * {@code Accessor} is resolved once per metamodel {@code Property} and is 
+ * reused on every {@code Property#get(Object)} and 
+ * {@code Property#set(Object, Object)} invocation, so that the field lookup is 
+ * not repeated on the hot path.
+ * You can get {@code Accessor} instances from {@code Accessors}.
+ * 
+ * @see Accessors
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public abstract class Accessor {
+
+	/**
+	 * Returns the value at the end of the field path from the specified 
+	 * object.
+	 * 
+	 * @param object The object from which the value is read.
+	 * @return The value at the end of the field path.
+	 */
+	public abstract Object get(Object object);
+	
+	/**
+	 * Sets the specified value at the end of the field path into the specified 
+	 * object.
+	 * 
+	 * @param object The object into which the value is written.
+	 * @param value The value to be set.
+	 */
+	public abstract void set(Object object, Object value);
+	
+	/**
+	 * Returns the value at the end of the field path from the specified 
+	 * object as <code>long</code>.
+	 * The value must be an integral number. The {@code Accessor} which reads 
+	 * a primitive field overrides this method not to box the value.
+	 * 
+	 * @param object The object from which the value is read.
+	 * @return The value at the end of the field path as <code>long</code>.
+	 */
+	public long getLong(Object object) {
+		Object value = get(object);
+		return (value instanceof Character) ? (Character) value : ((Number) value).longValue();
+	}
+	
+	/**
+	 * Returns the value at the end of the field path from the specified 
+	 * object as <code>int</code>.
+	 * The value must be an <code>int</code> or narrower integral number. The 
+	 * {@code Accessor} which reads a primitive field overrides this method not 
+	 * to box the value.
+	 * 
+	 * @param object The object from which the value is read.
+	 * @return The value at the end of the field path as <code>int</code>.
+	 */
+	public int getInt(Object object) {
+		Object value = get(object);
+		return (value instanceof Character) ? (Character) value : ((Number) value).intValue();
+	}
+	
+	/**
+	 * Returns the value at the end of the field path from the specified 
+	 * object as <code>double</code>.
+	 * The value must be a number. The {@code Accessor} which reads a primitive 
+	 * field overrides this method not to box the value.
+	 * 
+	 * @param object The object from which the value is read.
+	 * @return The value at the end of the field path as <code>double</code>.
+	 */
+	public double getDouble(Object object) {
+		Object value = get(object);
+		return (value instanceof Character) ? (Character) value : ((Number) value).doubleValue();
+	}
+	
+}
@@ -0,0 +1,554 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code AccessorGenerator} generates the {@code Accessor} class which reads 
+ * and writes the resolved field path with direct {@code getfield} and 
+ * {@code putfield} instructions.
+ * On Java 9 or later, the generated class is defined in the package of the 
+ * root entity class with {@code MethodHandles.Lookup#defineClass(byte[])}, 
+ * so that it can access package-private fields. Otherwise it is defined by 
+ * the child class loader of the root entity class' loader, which can access 
+ * only the public fields of the public classes. If any field on the path is 
+ * not accessible from the generated class (e.g. private or final field) or 
+ * the class definition fails, {@code AccessorGenerator} returns 
+ * <code>null</code> and the caller keeps the reflective {@code Accessor}.
+ * The runtime exception thrown in the generated class (e.g.
+ * {@code NullPointerException} on the <code>null</code> intermediate field) 
+ * is wrapped in {@code UncheckedException} as the reflective 
+ * {@code Accessor} does.
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+class AccessorGenerator {
+
+	private static final AtomicInteger sequence = new AtomicInteger();
+	
+	private final Class<?> root;
+	
+	private final Field[] fields;
+	
+	private final Map<String, Integer> constants = new HashMap<String, Integer>();
+	
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	
+	private int count = 1;
+	
+	AccessorGenerator(Field[] fields) {
+		this.root = fields[0].getDeclaringClass();
+		this.fields = fields;
+	}
+	
+	/**
+	 * Generates, defines and instantiates the {@code Accessor} class for the 
+	 * field path.
+	 * 
+	 * @return The generated {@code Accessor} or <code>null</code> if it cannot 
+	 * be generated.
+	 */
+	Accessor generate() {
+		return generate(Lookup.available());
+	}
+	
+	/**
+	 * Generates, defines and instantiates the {@code Accessor} class for the 
+	 * field path in the package of the root entity class if <code>lookup</code> 
+	 * is <code>true</code>, or in the child class loader otherwise.
+	 * 
+	 * @param lookup Whether the class is defined with 
+	 * {@code MethodHandles.Lookup#defineClass(byte[])} or not.
+	 * @return The generated {@code Accessor} or <code>null</code> if it cannot 
+	 * be generated.
+	 */
+	Accessor generate(boolean lookup) {
+		ClassLoader loader = root.getClassLoader();
+		
+		if (loader == null || (lookup && !Lookup.available())) {
+			return null;
+		}
+		
+		if (!accessible(lookup ? loader : null)) {
+			return null;
+		}
+		
+		String name = root.getName() + "$$Accessor$" + sequence.incrementAndGet();
+		
+		try {
+			byte[] bytes = write(name.replace('.', '/'));
+			Class<?> clazz = lookup ? Lookup.define(root, bytes)
+					: new Loader(loader).define(name, bytes);
+			return (Accessor) clazz.getDeclaredConstructor().newInstance();
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Indicates whether the generated class can access the field path; 
+	 * <code>loader</code> is the class loader the generated class is defined 
+	 * in, or <code>null</code> if it is defined in the child class loader and 
+	 * cannot access the package-private members.
+	 */
+	private boolean accessible(ClassLoader loader) {
+		for (int i = 0; i < fields.length; i++) {
+			Field field = fields[i];
+			
+			if (field == null) {
+				return false;
+			}
+			
+			int modifiers = field.getModifiers();
+			
+			if (Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers)) {
+				return false;
+			}
+			
+			if (!(Modifier.isPublic(modifiers) && accessible(field.getDeclaringClass(), loader))
+					&& !local(field.getDeclaringClass(), loader)) {
+				return false;
+			}
+		}
+		
+		Field last = fields[fields.length - 1];
+		return !Modifier.isFinal(last.getModifiers()) && accessible(last.getType(), loader);
+	}
+	
+	private boolean accessible(Class<?> type, ClassLoader loader) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		
+		if (type.isPrimitive() || local(type, loader)) {
+			return true;
+		}
+		
+		for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+			if (!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private boolean local(Class<?> type, ClassLoader loader) {
+		return loader != null && type.getClassLoader() == loader
+				&& packageName(type).equals(packageName(root));
+	}
+	
+	private static String packageName(Class<?> type) {
+		String name = type.getName();
+		int i = name.lastIndexOf('.');
+		return (i < 0) ? "" : name.substring(0, i);
+	}
+	
+	private byte[] write(String name) throws IOException {
+		String accessor = Accessor.class.getName().replace('.', '/');
+		int thisClass = classConstant(name);
+		int superClass = classConstant(accessor);
+		List<Object[]> methods = new ArrayList<Object[]>();
+		methods.add(new Object[] { "<init>", "()V", init(accessor), 1, 1 });
+		methods.add(new Object[] { "get", "(Ljava/lang/Object;)Ljava/lang/Object;", get(), 2, 2 });
+		methods.add(new Object[] { "set", "(Ljava/lang/Object;Ljava/lang/Object;)V", set(), 4, 3 });
+		
+		if (convertible(long.class)) {
+			methods.add(new Object[] { "getLong", "(Ljava/lang/Object;)J", get(long.class), 2, 2 });
+		}
+		
+		if (convertible(int.class)) {
+			methods.add(new Object[] { "getInt", "(Ljava/lang/Object;)I", get(int.class), 2, 2 });
+		}
+		
+		if (convertible(double.class)) {
+			methods.add(new Object[] { "getDouble", "(Ljava/lang/Object;)D", get(double.class), 2, 2 });
+		}
+		
+		int code = utf8("Code");
+		int runtime = classConstant("java/lang/RuntimeException");
+		byte[] rethrow = rethrow();
+		
+		for (Object[] method : methods) {
+			method[0] = utf8((String) method[0]);
+			method[1] = utf8((String) method[1]);
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(49);
+		out.writeShort(count);
+		pool.writeTo(out);
+		out.writeShort(0x0001 | 0x0010 | 0x0020);	// public final super
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0);							// interfaces
+		out.writeShort(0);							// fields
+		out.writeShort(methods.size());
+		
+		for (int i = 0; i < methods.size(); i++) {
+			Object[] method = methods.get(i);
+			byte[] body = (byte[]) method[2];
+			// Every method but the constructor wraps the runtime exception.
+			int handlers = (i == 0) ? 0 : 1;
+			int length = body.length + handlers * rethrow.length;
+			out.writeShort(0x0001);					// public
+			out.writeShort((Integer) method[0]);
+			out.writeShort((Integer) method[1]);
+			out.writeShort(1);
+			out.writeShort(code);
+			out.writeInt(12 + length + handlers * 8);
+			out.writeShort(Math.max((Integer) method[3], handlers * 3));
+			out.writeShort((Integer) method[4]);
+			out.writeInt(length);
+			out.write(body);
+			
+			if (handlers == 0) {
+				out.writeShort(0);					// exception table
+			} else {
+				out.write(rethrow);
+				out.writeShort(1);					// exception table
+				out.writeShort(0);
+				out.writeShort(body.length);
+				out.writeShort(body.length);
+				out.writeShort(runtime);
+			}
+			
+			out.writeShort(0);						// attributes
+		}
+		
+		out.writeShort(0);							// attributes
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	private byte[] init(String accessor) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(0x2A);						// aload_0
+		out.writeByte(0xB7);						// invokespecial
+		out.writeShort(methodConstant(accessor, "<init>", "()V"));
+		out.writeByte(0xB1);						// return
+		return bytes.toByteArray();
+	}
+	
+	private byte[] rethrow() throws IOException {
+		String unchecked = "org/eiichiro/reverb/lang/UncheckedException";
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(0xBB);						// new
+		out.writeShort(classConstant(unchecked));
+		out.writeByte(0x5A);						// dup_x1
+		out.writeByte(0x5F);						// swap
+		out.writeByte(0xB7);						// invokespecial
+		out.writeShort(methodConstant(unchecked, "<init>", "(Ljava/lang/Throwable;)V"));
+		out.writeByte(0xBF);						// athrow
+		return bytes.toByteArray();
+	}
+	
+	private byte[] get() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(0x2B);						// aload_1
+		out.writeByte(0xC0);						// checkcast
+		out.writeShort(classConstant(internalName(root)));
+		
+		for (Field field : fields) {
+			out.writeByte(0xB4);					// getfield
+			out.writeShort(fieldConstant(field));
+		}
+		
+		Class<?> type = fields[fields.length - 1].getType();
+		
+		if (type.isPrimitive()) {
+			Class<?> wrapper = wrapper(type);
+			out.writeByte(0xB8);					// invokestatic
+			out.writeShort(methodConstant(internalName(wrapper), "valueOf",
+					"(" + descriptor(type) + ")" + descriptor(wrapper)));
+		}
+		
+		out.writeByte(0xB0);						// areturn
+		return bytes.toByteArray();
+	}
+	
+	private byte[] get(Class<?> primitive) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(0x2B);						// aload_1
+		out.writeByte(0xC0);						// checkcast
+		out.writeShort(classConstant(internalName(root)));
+		
+		for (Field field : fields) {
+			out.writeByte(0xB4);					// getfield
+			out.writeShort(fieldConstant(field));
+		}
+		
+		Class<?> type = fields[fields.length - 1].getType();
+		
+		if (primitive == long.class) {
+			if (type != long.class) {
+				out.writeByte(0x85);				// i2l
+			}
+			
+			out.writeByte(0xAD);					// lreturn
+		} else if (primitive == int.class) {
+			out.writeByte(0xAC);					// ireturn
+		} else if (primitive == double.class) {
+			if (type == long.class) {
+				out.writeByte(0x8A);				// l2d
+			} else if (type == float.class) {
+				out.writeByte(0x8D);				// f2d
+			} else if (type != double.class) {
+				out.writeByte(0x87);				// i2d
+			}
+			
+			out.writeByte(0xAF);					// dreturn
+		}
+		
+		return bytes.toByteArray();
+	}
+	
+	private boolean convertible(Class<?> primitive) {
+		Class<?> type = fields[fields.length - 1].getType();
+		
+		if (primitive == long.class) {
+			return type == long.class || type == int.class
+					|| type == short.class || type == byte.class
+					|| type == char.class;
+		}
+		
+		if (primitive == int.class) {
+			return type == int.class || type == short.class
+					|| type == byte.class || type == char.class;
+		}
+		
+		if (primitive == double.class) {
+			return type.isPrimitive() && type != boolean.class;
+		}
+		
+		return false;
+	}
+	
+	private byte[] set() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(0x2B);						// aload_1
+		out.writeByte(0xC0);						// checkcast
+		out.writeShort(classConstant(internalName(root)));
+		
+		for (int i = 0; i < fields.length - 1; i++) {
+			out.writeByte(0xB4);					// getfield
+			out.writeShort(fieldConstant(fields[i]));
+		}
+		
+		Field last = fields[fields.length - 1];
+		Class<?> type = last.getType();
+		out.writeByte(0x2C);						// aload_2
+		
+		if (type.isPrimitive()) {
+			Class<?> wrapper = wrapper(type);
+			out.writeByte(0xC0);					// checkcast
+			out.writeShort(classConstant(internalName(wrapper)));
+			out.writeByte(0xB6);					// invokevirtual
+			out.writeShort(methodConstant(internalName(wrapper),
+					type.getName() + "Value", "()" + descriptor(type)));
+		} else if (!type.equals(Object.class)) {
+			out.writeByte(0xC0);					// checkcast
+			out.writeShort(classConstant(internalName(type)));
+		}
+		
+		out.writeByte(0xB5);						// putfield
+		out.writeShort(fieldConstant(last));
+		out.writeByte(0xB1);						// return
+		return bytes.toByteArray();
+	}
+	
+	private int utf8(String value) throws IOException {
+		String key = "1:" + value;
+		Integer index = constants.get(key);
+		
+		if (index == null) {
+			DataOutputStream out = new DataOutputStream(pool);
+			out.writeByte(1);
+			out.writeUTF(value);
+			out.flush();
+			index = count++;
+			constants.put(key, index);
+		}
+		
+		return index;
+	}
+	
+	private int classConstant(String name) throws IOException {
+		return constant(7, name, utf8(name), -1);
+	}
+	
+	private int nameAndType(String name, String descriptor) throws IOException {
+		return constant(12, name + ":" + descriptor, utf8(name), utf8(descriptor));
+	}
+	
+	private int fieldConstant(Field field) throws IOException {
+		String owner = internalName(field.getDeclaringClass());
+		String descriptor = descriptor(field.getType());
+		return constant(9, owner + "." + field.getName() + ":" + descriptor,
+				classConstant(owner), nameAndType(field.getName(), descriptor));
+	}
+	
+	private int methodConstant(String owner, String name, String descriptor) throws IOException {
+		return constant(10, owner + "." + name + ":" + descriptor,
+				classConstant(owner), nameAndType(name, descriptor));
+	}
+	
+	private int constant(int tag, String value, int first, int second) throws IOException {
+		String key = tag + ":" + value;
+		Integer index = constants.get(key);
+		
+		if (index == null) {
+			DataOutputStream out = new DataOutputStream(pool);
+			out.writeByte(tag);
+			out.writeShort(first);
+			
+			if (second >= 0) {
+				out.writeShort(second);
+			}
+			
+			out.flush();
+			index = count++;
+			constants.put(key, index);
+		}
+		
+		return index;
+	}
+	
+	private static String internalName(Class<?> type) {
+		return type.isArray() ? descriptor(type) : type.getName().replace('.', '/');
+	}
+	
+	private static String descriptor(Class<?> type) {
+		if (type.isArray()) {
+			return type.getName().replace('.', '/');
+		} else if (type == int.class) {
+			return "I";
+		} else if (type == long.class) {
+			return "J";
+		} else if (type == double.class) {
+			return "D";
+		} else if (type == float.class) {
+			return "F";
+		} else if (type == boolean.class) {
+			return "Z";
+		} else if (type == short.class) {
+			return "S";
+		} else if (type == byte.class) {
+			return "B";
+		} else if (type == char.class) {
+			return "C";
+		} else {
+			return "L" + type.getName().replace('.', '/') + ";";
+		}
+	}
+	
+	private static Class<?> wrapper(Class<?> type) {
+		if (type == int.class) {
+			return Integer.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == double.class) {
+			return Double.class;
+		} else if (type == float.class) {
+			return Float.class;
+		} else if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == byte.class) {
+			return Byte.class;
+		} else {
+			return Character.class;
+		}
+	}
+	
+	/**
+	 * Defines the class in the package of the root entity class with 
+	 * {@code MethodHandles.Lookup#defineClass(byte[])}, which is available on 
+	 * Java 9 or later.
+	 */
+	private static class Lookup {
+
+		private static final Object lookup;
+		
+		private static final Method in;
+		
+		private static final Method define;
+		
+		static {
+			Object object = null;
+			Method method1 = null;
+			Method method2 = null;
+			
+			try {
+				Class<?> handles = Class.forName("java.lang.invoke.MethodHandles");
+				Class<?> type = Class.forName("java.lang.invoke.MethodHandles$Lookup");
+				method1 = handles.getMethod("privateLookupIn", Class.class, type);
+				method2 = type.getMethod("defineClass", byte[].class);
+				object = handles.getMethod("lookup").invoke(null);
+			} catch (Throwable e) {
+				method1 = null;
+				method2 = null;
+			}
+			
+			lookup = object;
+			in = method1;
+			define = method2;
+		}
+		
+		private static boolean available() {
+			return define != null;
+		}
+		
+		private static Class<?> define(Class<?> root, byte[] bytes) throws Exception {
+			return (Class<?>) define.invoke(in.invoke(null, root, lookup), bytes);
+		}
+		
+	}
+	
+	/** The child class loader which defines the generated class. */
+	private static class Loader extends ClassLoader {
+
+		private Loader(ClassLoader parent) {
+			super(parent);
+		}
+		
+		private Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+		
+	}
+	
+}
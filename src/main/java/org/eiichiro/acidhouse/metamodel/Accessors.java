@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.eiichiro.reverb.lang.UncheckedException;
+
+/**
+ * {@code Accessors} provides {@code Accessor} factory methods.
+ * The field path is resolved against the declared field types once when the 
+ * {@code Accessor} is created, so {@code Accessor#get(Object)} and 
+ * {@code Accessor#set(Object, Object)} do not look up any field.
+ * 
+ * @see Accessor
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public abstract class Accessors {
+
+	private static volatile boolean generation = Boolean.getBoolean(
+			"org.eiichiro.acidhouse.metamodel.generation");
+			
+	private Accessors() {}
+	
+	/**
+	 * Enables or disables the bytecode generation of {@code Accessor}s.
+	 * When it is enabled, {@code Metamodels#metamodel(Class)} replaces the 
+	 * reflective {@code Accessor} of every {@code Property} in the registered 
+	 * {@code Metamodel} with the generated one, which reads and writes the 
+	 * field path with direct field access instructions. This mode is disabled 
+	 * by default and can also be enabled with
+	 * <code>-Dorg.eiichiro.acidhouse.metamodel.generation=true</code>.
+	 * 
+	 * @param generation Whether the bytecode generation is enabled or not.
+	 */
+	public static void generation(boolean generation) {
+		Accessors.generation = generation;
+	}
+	
+	/**
+	 * Returns whether the bytecode generation of {@code Accessor}s is enabled 
+	 * or not.
+	 * 
+	 * @return Whether the bytecode generation of {@code Accessor}s is enabled 
+	 * or not.
+	 */
+	public static boolean generation() {
+		return generation;
+	}
+	
+	/**
+	 * Generates the {@code Accessor} which reads and writes the same field 
+	 * path as the specified {@code Accessor} with direct field access 
+	 * instructions.
+	 * If the field path cannot be accessed directly (e.g. it contains private 
+	 * or final field, or package-private field before Java 9) or the class 
+	 * definition fails, this method returns the specified {@code Accessor} as 
+	 * it is. The generated {@code Accessor} wraps the runtime exception in 
+	 * {@code UncheckedException} as the specified one does.
+	 * 
+	 * @param accessor The {@code Accessor} to be generated.
+	 * @return The generated {@code Accessor}, or the specified 
+	 * {@code Accessor} if it cannot be generated.
+	 */
+	public static Accessor generate(Accessor accessor) {
+		if (!(accessor instanceof FieldAccessor)) {
+			return accessor;
+		}
+		
+		Field[] fields = ((FieldAccessor) accessor).fields;
+		
+		if (fields.length == 0 || fields[0] == null) {
+			return accessor;
+		}
+		
+		Accessor generated = new AccessorGenerator(fields).generate();
+		return (generated == null) ? accessor : generated;
+	}
+	
+	/**
+	 * Resolves the specified field path from the specified type and returns 
+	 * the {@code Accessor} for it.
+	 * 
+	 * @param type The type from which the field path begins.
+	 * @param path The field names from the specified type.
+	 * @return The {@code Accessor} for the specified field path.
+	 */
+	public static Accessor accessor(Class<?> type, List<String> path) {
+		Field[] fields = new Field[path.size()];
+		Class<?> owner = type;
+		
+		for (int i = 0; i < fields.length; i++) {
+			Field field = (owner == null) ? null : field(owner, path.get(i));
+			fields[i] = field;
+			owner = (field == null) ? null : field.getType();
+		}
+		
+		return new FieldAccessor(path.toArray(new String[path.size()]), fields);
+	}
+	
+	/**
+	 * Returns the {@code Accessor} which extends the field path of the 
+	 * specified {@code Accessor} with the specified field name.
+	 * The resolved field path of the specified {@code Accessor} is reused.
+	 * The specified {@code Accessor} must be the one returned from 
+	 * {@code #accessor(Class, List)} or this method.
+	 * 
+	 * @param accessor The {@code Accessor} to be extended.
+	 * @param name The field name to be appended.
+	 * @return The {@code Accessor} for the extended field path.
+	 */
+	public static Accessor accessor(Accessor accessor, String name) {
+		if (!(accessor instanceof FieldAccessor)) {
+			throw new IllegalArgumentException("'accessor' must be resolved by ["
+					+ Accessors.class.getName() + "]");
+		}
+		
+		FieldAccessor parent = (FieldAccessor) accessor;
+		int length = parent.fields.length;
+		String[] names = new String[length + 1];
+		System.arraycopy(parent.names, 0, names, 0, length);
+		names[length] = name;
+		Field[] fields = new Field[length + 1];
+		System.arraycopy(parent.fields, 0, fields, 0, length);
+		
+		if (length > 0 && parent.fields[length - 1] != null) {
+			fields[length] = field(parent.fields[length - 1].getType(), name);
+		}
+		
+		return new FieldAccessor(names, fields);
+	}
+	
+	private static Field field(Class<?> type, String name) {
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			try {
+				Field field = c.getDeclaredField(name);
+				field.setAccessible(true);
+				return field;
+			} catch (NoSuchFieldException e) {}
+		}
+		
+		return null;
+	}
+	
+	private static class FieldAccessor extends Accessor {
+
+		private final String[] names;
+		
+		private final Field[] fields;
+		
+		private FieldAccessor(String[] names, Field[] fields) {
+			this.names = names;
+			this.fields = fields;
+		}
+		
+		@Override
+		public Object get(Object object) {
+			Object value = object;
+			
+			try {
+				for (int i = 0; i < fields.length; i++) {
+					value = field(i, value).get(value);
+				}
+				
+				return value;
+			} catch (Exception e) {
+				throw new UncheckedException(e);
+			}
+		}
+		
+		@Override
+		public long getLong(Object object) {
+			if (!primitive()) {
+				return super.getLong(object);
+			}
+			
+			try {
+				Object owner = owner(object);
+				return field(fields.length - 1, owner).getLong(owner);
+			} catch (Exception e) {
+				throw new UncheckedException(e);
+			}
+		}
+		
+		@Override
+		public int getInt(Object object) {
+			if (!primitive()) {
+				return super.getInt(object);
+			}
+			
+			try {
+				Object owner = owner(object);
+				return field(fields.length - 1, owner).getInt(owner);
+			} catch (Exception e) {
+				throw new UncheckedException(e);
+			}
+		}
+				
+		@Override
+		public double getDouble(Object object) {
+			if (!primitive()) {
+				return super.getDouble(object);
+			}
+			
+			try {
+				Object owner = owner(object);
+				return field(fields.length - 1, owner).getDouble(owner);
+			} catch (Exception e) {
+				throw new UncheckedException(e);
+			}
+		}
+		
+		@Override
+		public void set(Object object, Object value) {
+			try {
+				Object owner = owner(object);
+				field(fields.length - 1, owner).set(owner, value);
+			} catch (Exception e) {
+				throw new UncheckedException(e);
+			}
+		}
+		
+		private boolean primitive() {
+			Field last = fields[fields.length - 1];
+			return last != null && last.getType().isPrimitive();
+		}
+		
+		private Object owner(Object object) throws Exception {
+			Object owner = object;
+			
+			for (int i = 0; i < fields.length - 1; i++) {
+				owner = field(i, owner).get(owner);
+			}
+			
+			return owner;
+		}
+		
+		private Field field(int i, Object owner) throws NoSuchFieldException {
+			Field field = fields[i];
+			
+			if (field != null && field.getDeclaringClass().isInstance(owner)) {
+				return field;
+			}
+			
+			// Declared type does not tell the field (e.g. declared as an
+			// interface); falls back to the runtime type of the owner.
+			field = Accessors.field(owner.getClass(), names[i]);
+			
+			if (field == null) {
+				throw new NoSuchFieldException(names[i]);
+			}
+			
+			return field;
+		}
+		
+	}
+	
+}
@@ -84,8 +84,8 @@ public class ComparableProperty<E, T extends Comparable<T>> extends Property<E,
 	 */
 	public ComparableProperty(Metamodel<E> metamodel, Type type, String name) {
 		super(metamodel, type, name);
-		desc = new Order<E, T>(this, Order.Direction.DESC);
-		asc = new Order<E, T>(this, Order.Direction.ASC);
+		desc = order(Order.Direction.DESC);
+		asc = order(Order.Direction.ASC);
 	}
 
 	/**
@@ -100,8 +100,21 @@ public class ComparableProperty<E, T extends Comparable<T>> extends Property<E,
 	 */
 	public ComparableProperty(Property<E, ?> parent, Type type, String name) {
 		super(parent, type, name);
-		desc = new Order<E, T>(this, Order.Direction.DESC);
-		asc = new Order<E, T>(this, Order.Direction.ASC);
+		desc = order(Order.Direction.DESC);
+		asc = order(Order.Direction.ASC);
+	}
+	
+	/**
+	 * Creates the sorting order of this property in the specified direction.
+	 * This method is invoked from the constructor to initialize {@link #desc} 
+	 * and {@link #asc}; the subclass can override this method to provide the 
+	 * specialized {@code Order}, but must not depend on its own fields.
+	 * 
+	 * @param direction The sorting direction.
+	 * @return The sorting order of this property.
+	 */
+	protected Order<E, T> order(Order.Direction direction) {
+		return new Order<E, T>(this, direction);
 	}
 	
 	/**
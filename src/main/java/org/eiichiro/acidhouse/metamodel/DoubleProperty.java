@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import org.eiichiro.acidhouse.ComparableFilter.Operator;
+import org.eiichiro.acidhouse.Filter;
+import org.eiichiro.acidhouse.DoubleFilter;
+import org.eiichiro.acidhouse.Order;
+
+/**
+ * {@code DoubleProperty} is a {@code ComparableProperty} specialized for 
+ * <code>double</code> property.
+ * The {@code Filter}s, {@code Order}s and {@code Aggregation}s of this 
+ * property read and compare the property value as <code>double</code> without 
+ * boxing. Declare the <code>double</code> property in the metamodel class as 
+ * this type, like this:
+ * <pre>
+ * public final DoubleProperty&lt;Entity3&gt; d = new DoubleProperty&lt;Entity3&gt;(this, "d");
+ * </pre>
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class DoubleProperty<E> extends ComparableProperty<E, Double> {
+
+	/**
+	 * Constructs a new {@code DoubleProperty} instance with the specified 
+	 * {@code Metamodel} instance which has this metamodel property and 
+	 * property name.
+	 * 
+	 * @param metamodel The {@code Metamodel} instance which has this metamodel 
+	 * property.
+	 * @param name The property name.
+	 */
+	public DoubleProperty(Metamodel<E> metamodel, String name) {
+		super(metamodel, Double.class, name);
+	}
+	
+	/**
+	 * Constructs a new {@code DoubleProperty} instance with the specified 
+	 * {@code Property} instance which has this metamodel property and property 
+	 * name.
+	 * 
+	 * @param parent The parent {@code Property} instance which has this 
+	 * metamodel property.
+	 * @param name The property name.
+	 */
+	public DoubleProperty(Property<E, ?> parent, String name) {
+		super(parent, Double.class, name);
+	}
+	
+	/** Creates the {@code Order} which compares the value as <code>double</code>. */
+	@Override
+	protected Order<E, Double> order(Order.Direction direction) {
+		return new Order<E, Double>(this, direction) {
+
+			@Override
+			public int compare(E entity1, E entity2) {
+				double value = accessor().getDouble(entity1);
+				double value2 = accessor().getDouble(entity2);
+				return Double.compare(value, value2);
+			}
+			
+		};
+	}
+	
+	/** Creates {@code DoubleFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Double> equalTo(Double value) {
+		return (value == null) ? super.equalTo(value) : equalTo(value.doubleValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is equal to 
+	 * the specified value or not (==).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is equal to 
+	 * the specified value or not.
+	 */
+	public Filter<Double> equalTo(double value) {
+		return new DoubleFilter(this, value, Operator.EQUAL_TO);
+	}
+	
+	/** Creates {@code DoubleFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Double> notEqualTo(Double value) {
+		return (value == null) ? super.notEqualTo(value) : notEqualTo(value.doubleValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is not equal 
+	 * to the specified value or not (!=, &lt;&gt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is not equal 
+	 * to the specified value or not.
+	 */
+	public Filter<Double> notEqualTo(double value) {
+		return new DoubleFilter(this, value, Operator.NOT_EQUAL_TO);
+	}
+	
+	/** Creates {@code DoubleFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Double> greaterThan(Double value) {
+		return (value == null) ? super.greaterThan(value) : greaterThan(value.doubleValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is greater 
+	 * than the specified value or not (&gt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is greater 
+	 * than the specified value or not.
+	 */
+	public Filter<Double> greaterThan(double value) {
+		return new DoubleFilter(this, value, Operator.GREATER_THAN);
+	}
+	
+	/** Creates {@code DoubleFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Double> greaterThanOrEqualTo(Double value) {
+		return (value == null) ? super.greaterThanOrEqualTo(value) : greaterThanOrEqualTo(value.doubleValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is greater 
+	 * than or equal to the specified value or not (&gt;=).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is greater 
+	 * than or equal to the specified value or not.
+	 */
+	public Filter<Double> greaterThanOrEqualTo(double value) {
+		return new DoubleFilter(this, value, Operator.GREATER_THAN_OR_EQUAL_TO);
+	}
+	
+	/** Creates {@code DoubleFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Double> lessThan(Double value) {
+		return (value == null) ? super.lessThan(value) : lessThan(value.doubleValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is less than 
+	 * the specified value or not (&lt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is less than 
+	 * the specified value or not.
+	 */
+	public Filter<Double> lessThan(double value) {
+		return new DoubleFilter(this, value, Operator.LESS_THAN);
+	}
+	
+	/** Creates {@code DoubleFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Double> lessThanOrEqualTo(Double value) {
+		return (value == null) ? super.lessThanOrEqualTo(value) : lessThanOrEqualTo(value.doubleValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is less than 
+	 * or equal to the specified value or not (&lt;=).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is less than 
+	 * or equal to the specified value or not.
+	 */
+	public Filter<Double> lessThanOrEqualTo(double value) {
+		return new DoubleFilter(this, value, Operator.LESS_THAN_OR_EQUAL_TO);
+	}
+	
+}
@@ -40,4 +40,17 @@ public abstract class EmbeddedProperty<E, T> extends Property<E, T> {
 		super(metamodel, type, name);
 	}
 	
+	/**
+	 * Constructs a new {@code EmbeddedProperty} instance with the specified 
+	 * parent property, property type and property name. This constructor is 
+	 * called when this instance is declared in the {@code @Embedded} type.
+	 * 
+	 * @param parent The parent property which has this metamodel property.
+	 * @param type The property type.
+	 * @param name The property name.
+	 */
+	public EmbeddedProperty(Property<E, ?> parent, Type type, String name) {
+		super(parent, type, name);
+	}
+	
 }
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import org.eiichiro.acidhouse.ComparableFilter.Operator;
+import org.eiichiro.acidhouse.Filter;
+import org.eiichiro.acidhouse.IntFilter;
+import org.eiichiro.acidhouse.Order;
+
+/**
+ * {@code IntProperty} is a {@code ComparableProperty} specialized for 
+ * <code>int</code> property.
+ * The {@code Filter}s, {@code Order}s and {@code Aggregation}s of this 
+ * property read and compare the property value as <code>int</code> without 
+ * boxing. Declare the <code>int</code> property in the metamodel class as 
+ * this type, like this:
+ * <pre>
+ * public final IntProperty&lt;Entity3&gt; i = new IntProperty&lt;Entity3&gt;(this, "i");
+ * </pre>
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class IntProperty<E> extends ComparableProperty<E, Integer> {
+
+	/**
+	 * Constructs a new {@code IntProperty} instance with the specified 
+	 * {@code Metamodel} instance which has this metamodel property and 
+	 * property name.
+	 * 
+	 * @param metamodel The {@code Metamodel} instance which has this metamodel 
+	 * property.
+	 * @param name The property name.
+	 */
+	public IntProperty(Metamodel<E> metamodel, String name) {
+		super(metamodel, Integer.class, name);
+	}
+	
+	/**
+	 * Constructs a new {@code IntProperty} instance with the specified 
+	 * {@code Property} instance which has this metamodel property and property 
+	 * name.
+	 * 
+	 * @param parent The parent {@code Property} instance which has this 
+	 * metamodel property.
+	 * @param name The property name.
+	 */
+	public IntProperty(Property<E, ?> parent, String name) {
+		super(parent, Integer.class, name);
+	}
+	
+	/** Creates the {@code Order} which compares the value as <code>int</code>. */
+	@Override
+	protected Order<E, Integer> order(Order.Direction direction) {
+		return new Order<E, Integer>(this, direction) {
+
+			@Override
+			public int compare(E entity1, E entity2) {
+				int value = accessor().getInt(entity1);
+				int value2 = accessor().getInt(entity2);
+				return (value < value2) ? -1 : ((value == value2) ? 0 : 1);
+			}
+			
+		};
+	}
+	
+	/** Creates {@code IntFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Integer> equalTo(Integer value) {
+		return (value == null) ? super.equalTo(value) : equalTo(value.intValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is equal to 
+	 * the specified value or not (==).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is equal to 
+	 * the specified value or not.
+	 */
+	public Filter<Integer> equalTo(int value) {
+		return new IntFilter(this, value, Operator.EQUAL_TO);
+	}
+	
+	/** Creates {@code IntFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Integer> notEqualTo(Integer value) {
+		return (value == null) ? super.notEqualTo(value) : notEqualTo(value.intValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is not equal 
+	 * to the specified value or not (!=, &lt;&gt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is not equal 
+	 * to the specified value or not.
+	 */
+	public Filter<Integer> notEqualTo(int value) {
+		return new IntFilter(this, value, Operator.NOT_EQUAL_TO);
+	}
+	
+	/** Creates {@code IntFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Integer> greaterThan(Integer value) {
+		return (value == null) ? super.greaterThan(value) : greaterThan(value.intValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is greater 
+	 * than the specified value or not (&gt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is greater 
+	 * than the specified value or not.
+	 */
+	public Filter<Integer> greaterThan(int value) {
+		return new IntFilter(this, value, Operator.GREATER_THAN);
+	}
+	
+	/** Creates {@code IntFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Integer> greaterThanOrEqualTo(Integer value) {
+		return (value == null) ? super.greaterThanOrEqualTo(value) : greaterThanOrEqualTo(value.intValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is greater 
+	 * than or equal to the specified value or not (&gt;=).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is greater 
+	 * than or equal to the specified value or not.
+	 */
+	public Filter<Integer> greaterThanOrEqualTo(int value) {
+		return new IntFilter(this, value, Operator.GREATER_THAN_OR_EQUAL_TO);
+	}
+	
+	/** Creates {@code IntFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Integer> lessThan(Integer value) {
+		return (value == null) ? super.lessThan(value) : lessThan(value.intValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is less than 
+	 * the specified value or not (&lt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is less than 
+	 * the specified value or not.
+	 */
+	public Filter<Integer> lessThan(int value) {
+		return new IntFilter(this, value, Operator.LESS_THAN);
+	}
+	
+	/** Creates {@code IntFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Integer> lessThanOrEqualTo(Integer value) {
+		return (value == null) ? super.lessThanOrEqualTo(value) : lessThanOrEqualTo(value.intValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is less than 
+	 * or equal to the specified value or not (&lt;=).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is less than 
+	 * or equal to the specified value or not.
+	 */
+	public Filter<Integer> lessThanOrEqualTo(int value) {
+		return new IntFilter(this, value, Operator.LESS_THAN_OR_EQUAL_TO);
+	}
+	
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import org.eiichiro.acidhouse.ComparableFilter.Operator;
+import org.eiichiro.acidhouse.Filter;
+import org.eiichiro.acidhouse.LongFilter;
+import org.eiichiro.acidhouse.Order;
+
+/**
+ * {@code LongProperty} is a {@code ComparableProperty} specialized for 
+ * <code>long</code> property.
+ * The {@code Filter}s, {@code Order}s and {@code Aggregation}s of this 
+ * property read and compare the property value as <code>long</code> without 
+ * boxing. Declare the <code>long</code> property in the metamodel class as 
+ * this type, like this:
+ * <pre>
+ * public final LongProperty&lt;Entity3&gt; l = new LongProperty&lt;Entity3&gt;(this, "l");
+ * </pre>
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class LongProperty<E> extends ComparableProperty<E, Long> {
+
+	/**
+	 * Constructs a new {@code LongProperty} instance with the specified 
+	 * {@code Metamodel} instance which has this metamodel property and 
+	 * property name.
+	 * 
+	 * @param metamodel The {@code Metamodel} instance which has this metamodel 
+	 * property.
+	 * @param name The property name.
+	 */
+	public LongProperty(Metamodel<E> metamodel, String name) {
+		super(metamodel, Long.class, name);
+	}
+	
+	/**
+	 * Constructs a new {@code LongProperty} instance with the specified 
+	 * {@code Property} instance which has this metamodel property and property 
+	 * name.
+	 * 
+	 * @param parent The parent {@code Property} instance which has this 
+	 * metamodel property.
+	 * @param name The property name.
+	 */
+	public LongProperty(Property<E, ?> parent, String name) {
+		super(parent, Long.class, name);
+	}
+	
+	/** Creates the {@code Order} which compares the value as <code>long</code>. */
+	@Override
+	protected Order<E, Long> order(Order.Direction direction) {
+		return new Order<E, Long>(this, direction) {
+
+			@Override
+			public int compare(E entity1, E entity2) {
+				long value = accessor().getLong(entity1);
+				long value2 = accessor().getLong(entity2);
+				return (value < value2) ? -1 : ((value == value2) ? 0 : 1);
+			}
+			
+		};
+	}
+	
+	/** Creates {@code LongFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Long> equalTo(Long value) {
+		return (value == null) ? super.equalTo(value) : equalTo(value.longValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is equal to 
+	 * the specified value or not (==).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is equal to 
+	 * the specified value or not.
+	 */
+	public Filter<Long> equalTo(long value) {
+		return new LongFilter(this, value, Operator.EQUAL_TO);
+	}
+	
+	/** Creates {@code LongFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Long> notEqualTo(Long value) {
+		return (value == null) ? super.notEqualTo(value) : notEqualTo(value.longValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is not equal 
+	 * to the specified value or not (!=, &lt;&gt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is not equal 
+	 * to the specified value or not.
+	 */
+	public Filter<Long> notEqualTo(long value) {
+		return new LongFilter(this, value, Operator.NOT_EQUAL_TO);
+	}
+	
+	/** Creates {@code LongFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Long> greaterThan(Long value) {
+		return (value == null) ? super.greaterThan(value) : greaterThan(value.longValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is greater 
+	 * than the specified value or not (&gt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is greater 
+	 * than the specified value or not.
+	 */
+	public Filter<Long> greaterThan(long value) {
+		return new LongFilter(this, value, Operator.GREATER_THAN);
+	}
+	
+	/** Creates {@code LongFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Long> greaterThanOrEqualTo(Long value) {
+		return (value == null) ? super.greaterThanOrEqualTo(value) : greaterThanOrEqualTo(value.longValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is greater 
+	 * than or equal to the specified value or not (&gt;=).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is greater 
+	 * than or equal to the specified value or not.
+	 */
+	public Filter<Long> greaterThanOrEqualTo(long value) {
+		return new LongFilter(this, value, Operator.GREATER_THAN_OR_EQUAL_TO);
+	}
+	
+	/** Creates {@code LongFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Long> lessThan(Long value) {
+		return (value == null) ? super.lessThan(value) : lessThan(value.longValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is less than 
+	 * the specified value or not (&lt;).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is less than 
+	 * the specified value or not.
+	 */
+	public Filter<Long> lessThan(long value) {
+		return new LongFilter(this, value, Operator.LESS_THAN);
+	}
+	
+	/** Creates {@code LongFilter} unless the specified value is <code>null</code>. */
+	@Override
+	public Filter<Long> lessThanOrEqualTo(Long value) {
+		return (value == null) ? super.lessThanOrEqualTo(value) : lessThanOrEqualTo(value.longValue());
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property is less than 
+	 * or equal to the specified value or not (&lt;=).
+	 * 
+	 * @param value The value to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property is less than 
+	 * or equal to the specified value or not.
+	 */
+	public Filter<Long> lessThanOrEqualTo(long value) {
+		return new LongFilter(this, value, Operator.LESS_THAN_OR_EQUAL_TO);
+	}
+	
+}
@@ -15,6 +15,10 @@
  */
 package org.eiichiro.acidhouse.metamodel;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * {@code Metamodel} represents the metamodel of Acid House entity.
  * 
@@ -30,6 +34,10 @@ public abstract class Metamodel<E> {
 	
 	private boolean hasChild;
 	
+	private final List<Property<E, ?>> properties = new ArrayList<Property<E, ?>>();
+	
+	private final List<Metamodel<?>> children = new ArrayList<Metamodel<?>>();
+	
 	/**
 	 * Constructs a new {@code Metamodel} instance with the specified entity 
 	 * type. This constructor is called when the represented entity is the root 
@@ -57,8 +65,9 @@ public abstract class Metamodel<E> {
 		this.type = type;
 		this.name = name;
 		
-		if (parent != null && !parent.hasChild) {
+		if (parent != null) {
 			parent.hasChild = true;
+			parent.children.add(this);
 		}
 	}
 
@@ -104,6 +113,31 @@ public abstract class Metamodel<E> {
 		return hasChild;
 	}
 	
+	/**
+	 * Returns the metamodel properties which this metamodel instance has, 
+	 * including the properties of {@link org.eiichiro.acidhouse.Embedded} 
+	 * value. The properties of the child metamodels are not contained.
+	 * 
+	 * @return The metamodel properties which this metamodel instance has.
+	 */
+	public List<Property<E, ?>> properties() {
+		return Collections.unmodifiableList(properties);
+	}
+	
+	/**
+	 * Returns the child metamodels which are declared as owned child entity 
+	 * property of this metamodel.
+	 * 
+	 * @return The child metamodels of this metamodel.
+	 */
+	public List<Metamodel<?>> children() {
+		return Collections.unmodifiableList(children);
+	}
+	
+	void add(Property<E, ?> property) {
+		properties.add(property);
+	}
+	
 	/**
 	 * Returns the entity type this metamodel represents.
 	 * 
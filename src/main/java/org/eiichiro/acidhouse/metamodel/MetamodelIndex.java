@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+/**
+ * {@code MetamodelIndex} lists the {@code Metamodel}s of the entities 
+ * compiled together.
+ * {@code MetamodelIndex} implementation is generated by 
+ * {@code MetamodelIndexProcessor} at build time, registered as the 
+ * <code>META-INF/services/org.eiichiro.acidhouse.metamodel.MetamodelIndex</code>
+ * service and loaded by {@link Metamodels#preload()}. The generated 
+ * implementation instantiates each {@code Metamodel} directly with 
+ * <code>new</code> expression instead of reflection.
+ * 
+ * @see MetamodelIndexProcessor
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public interface MetamodelIndex {
+
+	/**
+	 * Returns the new {@code Metamodel} instances listed in this index.
+	 * 
+	 * @return The new {@code Metamodel} instances listed in this index.
+	 */
+	public Metamodel<?>[] metamodels();
+	
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.StandardLocation;
+
+/**
+ * {@code MetamodelIndexProcessor} is an annotation processor to generate the 
+ * {@code MetamodelIndex} of the {@link org.eiichiro.acidhouse.Entity} 
+ * annotated classes at build time.
+ * {@code MetamodelIndexProcessor} generates one {@code MetamodelIndex} 
+ * implementation named <code>_MetamodelIndex</code> per package and lists 
+ * them in 
+ * <code>META-INF/services/org.eiichiro.acidhouse.metamodel.MetamodelIndex</code>.
+ * The entity is indexed only when its metamodel class (generated by Acid House 
+ * Metamodel Generator or written by hand) is found in the compilation; 
+ * otherwise it is left to {@link Metamodels#metamodel(Class)} at runtime.
+ * This processor is registered as 
+ * <code>META-INF/services/javax.annotation.processing.Processor</code>, so 
+ * that it runs whenever Acid House is on the compilation class path.
+ * 
+ * @see MetamodelIndex
+ * @see Metamodels#preload()
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+@SupportedAnnotationTypes("org.eiichiro.acidhouse.Entity")
+public class MetamodelIndexProcessor extends AbstractProcessor {
+
+	private static final String SERVICE = "META-INF/services/"
+			+ MetamodelIndex.class.getName();
+			
+	private final Set<String> pending = new LinkedHashSet<String>();
+	
+	private final Set<String> indexes = new LinkedHashSet<String>();
+	
+	private final Map<String, Integer> sequences = new HashMap<String, Integer>();
+	
+	/** Returns the latest source version the running compiler supports. */
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	/**
+	 * Collects the entity classes in the current round and generates the 
+	 * {@code MetamodelIndex} for the entities which metamodel class is found.
+	 * The service file is written in the last round.
+	 */
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.CLASS) {
+					pending.add(processingEnv.getElementUtils()
+							.getBinaryName((TypeElement) element).toString());
+				}
+			}
+		}
+		
+		if (roundEnv.processingOver()) {
+			for (String entity : pending) {
+				processingEnv.getMessager().printMessage(Kind.NOTE, "Metamodel of ["
+						+ entity + "] is not found; it is not indexed");
+			}
+			
+			service();
+			return false;
+		}
+		
+		Map<String, List<String>> packages = new LinkedHashMap<String, List<String>>();
+		
+		for (String entity : new ArrayList<String>(pending)) {
+			String metamodel = metamodel(entity);
+			
+			if (processingEnv.getElementUtils().getTypeElement(metamodel) == null) {
+				continue;
+			}
+			
+			String pkg = pkg(entity);
+			List<String> metamodels = packages.get(pkg);
+			
+			if (metamodels == null) {
+				metamodels = new ArrayList<String>();
+				packages.put(pkg, metamodels);
+			}
+			
+			metamodels.add(metamodel);
+			pending.remove(entity);
+		}
+		
+		for (Map.Entry<String, List<String>> entry : packages.entrySet()) {
+			index(entry.getKey(), entry.getValue());
+		}
+		
+		return false;
+	}
+	
+	private void index(String pkg, List<String> metamodels) {
+		Integer sequence = sequences.get(pkg);
+		sequence = (sequence == null) ? 1 : sequence + 1;
+		sequences.put(pkg, sequence);
+		String simpleName = "_MetamodelIndex" + ((sequence == 1) ? "" : sequence);
+		String name = pkg.isEmpty() ? simpleName : pkg + "." + simpleName;
+		
+		try {
+			Writer writer = processingEnv.getFiler().createSourceFile(name).openWriter();
+			PrintWriter out = new PrintWriter(writer);
+			
+			if (!pkg.isEmpty()) {
+				out.println("package " + pkg + ";");
+				out.println();
+			}
+			
+			out.println("public final class " + simpleName
+					+ " implements " + MetamodelIndex.class.getName() + " {");
+			out.println();
+			out.println("\tpublic " + Metamodel.class.getName() + "<?>[] metamodels() {");
+			out.println("\t\treturn new " + Metamodel.class.getName() + "<?>[] {");
+			
+			for (int i = 0; i < metamodels.size(); i++) {
+				out.println("\t\t\tnew " + metamodels.get(i) + "()"
+						+ ((i < metamodels.size() - 1) ? "," : ""));
+			}
+			
+			out.println("\t\t};");
+			out.println("\t}");
+			out.println();
+			out.println("}");
+			out.close();
+			indexes.add(name);
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR,
+					"Failed to generate [" + name + "]: " + e.getMessage());
+		}
+	}
+	
+	private void service() {
+		if (indexes.isEmpty()) {
+			return;
+		}
+		
+		try {
+			Writer writer = processingEnv.getFiler().createResource(
+					StandardLocation.CLASS_OUTPUT, "", SERVICE).openWriter();
+			PrintWriter out = new PrintWriter(writer);
+			
+			for (String index : indexes) {
+				out.println(index);
+			}
+			
+			out.close();
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR,
+					"Failed to generate [" + SERVICE + "]: " + e.getMessage());
+		}
+	}
+	
+	private static String metamodel(String entity) {
+		int i = entity.lastIndexOf(".");
+		return (i < 0) ? "_" + entity
+				: entity.substring(0, i + 1) + "_" + entity.substring(i + 1);
+	}
+	
+	private static String pkg(String entity) {
+		int i = entity.lastIndexOf(".");
+		return (i < 0) ? "" : entity.substring(0, i);
+	}
+	
+}
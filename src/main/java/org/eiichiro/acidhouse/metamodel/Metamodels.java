@@ -15,20 +15,29 @@
  */
 package org.eiichiro.acidhouse.metamodel;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ServiceLoader;
 
+import org.eiichiro.acidhouse.Entities;
+import org.eiichiro.acidhouse.Entity;
 import org.eiichiro.reverb.lang.UncheckedException;
 
 /**
  * {@code Metamodels} provides some {@code Metamodel} control methods.
+ * The registered {@code Metamodel}s are held in an immutable map which is 
+ * replaced on every registration, so that the lookups do not take any lock.
  * 
  * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
  */
 public abstract class Metamodels {
 
-	private static Map<Class<?>, Metamodel<?>> metamodels 
-			= new ConcurrentHashMap<Class<?>, Metamodel<?>>();
+	private static volatile Map<Class<?>, Metamodel<?>> metamodels
+			= Collections.emptyMap();
 	
 	private Metamodels() {}
 	
@@ -37,6 +46,11 @@ public abstract class Metamodels {
 	* class.
 	* {@code Metamodel} class have to be declared as the name that adding '_' 
 	* prefix to the entity class name in the same package as the entity class.
+	* If the {@code Metamodel} has been registered by {@link #preload()}, the 
+	* registered instance is returned without any class loading. If the 
+	* {@code Metamodel} class is not found for the {@code @Entity} class, 
+	* {@code ReflectiveMetamodel} derived from the entity class is registered 
+	* and returned instead.
 	* 
 	* @param <M> The type of metamodel class.
 	* @param <E> The type of entity class.
@@ -46,27 +60,130 @@ public abstract class Metamodels {
 	*/
 	@SuppressWarnings("unchecked")
 	public static <M extends Metamodel<E>, E> M metamodel(Class<E> entity) {
-		if (metamodels.containsKey(entity)) {
-			return (M) metamodels.get(entity);
-		} else {
-			try {
-				int i = entity.getName().lastIndexOf(".");
-				M metamodel = null;
+		Metamodel<?> metamodel = metamodels.get(entity);
 				
-				if (i < 0) {
-					metamodel = (M) Class.forName("_" + entity.getName()).newInstance();
-				} else {
-					metamodel = (M) Class.forName(
-							entity.getName().substring(0, entity.getName().lastIndexOf(".") + 1) 
-							+ "_" 
-							+ entity.getName().substring(entity.getName().lastIndexOf(".") + 1)).newInstance();
+		if (metamodel != null) {
+			return (M) metamodel;
+		}
+		
+		synchronized (Metamodels.class) {
+			metamodel = metamodels.get(entity);
+			
+			if (metamodel == null) {
+				try {
+					int i = entity.getName().lastIndexOf(".");
+					
+					if (i < 0) {
+						metamodel = (M) Class.forName("_" + entity.getName()).newInstance();
+					} else {
+						metamodel = (M) Class.forName(
+								entity.getName().substring(0, entity.getName().lastIndexOf(".") + 1)
+								+ "_"
+								+ entity.getName().substring(entity.getName().lastIndexOf(".") + 1)).newInstance();
+					}
+				} catch (ClassNotFoundException e) {
+					if (!entity.isAnnotationPresent(Entity.class)) {
+						throw new UncheckedException(e);
+					}
+					
+					metamodel = new ReflectiveMetamodel<E>(entity);
+				} catch (Exception e) {
+					throw new UncheckedException(e);
 				}
 				
-				metamodels.put(entity, metamodel);
-				return metamodel;
-			} catch (Exception e) {
-				throw new UncheckedException(e);
+				register(Collections.<Metamodel<?>>singletonList(metamodel));
 			}
+				
+			return (M) metamodel;
+		}
+	}
+	
+	/**
+	 * Registers every {@code Metamodel} listed in the {@code MetamodelIndex}es 
+	 * on the context class loader of the current thread.
+	 * 
+	 * @see #preload(ClassLoader)
+	 */
+	public static void preload() {
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		preload((loader == null) ? Metamodels.class.getClassLoader() : loader);
+	}
+	
+	/**
+	 * Registers every {@code Metamodel} listed in the {@code MetamodelIndex}es 
+	 * on the specified class loader.
+	 * {@code MetamodelIndex} is generated by {@code MetamodelIndexProcessor} 
+	 * at build time and is looked up with {@code java.util.ServiceLoader}.
+	 * Invoke this method at the application startup so that 
+	 * {@link #metamodel(Class)} is served from the registered metamodels 
+	 * without class loading on the first request.
+	 * 
+	 * @param loader The class loader from which {@code MetamodelIndex}es are 
+	 * loaded.
+	 */
+	public static void preload(ClassLoader loader) {
+		List<Metamodel<?>> metamodels = new ArrayList<Metamodel<?>>();
+		
+		for (MetamodelIndex index : ServiceLoader.load(MetamodelIndex.class, loader)) {
+			metamodels.addAll(Arrays.asList(index.metamodels()));
+		}
+		
+		synchronized (Metamodels.class) {
+			register(metamodels);
+		}
+	}
+	
+	private static void register(List<Metamodel<?>> metamodels) {
+		Map<Class<?>, Metamodel<?>> registered
+				= new HashMap<Class<?>, Metamodel<?>>(Metamodels.metamodels);
+				
+		for (Metamodel<?> metamodel : metamodels) {
+			if (registered.containsKey(metamodel.type())) {
+				continue;
+			}
+			
+			if (Accessors.generation()) {
+				generate(metamodel);
+			}
+			
+			keys(metamodel);
+			registered.put(metamodel.type(), metamodel);
+		}
+		
+		Metamodels.metamodels = Collections.unmodifiableMap(registered);
+	}
+	
+	private static void keys(Metamodel<?> metamodel) {
+		if (metamodel.type().isAnnotationPresent(Entity.class)) {
+			Entities.register(metamodel.type());
+		}
+		
+		for (Metamodel<?> child : metamodel.children()) {
+			keys(child);
+		}
+	}
+	
+	private static void generate(Metamodel<?> metamodel) {
+		List<Property<?, ?>> properties = new ArrayList<Property<?, ?>>();
+		properties(metamodel, properties);
+		List<Accessor> accessors = new ArrayList<Accessor>(properties.size());
+		
+		// Resolves every field path before replacing any of them, since the
+		// embedded properties reuse the parent's reflective field path.
+		for (Property<?, ?> property : properties) {
+			accessors.add(property.accessor());
+		}
+		
+		for (int i = 0; i < properties.size(); i++) {
+			properties.get(i).accessor(Accessors.generate(accessors.get(i)));
+		}
+	}
+	
+	private static void properties(Metamodel<?> metamodel, List<Property<?, ?>> properties) {
+		properties.addAll(metamodel.properties());
+		
+		for (Metamodel<?> child : metamodel.children()) {
+			properties(child, properties);
 		}
 	}
 	
@@ -15,14 +15,11 @@
  */
 package org.eiichiro.acidhouse.metamodel;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.eiichiro.reverb.lang.UncheckedException;
-
 /**
  * {@code Property} is the metamodel of Acid House entity's property.
  * This is called "Metamodel property" and consists of the type of property, the 
@@ -43,6 +40,8 @@ public class Property<E, T> {
 	
 	private final List<String> path;
 	
+	private volatile Accessor accessor;
+	
 	/**
 	 * Returns the property name which this metamodel property represents.
 	 * 
@@ -67,6 +66,7 @@ public class Property<E, T> {
 		this.type = type;
 		this.name = name;
 		path = path(metamodel, name);
+		metamodel.add(this);
 	}
 	
 	/**
@@ -83,7 +83,16 @@ public class Property<E, T> {
 		this.parent = parent;
 		this.type = type;
 		this.name = name;
-		path = path(metamodel, name, parent.name());
+		List<String> names = new ArrayList<String>();
+		names.add(name);
+		
+		// Embedded property may be nested in another embedded property.
+		for (Property<E, ?> p = parent; p != null; p = p.parent()) {
+			names.add(p.name());
+		}
+		
+		path = path(metamodel, names.toArray(new String[names.size()]));
+		metamodel.add(this);
 	}
 	
 	/**
@@ -107,19 +116,7 @@ public class Property<E, T> {
 	 */
 	@SuppressWarnings("unchecked")
 	public T get(Object entity) {
-		Object value = entity;
-		
-		for (String name : path()) {
-			try {
-				Field field = value.getClass().getDeclaredField(name);
-				field.setAccessible(true);
-				value = field.get(value);
-			} catch (Exception e) {
-				throw new UncheckedException(e);
-			}
-		}
-		
-		return (T) value;
+		return (T) accessor().get(entity);
 	}
 	
 	/**
@@ -132,25 +129,40 @@ public class Property<E, T> {
 	 * @param value The property value to be set into entity instance.
 	 */
 	public void set(E entity, Object value) {
-		Object object = entity;
+		accessor().set(entity, value);
+	}
+	
+	/**
+	 * Returns the {@code Accessor} to the property value which this metamodel 
+	 * property instance represents.
+	 * The {@code Accessor} is resolved from the root entity type at the first 
+	 * invocation and cached in this instance. If the parent property's path is 
+	 * the prefix of this property's path, the parent's {@code Accessor} is 
+	 * reused.
+	 * 
+	 * @return The {@code Accessor} to the property value.
+	 */
+	public Accessor accessor() {
+		Accessor accessor = this.accessor;
 		
-		for (int i = 0; i < path().size() - 1; i++) {
-			try {
-				Field field = object.getClass().getDeclaredField(path().get(i));
-				field.setAccessible(true);
-				object = field.get(object);
-			} catch (Exception e) {
-				throw new UncheckedException(e);
+		if (accessor == null) {
+			List<String> path = path();
+			
+			if (parent != null 
+					&& parent.path().equals(path.subList(0, path.size() - 1))) {
+				accessor = Accessors.accessor(parent.accessor(), name);
+			} else {
+				accessor = Accessors.accessor(metamodel.root().type(), path);
 			}
+			
+			this.accessor = accessor;
 		}
 		
-		try {
-			Field field = object.getClass().getDeclaredField(name);
-			field.setAccessible(true);
-			field.set(object, value);
-		} catch (Exception e) {
-			throw new UncheckedException(e);
-		}
+		return accessor;
+	}
+	
+	void accessor(Accessor accessor) {
+		this.accessor = accessor;
 	}
 	
 	/**
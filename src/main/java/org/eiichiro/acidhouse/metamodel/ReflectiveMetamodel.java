@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eiichiro.acidhouse.Embedded;
+import org.eiichiro.acidhouse.Entity;
+import org.eiichiro.acidhouse.Referential;
+import org.eiichiro.acidhouse.Transient;
+
+/**
+ * {@code ReflectiveMetamodel} is a {@code Metamodel} derived from the entity 
+ * class at runtime.
+ * {@code Metamodels#metamodel(Class)} builds this metamodel when the 
+ * {@code Metamodel} class generated by Acid House Metamodel Generator is not 
+ * found, so that dynamically loaded entity types can use the command builder 
+ * API. The metamodel properties are derived from the entity's fields with the 
+ * following rules:
+ * <ul>
+ * <li>{@code @Transient} and static fields are skipped.</li>
+ * <li>{@code @Referential} fields are {@code Property}.</li>
+ * <li>The field of {@code @Embedded} type is {@code EmbeddedProperty} and its 
+ * fields are derived as the properties under it, recursively.</li>
+ * <li>The field of {@code @Entity} type is the owned child entity and is 
+ * derived as the child {@code ReflectiveMetamodel}.</li>
+ * <li>The field of the {@code @Entity} or {@code @Embedded} type which is 
+ * being derived on the same path (e.g. self reference) is {@code Property}, 
+ * so that the recursive type does not derive the properties 
+ * infinitely.</li>
+ * <li>The field of <code>int</code>, <code>long</code> and <code>double</code>
+ * type is {@code IntProperty}, {@code LongProperty} and 
+ * {@code DoubleProperty}.</li>
+ * <li>The field of <code>String</code> type is {@code StringProperty}.</li>
+ * <li>The field of other primitive or {@code Comparable} type is 
+ * {@code ComparableProperty}.</li>
+ * <li>Other fields are {@code Property}.</li>
+ * </ul>
+ * You can get the derived properties by their path, like this:
+ * <pre>
+ * ReflectiveMetamodel&lt;Entity3&gt; entity3_ = Metamodels.metamodel(Entity3.class);
+ * List&lt;Entity3&gt; entity3s = session
+ * 		.get(entity3_)
+ * 		.filter(entity3_.&lt;Integer&gt;comparable("entity1.i").greaterThanOrEqualTo(13))
+ * 		.execute();
+ * </pre>
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class ReflectiveMetamodel<E> extends Metamodel<E> {
+
+	private final Map<String, Property<E, ?>> derived = new LinkedHashMap<String, Property<E, ?>>();
+	
+	private final Map<String, ReflectiveMetamodel<?>> children = new LinkedHashMap<String, ReflectiveMetamodel<?>>();
+	
+	/**
+	 * Constructs a new {@code ReflectiveMetamodel} derived from the specified 
+	 * root entity type.
+	 * 
+	 * @param type The entity type.
+	 */
+	public ReflectiveMetamodel(Class<E> type) {
+		super(type);
+		derive();
+	}
+	
+	private ReflectiveMetamodel(Metamodel<?> parent, Class<E> type, String name) {
+		super(parent, type, name);
+		derive();
+	}
+	
+	/**
+	 * Returns the derived property corresponding to the specified path.
+	 * The path is the property name, or the names joined with '.' for the 
+	 * property of {@code @Embedded} value or owned child entity (e.g.
+	 * <code>"entity1.i"</code>).
+	 * 
+	 * @param <T> The property type.
+	 * @param path The path to the property.
+	 * @return The derived property corresponding to the specified path.
+	 * @throws IllegalArgumentException If the property is not found.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Property<E, T> property(String path) {
+		Property<?, ?> property = derived.get(path);
+		
+		if (property == null) {
+			int i = path.indexOf('.');
+			
+			if (i > 0) {
+				ReflectiveMetamodel<?> child = children.get(path.substring(0, i));
+				
+				if (child != null) {
+					property = child.property(path.substring(i + 1));
+				}
+			}
+		}
+		
+		if (property == null) {
+			throw new IllegalArgumentException("Property [" + path
+					+ "] is not found in [" + type().getName() + "]");
+		}
+		
+		return (Property<E, T>) property;
+	}
+	
+	/**
+	 * Returns the derived comparable property corresponding to the specified 
+	 * path.
+	 * 
+	 * @param <T> The property type.
+	 * @param path The path to the property.
+	 * @return The derived comparable property corresponding to the specified 
+	 * path.
+	 * @throws IllegalArgumentException If the comparable property is not 
+	 * found.
+	 * @see #property(String)
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Comparable<T>> ComparableProperty<E, T> comparable(String path) {
+		Property<E, ?> property = property(path);
+		
+		if (!(property instanceof ComparableProperty<?, ?>)) {
+			throw new IllegalArgumentException("Property [" + path
+					+ "] of [" + type().getName() + "] is not comparable");
+		}
+		
+		return (ComparableProperty<E, T>) property;
+	}
+	
+	/**
+	 * Returns the derived child metamodel of the owned child entity property.
+	 * 
+	 * @param name The owned child entity property name.
+	 * @return The derived child metamodel.
+	 * @throws IllegalArgumentException If the child metamodel is not found.
+	 */
+	public ReflectiveMetamodel<?> child(String name) {
+		ReflectiveMetamodel<?> child = children.get(name);
+		
+		if (child == null) {
+			throw new IllegalArgumentException("Child entity [" + name
+					+ "] is not found in [" + type().getName() + "]");
+		}
+		
+		return child;
+	}
+	
+	/**
+	 * Returns the paths of the derived properties of this metamodel.
+	 * The properties of the child metamodels are not contained.
+	 * 
+	 * @return The paths of the derived properties.
+	 */
+	public List<String> paths() {
+		return Collections.unmodifiableList(new ArrayList<String>(derived.keySet()));
+	}
+	
+	private void derive() {
+		for (Field field : fields(type())) {
+			Class<?> type = field.getType();
+			String name = field.getName();
+			
+			if (field.getAnnotation(Referential.class) == null
+					&& type.isAnnotationPresent(Entity.class) && !deriving(type)) {
+				children.put(name, child(type, name));
+			} else if (field.getAnnotation(Referential.class) == null
+					&& type.isAnnotationPresent(Embedded.class)) {
+				embed(null, field, name, new ArrayList<Class<?>>());
+			} else {
+				derived.put(name, property(null, field));
+			}
+		}
+	}
+	
+	private boolean deriving(Class<?> type) {
+		for (Metamodel<?> metamodel = this; metamodel != null; metamodel = metamodel.parent()) {
+			if (metamodel.type() == type) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void embed(Property<E, ?> parent, Field field, String path, List<Class<?>> types) {
+		Class<?> type = field.getType();
+		Property<E, ?> embedded = (parent == null)
+				? new ReflectiveEmbeddedProperty<E, Object>(this, field.getGenericType(), field.getName())
+				: new ReflectiveEmbeddedProperty<E, Object>(parent, field.getGenericType(), field.getName());
+		derived.put(path, embedded);
+		types.add(type);
+		
+		for (Field f : fields(type)) {
+			String name = path + "." + f.getName();
+			
+			if (f.getAnnotation(Referential.class) == null
+					&& f.getType().isAnnotationPresent(Embedded.class)
+					&& !types.contains(f.getType())) {
+				embed(embedded, f, name, types);
+			} else {
+				derived.put(name, property(embedded, f));
+			}
+		}
+		
+		types.remove(types.size() - 1);
+	}
+	
+	private <C> ReflectiveMetamodel<C> child(Class<C> type, String name) {
+		return new ReflectiveMetamodel<C>(this, type, name);
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Property<E, ?> property(Property<E, ?> parent, Field field) {
+		Type type = field.getGenericType();
+		
+		if (field.getType().isPrimitive()) {
+			type = wrapper(field.getType());
+		}
+		
+		if (field.getType() == int.class) {
+			return (parent == null) ? new IntProperty<E>(this, field.getName())
+					: new IntProperty<E>(parent, field.getName());
+		} else if (field.getType() == long.class) {
+			return (parent == null) ? new LongProperty<E>(this, field.getName())
+					: new LongProperty<E>(parent, field.getName());
+		} else if (field.getType() == double.class) {
+			return (parent == null) ? new DoubleProperty<E>(this, field.getName())
+					: new DoubleProperty<E>(parent, field.getName());
+		} else if (field.getType() == String.class) {
+			return (parent == null) ? new StringProperty<E>(this, field.getName())
+					: new StringProperty<E>(parent, field.getName());
+		}
+		
+		boolean comparable = field.getAnnotation(Referential.class) == null
+				&& (field.getType().isPrimitive()
+						|| Comparable.class.isAssignableFrom(field.getType()));
+						
+		if (parent == null) {
+			return comparable ? new ComparableProperty(this, type, field.getName())
+					: new Property<E, Object>(this, type, field.getName());
+		} else {
+			return comparable ? new ComparableProperty(parent, type, field.getName())
+					: new Property<E, Object>(parent, type, field.getName());
+		}
+	}
+	
+	private static List<Field> fields(Class<?> type) {
+		List<Field> fields = new ArrayList<Field>();
+		
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())
+						&& !field.isSynthetic()
+						&& field.getAnnotation(Transient.class) == null) {
+					fields.add(field);
+				}
+			}
+		}
+		
+		return fields;
+	}
+	
+	private static Class<?> wrapper(Class<?> type) {
+		if (type == int.class) {
+			return Integer.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == double.class) {
+			return Double.class;
+		} else if (type == float.class) {
+			return Float.class;
+		} else if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == byte.class) {
+			return Byte.class;
+		} else {
+			return Character.class;
+		}
+	}
+	
+	private static class ReflectiveEmbeddedProperty<E, T> extends EmbeddedProperty<E, T> {
+
+		private ReflectiveEmbeddedProperty(Metamodel<E> metamodel, Type type, String name) {
+			super(metamodel, type, name);
+		}
+		
+		private ReflectiveEmbeddedProperty(Property<E, ?> parent, Type type, String name) {
+			super(parent, type, name);
+		}
+		
+	}
+	
+}
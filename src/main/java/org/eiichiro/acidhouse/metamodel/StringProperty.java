@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import org.eiichiro.acidhouse.Filter;
+import org.eiichiro.acidhouse.StartsWithFilter;
+
+/**
+ * {@code StringProperty} is a {@code ComparableProperty} specialized for 
+ * <code>String</code> property, which provides the prefix filter in addition 
+ * to the comparison filters, like this:
+ * <pre>
+ * List&lt;Entity3&gt; entity3s = session
+ * 		.get(entity3_)
+ * 		.filter(entity3_.name.startsWith("tenant-42/"))
+ * 		.execute();
+ * </pre>
+ * Declare the <code>String</code> property in the metamodel class as this 
+ * type:
+ * <pre>
+ * public final StringProperty&lt;Entity3&gt; name = new StringProperty&lt;Entity3&gt;(this, "name");
+ * </pre>
+ * 
+ * @author <a href="mailto:eiichiro@eiichiro.org">Eiichiro Uchiumi</a>
+ */
+public class StringProperty<E> extends ComparableProperty<E, String> {
+
+	/**
+	 * Constructs a new {@code StringProperty} instance with the specified 
+	 * {@code Metamodel} instance which has this metamodel property and 
+	 * property name.
+	 * 
+	 * @param metamodel The {@code Metamodel} instance which has this metamodel 
+	 * property.
+	 * @param name The property name.
+	 */
+	public StringProperty(Metamodel<E> metamodel, String name) {
+		super(metamodel, String.class, name);
+	}
+	
+	/**
+	 * Constructs a new {@code StringProperty} instance with the specified 
+	 * {@code Property} instance which has this metamodel property and property 
+	 * name.
+	 * 
+	 * @param parent The parent {@code Property} instance which has this 
+	 * metamodel property.
+	 * @param name The property name.
+	 */
+	public StringProperty(Property<E, ?> parent, String name) {
+		super(parent, String.class, name);
+	}
+	
+	/**
+	 * Creates a {@code Filter} to indicate whether this property starts with 
+	 * the specified prefix or not.
+	 * 
+	 * @param prefix The prefix to be evaluated.
+	 * @return The {@code Filter} to indicate whether this property starts with 
+	 * the specified prefix or not.
+	 */
+	public Filter<String> startsWith(String prefix) {
+		return new StartsWithFilter(this, prefix);
+	}
+	
+}
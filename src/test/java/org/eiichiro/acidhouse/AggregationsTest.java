@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eiichiro.acidhouse.Aggregation.Accumulator;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.Property;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.junit.Test;
+
+public class AggregationsTest {
+
+	@Test
+	public void testApproxCountDistinct() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Long> l = entity_.comparable("l");
+		Property<Entity, String> s = entity_.comparable("s");
+		Aggregation<Long> longs = Aggregations.approxCountDistinct(l);
+		Aggregation<Long> strings = Aggregations.approxCountDistinct(s);
+		
+		for (int size : new int[] { 0, 1, 2, 10, 100, 1000, 20000, 200000 }) {
+			List<Entity> entities = entities(size, size / 2 + 1, new Random(size));
+			Set<Object> ls = new HashSet<Object>();
+			Set<Object> ss = new HashSet<Object>();
+			
+			for (Entity entity : entities) {
+				ls.add(entity.l);
+				ss.add(entity.s);
+			}
+			
+			assertCount("long " + size, ls.size(), longs.apply(entities));
+			assertCount("string " + size, ss.size(), strings.apply(entities));
+		}
+	}
+	
+	@Test
+	public void testApproxCountDistinctZero() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Long> l = entity_.comparable("l");
+		Aggregation<Long> aggregation = Aggregations.approxCountDistinct(l, 4);
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int i = 0; i < 100; i++) {
+			entities.add(new Entity());
+		}
+		
+		assertEquals(1L, aggregation.apply(entities).longValue());
+		
+		// 0 must not take the max rank of the register.
+		for (long i = 1; i <= 1000; i++) {
+			Entity entity = new Entity();
+			entity.l = i;
+			entities.add(entity);
+		}
+		
+		assertCount("0 to 1000", 1001, Aggregations.approxCountDistinct(l, 10).apply(entities));
+	}
+	
+	@Test
+	public void testApproxCountDistinctCombine() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Long> l = entity_.comparable("l");
+		Aggregation<Long> aggregation = Aggregations.approxCountDistinct(l);
+		List<Entity> entities = entities(100000, 30000, new Random(7));
+		Set<Object> exact = new HashSet<Object>();
+		Accumulator<Long> accumulator = aggregation.accumulator();
+		
+		for (int i = 0; i < entities.size(); i += 10000) {
+			Accumulator<Long> partition = aggregation.accumulator();
+			
+			for (Entity entity : entities.subList(i, i + 10000)) {
+				partition.apply(entity);
+				exact.add(entity.l);
+			}
+			
+			accumulator.combine(partition);
+		}
+		
+		assertCount("combined", exact.size(), accumulator.finish());
+		assertEquals(aggregation.apply(entities), accumulator.finish());
+	}
+	
+	@Test
+	public void testApproxPercentile() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Long> l = entity_.comparable("l");
+		Property<Entity, Double> d = entity_.comparable("d");
+		
+		for (int size : new int[] { 1, 10, 1000, 100000 }) {
+			List<Entity> entities = entities(size, size * 10, new Random(size));
+			double[] ls = new double[size];
+			double[] ds = new double[size];
+			
+			for (int i = 0; i < size; i++) {
+				ls[i] = entities.get(i).l;
+				ds[i] = entities.get(i).d;
+			}
+			
+			Arrays.sort(ls);
+			Arrays.sort(ds);
+			
+			for (double percentile : new double[] { 0, 1, 25, 50, 75, 95, 99, 100 }) {
+				assertRank("long p" + percentile + " " + size, ls, percentile,
+						Aggregations.approxPercentile(l, percentile).apply(entities));
+				assertRank("double p" + percentile + " " + size, ds, percentile,
+						Aggregations.approxPercentile(d, percentile).apply(entities));
+			}
+		}
+		
+		assertNull(Aggregations.approxPercentile(l, 50).apply(new ArrayList<Entity>()));
+	}
+	
+	@Test
+	public void testApproxPercentileCombine() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Double> d = entity_.comparable("d");
+		List<Entity> entities = entities(100000, 1000000, new Random(11));
+		double[] exact = new double[entities.size()];
+		
+		for (int i = 0; i < exact.length; i++) {
+			exact[i] = entities.get(i).d;
+		}
+		
+		Arrays.sort(exact);
+		
+		for (double percentile : new double[] { 5, 50, 95 }) {
+			Aggregation<Double> aggregation = Aggregations.approxPercentile(d, percentile);
+			Accumulator<Double> accumulator = aggregation.accumulator();
+			
+			for (int i = 0; i < entities.size(); i += 7000) {
+				Accumulator<Double> partition = aggregation.accumulator();
+				
+				for (Entity entity : entities.subList(i, Math.min(i + 7000, entities.size()))) {
+					partition.apply(entity);
+				}
+				
+				accumulator.combine(partition);
+			}
+			
+			assertRank("combined p" + percentile, exact, percentile, accumulator.finish());
+		}
+	}
+	
+	@Test
+	public void testExtremum() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Grade> g = entity_.comparable("g");
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int rank : new int[] { 5, 2, 9, 7, 1, 3 }) {
+			Entity entity = new Entity();
+			entity.g = new Grade(rank);
+			entities.add(entity);
+		}
+		
+		entities.add(new Entity());
+		assertEquals(9, Aggregations.max(g).apply(entities).rank);
+		assertEquals(1, Aggregations.min(g).apply(entities).rank);
+		
+		Accumulator<Grade> max = Aggregations.max(g).accumulator();
+		Accumulator<Grade> min = Aggregations.min(g).accumulator();
+		
+		for (Entity entity : entities) {
+			max.apply(entity);
+			min.apply(entity);
+		}
+		
+		assertTrue(max.retract(new Grade(1)));
+		assertFalse(max.retract(new Grade(9)));
+		assertTrue(min.retract(new Grade(9)));
+		assertFalse(min.retract(new Grade(1)));
+		assertTrue(min.retract(null));
+	}
+	
+	@Test
+	public void testSumOverflow() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Integer> i = entity_.comparable("i");
+		Property<Entity, Long> l = entity_.comparable("l");
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int j = 0; j < 3; j++) {
+			Entity entity = new Entity();
+			entity.i = Integer.MAX_VALUE;
+			entity.l = Long.MAX_VALUE / 2;
+			entities.add(entity);
+		}
+		
+		// The int sum overflows int but not long.
+		assertEquals(3L * Integer.MAX_VALUE, Aggregations.sumAsLong(i).apply(entities).longValue());
+		
+		try {
+			Aggregations.sum(i).apply(entities);
+			fail();
+		} catch (ArithmeticException e) {}
+		
+		try {
+			Aggregations.sum(l).apply(entities);
+			fail();
+		} catch (ArithmeticException e) {}
+		
+		try {
+			Aggregations.sumAsLong(l).apply(entities);
+			fail();
+		} catch (ArithmeticException e) {}
+		
+		// The partial sums overflow on combine.
+		Accumulator<Long> accumulator = Aggregations.sum(l).accumulator();
+		accumulator.apply(entities.get(0));
+		accumulator.apply(entities.get(1));
+		Accumulator<Long> partition = Aggregations.sum(l).accumulator();
+		partition.apply(entities.get(2));
+		
+		try {
+			accumulator.combine(partition);
+			fail();
+		} catch (ArithmeticException e) {}
+		
+		for (Entity entity : entities) {
+			entity.l = -entity.l;
+		}
+		
+		assertEquals(BigDecimal.valueOf(-(Long.MAX_VALUE / 2)).multiply(BigDecimal.valueOf(3)),
+				Aggregations.sumAsDecimal(l).apply(entities));
+				
+		try {
+			Aggregations.sum(l).apply(entities);
+			fail();
+		} catch (ArithmeticException e) {}
+	}
+	
+	@Test
+	public void testSumCompensation() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Double> d = entity_.comparable("d");
+		
+		// Kahan summation alone loses the 1.0s on the larger addend.
+		assertEquals(2.0, Aggregations.sum(d).apply(doubles(1.0, 1e100, 1.0, -1e100)), 0);
+		
+		double[] values = new double[10001];
+		values[0] = 1.0;
+		Arrays.fill(values, 1, values.length, 1e-16);
+		double naive = 0;
+		
+		for (double value : values) {
+			naive += value;
+		}
+		
+		// Each 1e-16 is less than the half ulp of 1.0 and lost in the naive sum.
+		assertEquals(1.0, naive, 0);
+		assertEquals(1.000000000001, Aggregations.sum(d).apply(doubles(values)), 1e-15);
+		
+		// The compensations of the partitions are combined.
+		Accumulator<Double> accumulator = Aggregations.sum(d).accumulator();
+		Accumulator<Double> partition = Aggregations.sum(d).accumulator();
+		List<Entity> entities = doubles(values);
+		
+		for (int j = 0; j < entities.size(); j++) {
+			((j < 5000) ? accumulator : partition).apply(entities.get(j));
+		}
+		
+		accumulator.combine(partition);
+		assertEquals(1.000000000001, accumulator.finish(), 1e-15);
+	}
+	
+	@Test
+	public void testSumRetract() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Integer> i = entity_.comparable("i");
+		Property<Entity, Long> l = entity_.comparable("l");
+		Property<Entity, Double> d = entity_.comparable("d");
+		List<Entity> entities = entities(1000, 100, new Random(19));
+		
+		for (Entity entity : entities) {
+			entity.i = (int) entity.l - 50;
+		}
+		
+		List<Accumulator<?>> accumulators = new ArrayList<Accumulator<?>>();
+		Accumulator<Integer> ints = Aggregations.sum(i).accumulator();
+		Accumulator<Long> longs = Aggregations.sumAsLong(i).accumulator();
+		Accumulator<Double> doubles = Aggregations.sum(d).accumulator();
+		Accumulator<BigDecimal> decimals = Aggregations.sumAsDecimal(d).accumulator();
+		accumulators.add(ints);
+		accumulators.add(longs);
+		accumulators.add(doubles);
+		accumulators.add(decimals);
+		
+		for (Accumulator<?> accumulator : accumulators) {
+			assertTrue(accumulator.invertible());
+			
+			for (Entity entity : entities) {
+				accumulator.apply(entity);
+			}
+		}
+		
+		List<Entity> retracted = entities.subList(0, 400);
+		
+		for (Entity entity : retracted) {
+			assertTrue(ints.retract(entity.i));
+			assertTrue(longs.retract((long) entity.i));
+			assertTrue(doubles.retract(entity.d));
+			assertTrue(decimals.retract(BigDecimal.valueOf(entity.d)));
+		}
+		
+		List<Entity> remaining = entities.subList(400, entities.size());
+		assertEquals(Aggregations.sum(i).apply(remaining), ints.finish());
+		assertEquals(Aggregations.sumAsLong(i).apply(remaining), longs.finish());
+		assertEquals(Aggregations.sum(d).apply(remaining), doubles.finish(), 1e-9);
+		assertEquals(Aggregations.sumAsDecimal(d).apply(remaining), decimals.finish());
+		
+		// Retracting every value results in zero.
+		for (Entity entity : remaining) {
+			ints.retract(entity.i);
+			doubles.retract(entity.d);
+		}
+		
+		assertEquals(0, ints.finish().intValue());
+		assertEquals(0, doubles.finish(), 1e-9);
+		
+		Accumulator<Long> accumulator = Aggregations.sum(l).accumulator();
+		accumulator.accumulate(Long.MIN_VALUE);
+		
+		try {
+			accumulator.retract(1L);
+			fail();
+		} catch (ArithmeticException e) {}
+	}
+	
+	@Test
+	public void testSumAsDecimal() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		Property<Entity, Double> d = entity_.comparable("d");
+		Property<Entity, Long> l = entity_.comparable("l");
+		double[] values = new double[10];
+		Arrays.fill(values, 0.1);
+		
+		// 0.1 is summed as exactly one tenth.
+		assertEquals(new BigDecimal("1.0"), Aggregations.sumAsDecimal(d).apply(doubles(values)));
+		
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int j = 0; j < 3; j++) {
+			Entity entity = new Entity();
+			entity.l = Long.MAX_VALUE;
+			entities.add(entity);
+		}
+		
+		assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(3)),
+				Aggregations.sumAsDecimal(l).apply(entities));
+		assertEquals(BigDecimal.ZERO, Aggregations.sumAsDecimal(l).apply(new ArrayList<Entity>()));
+		
+		try {
+			Aggregations.sumAsLong(d);
+			fail();
+		} catch (IllegalArgumentException e) {}
+	}
+	
+	private static List<Entity> doubles(double... values) {
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (double value : values) {
+			Entity entity = new Entity();
+			entity.d = value;
+			entities.add(entity);
+		}
+		
+		return entities;
+	}
+	
+	/** 4 times the standard error of 2<sup>14</sup> registers. */
+	private static void assertCount(String message, long expected, Long actual) {
+		assertNotNull(message, actual);
+		
+		if (expected < 100) {
+			assertEquals(message, expected, actual.longValue());
+		} else {
+			assertEquals(message, expected, actual, expected * 4 * 1.04 / Math.sqrt(1 << 14));
+		}
+	}
+	
+	/**
+	 * The rank of the result must be within 3 times the rank error of 
+	 * <code>k</code> = 200 (about 1.65%) from the rank of the percentile.
+	 */
+	private static void assertRank(String message, double[] sorted, double percentile,
+			Double actual) {
+		assertNotNull(message, actual);
+		int lower = lower(sorted, actual);
+		int upper = upper(sorted, actual);
+		assertTrue(message + " not a value [" + actual + "]", lower < upper);
+		
+		if (percentile == 0 || percentile == 100) {
+			assertEquals(message, sorted[(percentile == 0) ? 0 : sorted.length - 1], actual, 0);
+			return;
+		}
+		
+		double rank = percentile / 100 * sorted.length;
+		double error = 3 * 0.0165 * sorted.length + 1;
+		assertTrue(message + " rank [" + lower + ", " + upper + "] expected [" + rank + "]",
+				rank >= lower - error && rank <= upper + error);
+	}
+	
+	private static int lower(double[] sorted, double value) {
+		int low = 0;
+		int high = sorted.length;
+		
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			
+			if (sorted[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		
+		return low;
+	}
+	
+	private static int upper(double[] sorted, double value) {
+		int low = 0;
+		int high = sorted.length;
+		
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			
+			if (sorted[middle] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		
+		return low;
+	}
+	
+	private static List<Entity> entities(int size, int range, Random random) {
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int i = 0; i < size; i++) {
+			Entity entity = new Entity();
+			entity.id = "id" + i;
+			entity.l = random.nextInt(range);
+			entity.s = "s" + random.nextInt(range);
+			entity.d = random.nextGaussian() * range;
+			entities.add(entity);
+		}
+		
+		Collections.shuffle(entities, random);
+		return entities;
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		int i;
+		
+		long l;
+		
+		String s;
+		
+		double d;
+		
+		Grade g;
+		
+	}
+	
+	/** Compares with the extreme values of <code>int</code>. */
+	public static class Grade implements Comparable<Grade> {
+
+		private final int rank;
+		
+		public Grade(int rank) {
+			this.rank = rank;
+		}
+		
+		@Override
+		public int compareTo(Grade grade) {
+			return (rank < grade.rank) ? Integer.MIN_VALUE : ((rank == grade.rank) ? 0 : Integer.MAX_VALUE);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.DoubleProperty;
+import org.eiichiro.acidhouse.metamodel.IntProperty;
+import org.eiichiro.acidhouse.metamodel.LongProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.junit.After;
+import org.junit.Test;
+
+public class CompoundOrderTest {
+
+	private final int parallelism = Executions.parallelism();
+	
+	private final int threshold = Executions.threshold();
+	
+	@After
+	public void tearDown() {
+		Executions.parallelism(parallelism);
+		Executions.threshold(threshold);
+	}
+	
+	private final ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+	
+	private final IntProperty<Entity> i = (IntProperty<Entity>) entity_.<Integer>comparable("i");
+	
+	private final LongProperty<Entity> l = (LongProperty<Entity>) entity_.<Long>comparable("l");
+	
+	private final DoubleProperty<Entity> d = (DoubleProperty<Entity>) entity_.<Double>comparable("d");
+	
+	private final ComparableProperty<Entity, String> s = entity_.comparable("s");
+	
+	@Test
+	public void testPrimitiveKeys() {
+		List<Entity> entities = entities(2000, new Random(3));
+		
+		for (Order<?, ?>[] orders : new Order<?, ?>[][] {
+				{ i.asc }, { i.desc }, { l.asc }, { l.desc }, { d.asc }, { d.desc },
+				{ s.asc, d.desc, l.asc }, { d.asc, i.desc, s.desc }, { l.desc, s.asc, i.asc } }) {
+			@SuppressWarnings("unchecked")
+			CompoundOrder<Entity> order = new CompoundOrder<Entity>((Order<Entity, ?>[]) orders);
+			Comparator<Entity> boxed = boxed(order);
+			List<Entity> expected = new ArrayList<Entity>(entities);
+			Collections.sort(expected, boxed);
+			assertEquals(order.toString(), expected, order.sort(entities));
+			assertEquals(order.toString(), expected.subList(10, 60), order.sort(entities, 10, 50));
+			
+			for (int j = 1; j < entities.size(); j++) {
+				assertEquals(order.toString(), Integer.signum(boxed.compare(entities.get(j - 1), entities.get(j))),
+						Integer.signum(order.compare(entities.get(j - 1), entities.get(j))));
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testTop() {
+		// Only 3 distinct keys for 500 entities, so most comparisons are ties.
+		List<Entity> entities = entities(500, new Random(5));
+		
+		for (Entity entity : entities) {
+			entity.i = entity.i & 1;
+			entity.l = entity.l & 1;
+		}
+		
+		for (int parallelism : new int[] { 0, 4 }) {
+			Executions.parallelism(parallelism);
+			Executions.threshold(50);
+			assertTop(entities, i.asc);
+			assertTop(entities, i.desc, s.asc);
+			assertTop(entities, l.asc, i.desc);
+			assertTop(entities, d.desc, i.asc, s.desc);
+		}
+	}
+	
+	private static void assertTop(List<Entity> entities, Order<Entity, ?>... orders) {
+		CompoundOrder<Entity> order = new CompoundOrder<Entity>(orders);
+		List<Entity> expected = new ArrayList<Entity>(entities);
+		Collections.sort(expected, boxed(order));
+		int size = entities.size();
+		
+		for (int offset : new int[] { 0, 1, 7, 249, size - 1, size, size + 5, Integer.MAX_VALUE }) {
+			for (int limit : new int[] { 0, 1, 10, 250, size - 1, size, Integer.MAX_VALUE }) {
+				String message = Executions.parallelism() + " " + order + " " + offset + " " + limit;
+				List<Entity> page = page(expected, offset, limit);
+				assertEquals(message, page, order.sort(entities, offset, limit));
+				assertEquals(message, page, Executions.sort(entities, offset, limit, orders));
+				assertEquals(message, page, Executions.slice(Executions.sort(entities, orders), offset, limit));
+			}
+		}
+	}
+	
+	/** The reference page of the stably sorted entities. */
+	private static List<Entity> page(List<Entity> sorted, int offset, int limit) {
+		List<Entity> page = new ArrayList<Entity>();
+		
+		for (int j = offset; j >= 0 && j < sorted.size() && page.size() < limit; j++) {
+			page.add(sorted.get(j));
+		}
+		
+		return page;
+	}
+	
+	/** The reference {@code Comparator} which compares the boxed values. */
+	private static Comparator<Entity> boxed(final CompoundOrder<Entity> order) {
+		return new Comparator<Entity>() {
+
+			@SuppressWarnings({ "unchecked", "rawtypes" })
+			@Override
+			public int compare(Entity entity1, Entity entity2) {
+				for (Order<Entity, ?> o : order.orders()) {
+					Comparable value1 = o.property().get(entity1);
+					Comparable value2 = o.property().get(entity2);
+					int compare = (value1 == null) ? ((value2 == null) ? 0 : -1)
+							: ((value2 == null) ? 1 : Integer.signum(value1.compareTo(value2)));
+							
+					if (compare != 0) {
+						return (o.direction() == Order.Direction.DESC) ? -compare : compare;
+					}
+				}
+				
+				return 0;
+			}
+			
+		};
+	}
+	
+	static List<Entity> entities(int size, Random random) {
+		int[] ints = { Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE };
+		long[] longs = { Long.MIN_VALUE, Integer.MIN_VALUE - 1L, -1, 0, 1, Long.MAX_VALUE };
+		double[] doubles = { Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.5, -Double.MIN_VALUE,
+				-0.0, 0.0, Double.MIN_VALUE, 2.5, Double.MAX_VALUE, Double.POSITIVE_INFINITY,
+				Double.NaN };
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int j = 0; j < size; j++) {
+			Entity entity = new Entity();
+			entity.id = "id" + j;
+			entity.i = (random.nextInt(4) == 0) ? ints[random.nextInt(ints.length)] : random.nextInt(20) - 10;
+			entity.l = (random.nextInt(4) == 0) ? longs[random.nextInt(longs.length)] : random.nextInt(20) - 10;
+			entity.d = (random.nextInt(2) == 0) ? doubles[random.nextInt(doubles.length)]
+					: (random.nextInt(20) - 10) / 4.0;
+			entity.s = (random.nextInt(5) == 0) ? null : "s" + random.nextInt(5);
+			entities.add(entity);
+		}
+		
+		return entities;
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		int i;
+		
+		long l;
+		
+		double d;
+		
+		String s;
+		
+		@Override
+		public String toString() {
+			return id;
+		}
+		
+	}
+	
+}
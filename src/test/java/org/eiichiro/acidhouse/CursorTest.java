@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.junit.Test;
+
+public class CursorTest {
+
+	private final ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+	
+	private final ComparableProperty<Entity, String> s = entity_.comparable("s");
+	
+	@Test
+	public void testBatch() {
+		for (int prefetch : new int[] { 0, 2 }) {
+			// 0, less than, exactly and more than 1 and 3 batches of 10.
+			for (int size : new int[] { 0, 1, 9, 10, 11, 29, 30, 31 }) {
+				List<Entity> entities = entities(size);
+				ListFetcher fetcher = new ListFetcher(entities);
+				Cursor<Entity> cursor = new Cursor<Entity>(fetcher, null, 0, Integer.MAX_VALUE, 10, prefetch);
+				String message = "prefetch " + prefetch + " size " + size;
+				assertEquals(message, entities, list(cursor));
+				assertFalse(message, cursor.hasNext());
+				
+				// The exact multiple is ended by the empty page.
+				assertEquals(message, size / 10 + 1, fetcher.fetches.get());
+				assertEquals(message, Collections.singletonList(10), fetcher.sizes());
+			}
+		}
+	}
+	
+	@Test
+	public void testOffsetLimit() {
+		List<Entity> entities = entities(100);
+		Predicate predicate = Filters.compile(s.equalTo("a"));
+		List<Entity> matches = predicate.filter(entities);
+		assertEquals(34, matches.size());
+		
+		for (int prefetch : new int[] { 0, 3 }) {
+			for (int offset : new int[] { 0, 1, 5, 33, 34, 100 }) {
+				for (int limit : new int[] { 0, 1, 7, 33, 34, Integer.MAX_VALUE }) {
+					ListFetcher fetcher = new ListFetcher(entities);
+					Cursor<Entity> cursor = new Cursor<Entity>(fetcher, predicate, offset, limit, 7, prefetch);
+					String message = "prefetch " + prefetch + " offset " + offset + " limit " + limit;
+					List<Entity> expected = Executions.slice(matches, offset, limit);
+					assertEquals(message, expected, list(cursor));
+					
+					if (limit == 0) {
+						assertEquals(message, 0, fetcher.fetches.get());
+					} else if (prefetch == 0 && limit < matches.size() - offset) {
+						// Stops fetching at the page which has the last entity.
+						int last = entities.indexOf(matches.get(offset + limit - 1));
+						assertEquals(message, last / 7 + 1, fetcher.fetches.get());
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testPrefetch() throws InterruptedException {
+		ListFetcher fetcher = new ListFetcher(entities(100));
+		List<Entity> entities = list(new Cursor<Entity>(fetcher, null, 0, Integer.MAX_VALUE, 10, 0));
+		assertEquals(100, entities.size());
+		assertEquals(Collections.singletonList(Thread.currentThread().getName()), fetcher.threads());
+		
+		fetcher = new ListFetcher(entities(100));
+		entities = list(new Cursor<Entity>(fetcher, null, 0, Integer.MAX_VALUE, 10, 2));
+		assertEquals(100, entities.size());
+		assertEquals(1, fetcher.threads().size());
+		assertTrue(fetcher.threads().get(0).startsWith("acidhouse-cursor-"));
+		
+		// Reads ahead 2 pages in the queue and 1 page waiting for the space.
+		fetcher = new ListFetcher(null);
+		Cursor<Entity> cursor = new Cursor<Entity>(fetcher, null, 0, Integer.MAX_VALUE, 10, 2);
+		
+		try {
+			await(fetcher.fetches, 3);
+			Thread.sleep(300);
+			assertEquals(3, fetcher.fetches.get());
+			
+			for (int j = 0; j < 10; j++) {
+				cursor.next();
+			}
+			
+			await(fetcher.fetches, 4);
+			Thread.sleep(300);
+			assertEquals(4, fetcher.fetches.get());
+		} finally {
+			cursor.close();
+		}
+	}
+	
+	@Test
+	public void testClose() throws InterruptedException {
+		for (final boolean swallow : new boolean[] { false, true }) {
+			ListFetcher fetcher = new ListFetcher(null) {
+
+				@Override
+				public List<Entity> fetch(int size) {
+					// Waits 50ms and swallows the interruption.
+					long end = System.currentTimeMillis() + 50;
+					
+					while (swallow && System.currentTimeMillis() < end) {
+						try {
+							Thread.sleep(10);
+						} catch (InterruptedException e) {}
+					}
+					
+					return super.fetch(size);
+				}
+				
+			};
+			Cursor<Entity> cursor = new Cursor<Entity>(fetcher, null, 0, Integer.MAX_VALUE, 10, 2);
+			
+			for (int j = 0; j < 25; j++) {
+				assertTrue(cursor.hasNext());
+				assertEquals("id" + j, cursor.next().id);
+			}
+			
+			cursor.close();
+			assertFalse(cursor.hasNext());
+			
+			// The producer stops within the interval it checks the close.
+			Thread.sleep(500);
+			assertEquals("swallow " + swallow, 0, fetcher.active.get());
+			int fetches = fetcher.fetches.get();
+			Thread.sleep(500);
+			assertEquals("swallow " + swallow, fetches, fetcher.fetches.get());
+			assertEquals("swallow " + swallow, 0, fetcher.active.get());
+			
+			// Nor blocks on the prefetch queue.
+			for (StackTraceElement element : fetcher.thread.getStackTrace()) {
+				assertFalse("swallow " + swallow + " " + element,
+						element.getClassName().equals(Cursor.class.getName()));
+			}
+		}
+	}
+	
+	@Test
+	public void testException() {
+		for (int prefetch : new int[] { 0, 2 }) {
+			final RuntimeException exception = new IllegalStateException("fetch");
+			ListFetcher fetcher = new ListFetcher(entities(100)) {
+
+				@Override
+				public List<Entity> fetch(int size) {
+					if (fetches.get() == 2) {
+						fetches.incrementAndGet();
+						throw exception;
+					}
+					
+					return super.fetch(size);
+				}
+				
+			};
+			Cursor<Entity> cursor = new Cursor<Entity>(fetcher, null, 0, Integer.MAX_VALUE, 10, prefetch);
+			
+			for (int j = 0; j < 20; j++) {
+				assertTrue(cursor.hasNext());
+				assertEquals("id" + j, cursor.next().id);
+			}
+			
+			try {
+				cursor.hasNext();
+				fail();
+			} catch (IllegalStateException e) {
+				assertSame("prefetch " + prefetch, exception, e);
+			}
+			
+			cursor.close();
+			assertFalse(cursor.hasNext());
+		}
+	}
+	
+	private static List<Entity> list(Cursor<Entity> cursor) {
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		try {
+			while (cursor.hasNext()) {
+				entities.add(cursor.next());
+			}
+		} finally {
+			cursor.close();
+		}
+		
+		return entities;
+	}
+	
+	private static void await(AtomicInteger counter, int count) throws InterruptedException {
+		for (int j = 0; j < 100 && counter.get() < count; j++) {
+			Thread.sleep(20);
+		}
+	}
+	
+	private static List<Entity> entities(int size) {
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int j = 0; j < size; j++) {
+			entities.add(entity(j));
+		}
+		
+		return entities;
+	}
+	
+	private static Entity entity(int j) {
+		Entity entity = new Entity();
+		entity.id = "id" + j;
+		entity.s = (j % 3 == 0) ? "a" : "b";
+		return entity;
+	}
+	
+	/**
+	 * The {@code Fetcher} of the pages of the specified entities, or of the 
+	 * endless entities if <code>null</code>.
+	 */
+	private static class ListFetcher implements Cursor.Fetcher<Entity> {
+
+		final AtomicInteger fetches = new AtomicInteger();
+		
+		final AtomicInteger active = new AtomicInteger();
+		
+		volatile Thread thread;
+		
+		private final List<Entity> entities;
+		
+		private final List<Integer> sizes = new ArrayList<Integer>();
+		
+		private final List<String> threads = new ArrayList<String>();
+		
+		private int position;
+		
+		ListFetcher(List<Entity> entities) {
+			this.entities = entities;
+		}
+		
+		@Override
+		public List<Entity> fetch(int size) {
+			active.incrementAndGet();
+			thread = Thread.currentThread();
+			
+			try {
+				synchronized (this) {
+					if (!sizes.contains(size)) {
+						sizes.add(size);
+					}
+					
+					if (!threads.contains(Thread.currentThread().getName())) {
+						threads.add(Thread.currentThread().getName());
+					}
+				}
+				
+				List<Entity> page = new ArrayList<Entity>();
+				
+				for (int j = 0; j < size && (entities == null || position < entities.size()); j++) {
+					page.add((entities == null) ? entity(position) : entities.get(position));
+					position++;
+				}
+				
+				fetches.incrementAndGet();
+				return page;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+		
+		synchronized List<Integer> sizes() {
+			return new ArrayList<Integer>(sizes);
+		}
+		
+		synchronized List<String> threads() {
+			return new ArrayList<String>(threads);
+		}
+		
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		String s;
+		
+		@Override
+		public String toString() {
+			return id;
+		}
+		
+	}
+	
+}
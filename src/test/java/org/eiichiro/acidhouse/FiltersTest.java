@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.DoubleProperty;
+import org.eiichiro.acidhouse.metamodel.IntProperty;
+import org.eiichiro.acidhouse.metamodel.LongProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.Property;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.eiichiro.acidhouse.metamodel.StringProperty;
+import org.junit.Test;
+
+public class FiltersTest {
+
+	private final ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+	
+	private final IntProperty<Entity> i = (IntProperty<Entity>) entity_.<Integer>comparable("i");
+	
+	private final LongProperty<Entity> l = (LongProperty<Entity>) entity_.<Long>comparable("l");
+	
+	private final DoubleProperty<Entity> d = (DoubleProperty<Entity>) entity_.<Double>comparable("d");
+	
+	private final StringProperty<Entity> s = (StringProperty<Entity>) entity_.<String>comparable("s");
+	
+	private final ComparableProperty<Entity, Integer> x = entity_.comparable("embedded.x");
+	
+	private final StringProperty<Entity> t = (StringProperty<Entity>) entity_.<String>comparable("embedded.inner.t");
+	
+	@Test
+	public void testCompile() {
+		Random random = new Random(5);
+		List<Entity> entities = entities(300, random);
+		
+		for (int n = 0; n < 3000; n++) {
+			Filter<?>[] filters = new Filter<?>[1 + random.nextInt(6)];
+			
+			for (int j = 0; j < filters.length; j++) {
+				filters[j] = filter(random, 2);
+			}
+			
+			String message = Arrays.toString(filters);
+			Predicate predicate = Filters.compile(filters);
+			List<Entity> expected = new ArrayList<Entity>();
+			
+			for (Entity entity : entities) {
+				boolean matches = true;
+				
+				for (Filter<?> filter : filters) {
+					matches &= filter.matches(entity);
+				}
+				
+				assertEquals(message + " " + entity, matches, predicate.matches(entity));
+				
+				if (matches) {
+					expected.add(entity);
+				}
+			}
+			
+			assertEquals(message, expected, predicate.filter(entities));
+			
+			if (!predicate.satisfiable()) {
+				assertTrue(message, expected.isEmpty());
+			}
+			
+			// Batch evaluation of the subset.
+			BitSet selection = new BitSet();
+			
+			for (int j = 0; j < entities.size(); j += 3) {
+				selection.set(j);
+			}
+			
+			predicate.matches(entities, selection);
+			
+			for (int j = 0; j < entities.size(); j++) {
+				assertEquals(message + " at " + j, j % 3 == 0 && expected.contains(entities.get(j)),
+						selection.get(j));
+			}
+		}
+	}
+	
+	@Test
+	public void testIntegral() {
+		int[] ints = { Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1, 0, 1, Integer.MAX_VALUE - 1,
+				Integer.MAX_VALUE };
+		long[] longs = { Long.MIN_VALUE, Integer.MIN_VALUE - 1L, -1, 0, 1, Integer.MAX_VALUE + 1L,
+				Long.MAX_VALUE };
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int j = 0; j < ints.length; j++) {
+			Entity entity = entity("id" + j);
+			entity.i = ints[j];
+			entity.l = longs[j];
+			entities.add(entity);
+		}
+		
+		for (int j = 0; j < ints.length; j++) {
+			assertIntegral(entities, i.equalTo(ints[j]), i.equalTo(Integer.valueOf(ints[j])),
+					ComparableFilter.Operator.EQUAL_TO);
+			assertIntegral(entities, i.notEqualTo(ints[j]), i.notEqualTo(Integer.valueOf(ints[j])),
+					ComparableFilter.Operator.NOT_EQUAL_TO);
+			assertIntegral(entities, i.greaterThan(ints[j]), i.greaterThan(Integer.valueOf(ints[j])),
+					ComparableFilter.Operator.GREATER_THAN);
+			assertIntegral(entities, i.lessThanOrEqualTo(ints[j]),
+					i.lessThanOrEqualTo(Integer.valueOf(ints[j])),
+					ComparableFilter.Operator.LESS_THAN_OR_EQUAL_TO);
+			assertIntegral(entities, l.lessThan(longs[j]), l.lessThan(Long.valueOf(longs[j])),
+					ComparableFilter.Operator.LESS_THAN);
+			assertIntegral(entities, l.greaterThanOrEqualTo(longs[j]),
+					l.greaterThanOrEqualTo(Long.valueOf(longs[j])),
+					ComparableFilter.Operator.GREATER_THAN_OR_EQUAL_TO);
+		}
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void assertIntegral(List<Entity> entities, Filter<?> filter, Filter<?> boxed,
+			ComparableFilter.Operator operator) {
+		assertTrue(filter.getClass().getName(), filter instanceof IntFilter || filter instanceof LongFilter);
+		ComparableFilter comparable = (ComparableFilter) filter;
+		BitSet selection = new BitSet();
+		selection.set(0, entities.size());
+		((BatchFilter<?>) filter).matches(entities, selection);
+		
+		for (int j = 0; j < entities.size(); j++) {
+			Comparable value = (Comparable) comparable.property().get(entities.get(j));
+			boolean expected = operator.matches(Integer.signum(value.compareTo(comparable.value())));
+			assertEquals(filter + " " + value, expected, filter.matches(entities.get(j)));
+			assertEquals(filter + " " + value, expected, boxed.matches(entities.get(j)));
+			assertEquals(filter + " " + value, expected, comparable.evaluate(value));
+			assertEquals(filter + " " + value, expected, selection.get(j));
+		}
+	}
+	
+	@Test
+	public void testOrder() {
+		AtomicInteger count = new AtomicInteger();
+		Filter<?> opaque = counting(count);
+		List<Entity> entities = entities(300, new Random(1));
+		int expected = 0;
+		
+		for (Entity entity : entities) {
+			if (entity.s.equals("b") && entity.embedded.x >= 0) {
+				expected++;
+			}
+		}
+		
+		// The opaque filter is evaluated last; equality before range.
+		Predicate predicate = Filters.compile(opaque, x.greaterThanOrEqualTo(0), s.equalTo("b"));
+		
+		for (Entity entity : entities) {
+			predicate.matches(entity);
+		}
+		
+		assertEquals(expected, count.get());
+		count.set(0);
+		predicate.filter(entities);
+		assertEquals(expected, count.get());
+		assertTrue(predicate.toString(), predicate.toString().startsWith("[s == \"b\""));
+	}
+	
+	@Test
+	public void testGroup() {
+		Predicate predicate = Filters.compile(i.greaterThan(-2), s.startsWith("a"),
+				i.lessThan(2), i.notEqualTo(0), x.in(1, 2, 3), x.lessThan(3));
+		assertEquals(3, predicate.ranges().size());
+		assertTrue(predicate.satisfiable());
+		assertEquals(6, predicate.filters().size());
+		
+		assertFalse(Filters.compile(i.greaterThan(2), i.lessThan(2)).satisfiable());
+		assertFalse(Filters.compile(x.in(1, 2), Filters.and(x.in(3, 4))).satisfiable());
+		assertFalse(Filters.compile(s.startsWith("a"), s.startsWith("b")).satisfiable());
+		assertTrue(Filters.compile(s.startsWith("a"), s.startsWith("ab")).satisfiable());
+	}
+	
+	@Test
+	public void testFlatten() {
+		Filter<?> opaque = counting(new AtomicInteger());
+		Filter<?> or = Filters.or(i.equalTo(1), i.equalTo(2));
+		List<Filter<?>> flattened = Filters.flatten(new Filter<?>[] {
+				i.equalTo(0),
+				Filters.and(s.equalTo("a"), Filters.and(x.lessThan(1), opaque)),
+				or,
+				Filters.not(d.lessThan(0.0)) }, new ArrayList<Filter<?>>());
+		assertEquals(6, flattened.size());
+		assertSame(opaque, flattened.get(3));
+		assertSame(or, flattened.get(4));
+		assertTrue(flattened.get(5) instanceof CompositeFilter);
+	}
+	
+	@Test
+	public void testUnion() {
+		Entity a = entity("a");
+		Entity b = entity("b");
+		Entity a2 = entity("a");
+		Entity anonymous = new Entity();
+		Other other = new Other();
+		other.id = "a";
+		List<List<Object>> results = new ArrayList<List<Object>>();
+		results.add(Arrays.<Object>asList(a, b, anonymous));
+		results.add(Arrays.<Object>asList(b, a2, other, anonymous));
+		results.add(new ArrayList<Object>());
+		List<Object> union = Filters.union(results);
+		assertEquals(5, union.size());
+		assertSame(a, union.get(0));
+		assertSame(b, union.get(1));
+		assertSame(anonymous, union.get(2));
+		assertSame(other, union.get(3));
+		assertSame(anonymous, union.get(4));
+	}
+	
+	private Filter<?> filter(Random random, int depth) {
+		int v = random.nextInt(9) - 4;
+		
+		switch (random.nextInt((depth > 0) ? 15 : 12)) {
+		case 0:
+			return comparable(i, v, random);
+		case 1:
+			return comparable(l, (long) v, random);
+		case 2:
+			return comparable(d, v / 2.0, random);
+		case 3:
+			return comparable(x, v, random);
+		case 4:
+			return i.in(v, v + 1, v + 3);
+		case 5:
+			return x.in(v - 1, v + 2, v + 3, v, 4, -4, 0, 1, 2, -1);
+		case 6:
+			return s.startsWith(string(random).substring(0, random.nextInt(2)));
+		case 7:
+			return comparable(s, string(random), random);
+		case 8:
+			return comparable(t, string(random), random);
+		case 9:
+			return t.in(string(random), string(random));
+		case 10:
+			return counting(new AtomicInteger());
+		case 11:
+			return new Filter<Integer>() {
+
+				@Override
+				public Property<?, Integer> property() {
+					return i;
+				}
+				
+				@Override
+				public boolean matches(Object entity) {
+					return ((Entity) entity).i % 2 == 0;
+				}
+				
+			};
+		case 12:
+			return Filters.and(filter(random, depth - 1), filter(random, depth - 1));
+		case 13:
+			return Filters.or(filter(random, depth - 1), filter(random, depth - 1));
+		default:
+			return Filters.not(filter(random, depth - 1));
+		}
+	}
+	
+	private static <T extends Comparable<T>> Filter<T> comparable(ComparableProperty<Entity, T> property,
+			T value, Random random) {
+		switch (random.nextInt(6)) {
+		case 0:
+			return property.equalTo(value);
+		case 1:
+			return property.notEqualTo(value);
+		case 2:
+			return property.greaterThan(value);
+		case 3:
+			return property.greaterThanOrEqualTo(value);
+		case 4:
+			return property.lessThan(value);
+		default:
+			return property.lessThanOrEqualTo(value);
+		}
+	}
+	
+	private static Filter<?> counting(final AtomicInteger count) {
+		return new Filter<Object>() {
+
+			@Override
+			public Property<?, Object> property() {
+				return null;
+			}
+			
+			@Override
+			public boolean matches(Object entity) {
+				count.incrementAndGet();
+				return (((Entity) entity).i + ((Entity) entity).embedded.x) % 2 == 0;
+			}
+			
+			@Override
+			public String toString() {
+				return "opaque";
+			}
+			
+		};
+	}
+	
+	private static String string(Random random) {
+		return "abc".substring(random.nextInt(2), 2 + random.nextInt(2));
+	}
+	
+	private static List<Entity> entities(int size, Random random) {
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (int j = 0; j < size; j++) {
+			Entity entity = entity("id" + j);
+			entity.i = random.nextInt(9) - 4;
+			entity.l = random.nextInt(9) - 4;
+			entity.d = (random.nextInt(9) - 4) / 2.0;
+			entity.s = string(random).substring(random.nextInt(2));
+			entity.embedded.x = random.nextInt(9) - 4;
+			entity.embedded.inner.t = string(random);
+			entities.add(entity);
+		}
+		
+		return entities;
+	}
+	
+	private static Entity entity(String id) {
+		Entity entity = new Entity();
+		entity.id = id;
+		entity.embedded = new Outer();
+		entity.embedded.inner = new Inner();
+		return entity;
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		int i;
+		
+		long l;
+		
+		double d;
+		
+		String s;
+		
+		Outer embedded;
+		
+		@Override
+		public String toString() {
+			return id + "(" + i + ", " + l + ", " + d + ", " + s + ", " + embedded.x + ", "
+					+ embedded.inner.t + ")";
+		}
+		
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Other {
+
+		@Key String id;
+		
+	}
+	
+	@Embedded
+	public static class Outer {
+
+		Integer x;
+		
+		Inner inner;
+		
+	}
+	
+	@Embedded
+	public static class Inner {
+
+		String t;
+		
+	}
+	
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.junit.Test;
+
+public class InFilterTest {
+
+	private final ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+	
+	private final ComparableProperty<Entity, String> s = entity_.comparable("s");
+	
+	private final ComparableProperty<Entity, Version> v = entity_.comparable("v");
+	
+	private final ComparableProperty<Entity, Wrapper> c = entity_.comparable("c");
+	
+	@Test
+	public void testNull() {
+		// Linear (fewer than 8 values), hashed, sorted and linear (8 or more
+		// values which cannot be sorted) membership tests.
+		for (int size : new int[] { 1, 7, 8, 20 }) {
+			List<String> strings = new ArrayList<String>();
+			List<Version> versions = new ArrayList<Version>();
+			List<Wrapper> mixed = new ArrayList<Wrapper>();
+			
+			for (int i = 0; i < size; i++) {
+				strings.add("s" + i);
+				versions.add(new Version(i));
+				mixed.add(new Wrapper((i % 2 == 0) ? "m" + i : Integer.valueOf(i)));
+			}
+			
+			strings.add(null);
+			versions.add(null);
+			mixed.add(null);
+			assertIn(size, new InFilter<String>(s, strings), "s0", "s" + size);
+			assertIn(size, new InFilter<Version>(v, versions), new Version(0), new Version(size));
+			// The values of the different types cannot be compared with each
+			// other, so only the first value is tested.
+			assertIn(size, new InFilter<Wrapper>(c, mixed), new Wrapper("m0"),
+					(size == 1) ? new Wrapper("x") : null);
+		}
+	}
+	
+	private <T extends Comparable<T>> void assertIn(int size, InFilter<T> filter, T in, T out) {
+		String message = size + " " + filter;
+		assertFalse(message, filter.evaluate(null));
+		assertTrue(message, filter.evaluate(in));
+		
+		if (out != null) {
+			assertFalse(message, filter.evaluate(out));
+		}
+		
+		
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (Object value : new Object[] { null, in, null }) {
+			Entity entity = new Entity();
+			
+			if (filter.property() == s) {
+				entity.s = (String) value;
+			} else if (filter.property() == v) {
+				entity.v = (Version) value;
+			} else {
+				entity.c = (Wrapper) value;
+			}
+			
+			assertEquals(message, value == in, filter.matches(entity));
+			entities.add(entity);
+		}
+		
+		BitSet selection = new BitSet();
+		selection.set(0, entities.size());
+		filter.matches(entities, selection);
+		assertEquals(message, 1, selection.cardinality());
+		assertTrue(message, selection.get(1));
+		assertFalse(message, Filters.compile(filter).matches(entities.get(0)));
+		assertTrue(message, Filters.compile(filter).matches(entities.get(1)));
+	}
+	
+	/** Comparable only with the values of the same type. */
+	public static class Wrapper implements Comparable<Wrapper> {
+
+		private final Object value;
+		
+		public Wrapper(Object value) {
+			this.value = value;
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		public int compareTo(Wrapper wrapper) {
+			return ((Comparable) value).compareTo(wrapper.value);
+		}
+		
+		@Override
+		public String toString() {
+			return String.valueOf(value);
+		}
+		
+	}
+	
+	public static class Version implements Comparable<Version> {
+
+		private final int major;
+		
+		public Version(int major) {
+			this.major = major;
+		}
+		
+		@Override
+		public int compareTo(Version version) {
+			return (major < version.major) ? -1 : ((major == version.major) ? 0 : 1);
+		}
+		
+		@Override
+		public String toString() {
+			return String.valueOf(major);
+		}
+		
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		String s;
+		
+		Version v;
+		
+		Wrapper c;
+		
+	}
+	
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MaterializedAggregateTest {
+
+	private final ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+	
+	private final ComparableProperty<Entity, Integer> i = entity_.comparable("i");
+	
+	private final ComparableProperty<Entity, String> s = entity_.comparable("s");
+	
+	private final Map<String, Entity> datastore = new LinkedHashMap<String, Entity>();
+	
+	private MaterializedAggregate<Integer> max;
+	
+	private MaterializedAggregate<Integer> sum;
+	
+	private MaterializedAggregate<Long> count;
+	
+	private long sequence;
+	
+	@Before
+	public void setUp() {
+		max = new MaterializedAggregate<Integer>(Aggregations.max(i), s.equalTo("a"));
+		sum = new MaterializedAggregate<Integer>(Aggregations.sum(i), s.equalTo("a"));
+		count = new MaterializedAggregate<Long>(Aggregations.count(entity_), s.equalTo("a"));
+		assertFalse(Aggregations.max(i).accumulator().invertible());
+		assertTrue(Aggregations.sum(i).accumulator().invertible());
+		assertTrue(Aggregations.count(entity_).accumulator().invertible());
+		
+		for (Entity entity : Arrays.asList(entity("e1", 5, "a"), entity("e2", 3, "a"),
+				entity("e3", 9, "b"))) {
+			datastore.put(entity.id, entity);
+		}
+		
+		for (MaterializedAggregate<?> aggregate : aggregates()) {
+			aggregate.load(new ArrayList<Entity>(datastore.values()).iterator());
+		}
+		
+		assertAggregates();
+	}
+	
+	@Test
+	public void testPut() {
+		put(entity("e4", 7, "a"));
+		put(entity("e5", 11, "b"));
+		put(entity("e6", 1, "a"));
+	}
+	
+	@Test
+	public void testUpdate() {
+		// Within the filter, up and down the current max.
+		update("e1", 12, "a");
+		update("e1", 4, "a");
+		update("e2", 2, "a");
+		
+		// Out of and into the filter.
+		update("e1", 4, "b");
+		update("e3", 20, "a");
+		update("e3", 0, "a");
+	}
+	
+	@Test
+	public void testDelete() {
+		// The deleted entity itself is the previous entity if not recorded.
+		Entity e1 = datastore.remove("e1");
+		publish(new Log(sequence++, Log.Operation.DELETE, e1));
+		assertAggregates();
+		
+		delete("e3");
+		delete("e2");
+		assertEquals(null, max.get());
+		assertEquals(0, sum.get().intValue());
+		assertEquals(0L, count.get().longValue());
+	}
+	
+	@Test
+	public void testUpdateSameInstance() {
+		Entity entity = datastore.get("e1");
+		entity.i = 100;
+		
+		for (MaterializedAggregate<?> aggregate : aggregates()) {
+			try {
+				aggregate.apply(committed(new Log(sequence++, Log.Operation.UPDATE, entity, entity)));
+				fail();
+			} catch (IllegalArgumentException e) {}
+		}
+		
+		entity.i = 5;
+		assertAggregates();
+	}
+	
+	@Test
+	public void testUpdateWithoutPrevious() {
+		Entity entity = copy(datastore.get("e1"));
+		entity.i = 100;
+		Log log = committed(new Log(sequence++, Log.Operation.UPDATE, entity));
+		max.apply(log);
+		assertEquals(100, max.get().intValue());
+		
+		for (MaterializedAggregate<?> aggregate : Arrays.asList(sum, count)) {
+			try {
+				aggregate.apply(log);
+				fail();
+			} catch (IllegalArgumentException e) {}
+		}
+	}
+	
+	@Test
+	public void testUncommitted() {
+		Log log = new Log(sequence++, Log.Operation.PUT, entity("e4", 100, "a"));
+		log.state(Log.State.PREPARED);
+		
+		for (MaterializedAggregate<?> aggregate : aggregates()) {
+			aggregate.apply(log);
+		}
+		
+		assertAggregates();
+	}
+	
+	private void put(Entity entity) {
+		datastore.put(entity.id, entity);
+		publish(new Log(sequence++, Log.Operation.PUT, entity));
+		assertAggregates();
+	}
+	
+	private void update(String id, int i, String s) {
+		Entity entity = datastore.get(id);
+		Entity previous = copy(entity);
+		entity.i = i;
+		entity.s = s;
+		publish(new Log(sequence++, Log.Operation.UPDATE, entity, previous));
+		assertAggregates();
+	}
+	
+	private void delete(String id) {
+		Entity entity = datastore.remove(id);
+		publish(new Log(sequence++, Log.Operation.DELETE, copy(entity), entity));
+		assertAggregates();
+	}
+	
+	private void publish(Log log) {
+		for (MaterializedAggregate<?> aggregate : aggregates()) {
+			aggregate.apply(committed(log));
+		}
+	}
+	
+	/** Compares with the aggregations over the current entities. */
+	private void assertAggregates() {
+		List<Entity> entities = new ArrayList<Entity>();
+		
+		for (Entity entity : datastore.values()) {
+			if ("a".equals(entity.s)) {
+				entities.add(entity);
+			}
+		}
+		
+		String message = entities.toString();
+		assertEquals(message, Aggregations.max(i).apply(entities), max.get());
+		assertEquals(message, Aggregations.sum(i).apply(entities), sum.get());
+		assertEquals(message, Aggregations.count(entity_).apply(entities), count.get());
+	}
+	
+	private List<MaterializedAggregate<?>> aggregates() {
+		List<MaterializedAggregate<?>> aggregates = new ArrayList<MaterializedAggregate<?>>();
+		aggregates.add(max);
+		aggregates.add(sum);
+		aggregates.add(count);
+		return aggregates;
+	}
+	
+	private static Log committed(Log log) {
+		log.state(Log.State.COMMITTED);
+		return log;
+	}
+	
+	private static Entity entity(String id, int i, String s) {
+		Entity entity = new Entity();
+		entity.id = id;
+		entity.i = i;
+		entity.s = s;
+		return entity;
+	}
+	
+	private static Entity copy(Entity entity) {
+		return entity(entity.id, entity.i, entity.s);
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		int i;
+		
+		String s;
+		
+		@Override
+		public String toString() {
+			return id + "(" + i + ", " + s + ")";
+		}
+		
+	}
+	
+}
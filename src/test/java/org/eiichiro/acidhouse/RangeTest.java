@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.eiichiro.acidhouse.metamodel.StringProperty;
+import org.junit.Test;
+
+public class RangeTest {
+
+	private final ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+	
+	private final ComparableProperty<Entity, Integer> i = entity_.comparable("i");
+	
+	private final StringProperty<Entity> s = (StringProperty<Entity>) entity_.<String>comparable("s");
+	
+	@Test
+	public void testContradiction() {
+		assertEmpty(i.greaterThan(5), i.lessThan(3));
+		assertEmpty(i.equalTo(1), i.equalTo(2));
+		assertEmpty(i.in(1, 2), i.in(3));
+		assertEmpty(i.equalTo(1), i.notEqualTo(1));
+		assertEmpty(i.in(1, 2), i.notEqualTo(1), i.notEqualTo(2));
+		assertEmpty(i.greaterThan(3), i.lessThanOrEqualTo(3));
+		assertEmpty(i.greaterThanOrEqualTo(3), i.lessThan(3));
+		assertEmpty(i.greaterThanOrEqualTo(3), i.lessThanOrEqualTo(3), i.notEqualTo(3));
+		assertEmpty(i.lessThanOrEqualTo(1), i.in(2, 3));
+		assertEmpty(i.in(1, 2, 3), i.greaterThan(3));
+		assertEmpty(s.startsWith("a"), s.startsWith("b"));
+		assertEmpty(s.startsWith("ab"), s.lessThan("ab"));
+		assertEmpty(s.startsWith("ab"), s.equalTo("b"));
+	}
+	
+	@Test
+	public void testBoundary() {
+		Range<Integer> range = range(i.greaterThanOrEqualTo(3), i.lessThanOrEqualTo(3));
+		assertFalse(range.isEmpty());
+		assertBounds(range, 3, true, 3, true);
+		assertTrue(range.evaluate(3));
+		assertFalse(range.evaluate(2));
+		assertFalse(range.evaluate(4));
+		
+		// The exclusive bound wins over the inclusive one of the same value
+		// whatever the order is.
+		range = range(i.greaterThan(3), i.greaterThanOrEqualTo(3));
+		assertBounds(range, 3, false, null, false);
+		range = range(i.greaterThanOrEqualTo(3), i.greaterThan(3));
+		assertBounds(range, 3, false, null, false);
+		range = range(i.lessThan(5), i.lessThanOrEqualTo(5));
+		assertBounds(range, null, false, 5, false);
+		range = range(i.lessThanOrEqualTo(5), i.lessThan(5));
+		assertBounds(range, null, false, 5, false);
+		
+		// The tighter bound wins.
+		range = range(i.greaterThan(1), i.greaterThanOrEqualTo(4), i.lessThan(9),
+				i.lessThanOrEqualTo(7));
+		assertBounds(range, 4, true, 7, true);
+		range = range(i.greaterThanOrEqualTo(4), i.greaterThan(1), i.lessThanOrEqualTo(7),
+				i.lessThan(9));
+		assertBounds(range, 4, true, 7, true);
+		
+		// The excluded value on the bound does not empty the open range.
+		range = range(i.greaterThanOrEqualTo(3), i.lessThan(5), i.notEqualTo(3));
+		assertFalse(range.isEmpty());
+		assertEquals(Arrays.asList(3), new ArrayList<Integer>(range.excluded()));
+		assertFalse(range.evaluate(3));
+		assertTrue(range.evaluate(4));
+		
+		Range<String> prefix = range(s.startsWith("ab"));
+		assertBounds(prefix, "ab", true, prefix.upper(), false);
+		assertTrue(prefix.evaluate("ab"));
+		assertTrue(prefix.evaluate("abz"));
+		assertFalse(prefix.evaluate("ac"));
+		assertFalse(prefix.evaluate("aa"));
+	}
+	
+	@Test
+	public void testIntersection() {
+		Range<Integer> range = range(i.in(1, 2, 3, 4, 5), i.greaterThan(2), i.notEqualTo(4));
+		assertValues(range, 3, 5);
+		assertTrue(range.evaluate(3));
+		assertFalse(range.evaluate(4));
+		assertFalse(range.evaluate(6));
+		
+		assertValues(range(i.equalTo(2), i.in(1, 2, 3)), 2);
+		assertValues(range(i.in(1, 2, 3), i.equalTo(2)), 2);
+		assertValues(range(i.in(1, 2, 3), i.in(3, 4), i.lessThanOrEqualTo(3)), 3);
+		
+		// The IN lists of 8 or more values are hashed.
+		Integer[] values1 = new Integer[10];
+		Integer[] values2 = new Integer[11];
+		
+		for (int j = 0; j < values2.length; j++) {
+			if (j < values1.length) {
+				values1[j] = j + 1;
+			}
+			
+			values2[j] = j + 5;
+		}
+		
+		assertValues(range(i.in(values1), i.in(values2)), 5, 6, 7, 8, 9, 10);
+		assertValues(range(i.in(values1), i.in(values2), i.greaterThan(5), i.lessThan(9),
+				i.notEqualTo(7)), 6, 8);
+				
+		// The null value in IN list never matches.
+		assertValues(range(i.in(null, 1), i.lessThan(5)), 1);
+		assertValues(range(i.in(null, 1, 7), i.notEqualTo(7)), 1);
+		assertEmpty(i.in((Integer) null), i.greaterThan(0));
+		
+		assertValues(range(s.in("abc", "b", "ab", "a"), s.startsWith("ab")), "abc", "ab");
+	}
+	
+	@Test
+	public void testRandom() {
+		Random random = new Random(3);
+		
+		for (int n = 0; n < 5000; n++) {
+			Filter<?>[] filters = new Filter<?>[1 + random.nextInt(5)];
+			
+			for (int j = 0; j < filters.length; j++) {
+				int v = random.nextInt(11) - 5;
+				
+				switch (random.nextInt(7)) {
+				case 0:
+					filters[j] = i.equalTo(v);
+					break;
+				case 1:
+					filters[j] = i.notEqualTo(v);
+					break;
+				case 2:
+					filters[j] = i.greaterThan(v);
+					break;
+				case 3:
+					filters[j] = i.greaterThanOrEqualTo(v);
+					break;
+				case 4:
+					filters[j] = i.lessThan(v);
+					break;
+				case 5:
+					filters[j] = i.lessThanOrEqualTo(v);
+					break;
+				default:
+					filters[j] = i.in(v, v + random.nextInt(3), v - random.nextInt(3));
+				}
+			}
+			
+			String message = Arrays.toString(filters);
+			Predicate predicate = Filters.compile(filters);
+			Range<?> range = predicate.ranges().get(0);
+			
+			for (int v = -8; v <= 8; v++) {
+				Entity entity = new Entity();
+				entity.i = v;
+				boolean matches = true;
+				
+				for (Filter<?> filter : filters) {
+					matches &= filter.matches(entity);
+				}
+				
+				assertEquals(message + " " + v, matches, range.matches(entity));
+				assertEquals(message + " " + v, matches, predicate.matches(entity));
+				assertFalse(message + " " + v, matches && range.isEmpty());
+				
+				if (range.values() != null) {
+					assertEquals(message + " " + v, matches, range.values().contains(v));
+				}
+			}
+			
+			// Plan.satisfiable() depends on the merged ranges.
+			assertEquals(message, !range.isEmpty(),
+					new Plan(Capabilities.none(), filters, new Order<?, ?>[0]).satisfiable());
+		}
+	}
+	
+	private void assertEmpty(Filter<?>... filters) {
+		Predicate predicate = Filters.compile(filters);
+		String message = Arrays.toString(filters);
+		assertFalse(message, predicate.satisfiable());
+		assertTrue(message, predicate.ranges().get(0).isEmpty());
+		assertFalse(message, new Plan(Capabilities.none(), filters, new Order<?, ?>[0]).satisfiable());
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T extends Comparable<T>> Range<T> range(Filter<?>... filters) {
+		Predicate predicate = Filters.compile(filters);
+		assertEquals(1, predicate.ranges().size());
+		Range<T> range = (Range<T>) predicate.ranges().get(0);
+		assertEquals(new ArrayList<Filter<?>>(Arrays.asList(filters)),
+				new ArrayList<Filter<?>>(range.filters()));
+		return range;
+	}
+	
+	private static void assertValues(Range<?> range, Object... values) {
+		assertEquals(range.toString(), Arrays.asList(values), new ArrayList<Object>(range.values()));
+	}
+	
+	private static <T extends Comparable<T>> void assertBounds(Range<T> range, T lower,
+			boolean lowerInclusive, T upper, boolean upperInclusive) {
+		String message = range.toString();
+		assertEquals(message, lower, range.lower());
+		assertEquals(message, upper, range.upper());
+		
+		if (lower != null) {
+			assertEquals(message, lowerInclusive, range.lowerInclusive());
+		}
+		
+		if (upper != null) {
+			assertEquals(message, upperInclusive, range.upperInclusive());
+		}
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		int i;
+		
+		String s;
+		
+	}
+	
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.eiichiro.acidhouse.metamodel.ComparableProperty;
+import org.eiichiro.acidhouse.metamodel.Metamodels;
+import org.eiichiro.acidhouse.metamodel.ReflectiveMetamodel;
+import org.junit.After;
+import org.junit.Test;
+
+public class SortedIteratorTest {
+
+	private final int budget = Executions.budget();
+	
+	@After
+	public void tearDown() {
+		Executions.budget(budget);
+	}
+	
+	@Test
+	public void testSpillRoundTrip() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		ComparableProperty<Entity, Integer> i = entity_.comparable("i");
+		ComparableProperty<Entity, String> s = entity_.comparable("s");
+		List<Entity> entities = entities(5000);
+		List<Entity> expected = Executions.sort(entities, i.desc, s.asc);
+		
+		// 3 spills 1667 runs, which are merged in more than one pass.
+		for (int budget : new int[] { 100000, 1000, 37, 3 }) {
+			Executions.budget(budget);
+			SortedIterator<Entity> iterator = Executions.sort(entity_, entities.iterator(), i.desc, s.asc);
+			List<Entity> actual = new ArrayList<Entity>();
+			
+			try {
+				while (iterator.hasNext()) {
+					actual.add(iterator.next());
+				}
+			} finally {
+				iterator.close();
+			}
+			
+			assertEquals("budget " + budget, expected.size(), actual.size());
+			
+			for (int j = 0; j < expected.size(); j++) {
+				Entity entity = actual.get(j);
+				
+				if (budget >= entities.size()) {
+					// Not spilled; the consumed instances are returned as they are.
+					assertSame("budget " + budget + " at " + j, expected.get(j), entity);
+					assertEquals(entity.id.hashCode(), entity.t);
+				} else {
+					// Spilled; the @Transient state is dropped.
+					assertNotSame("budget " + budget + " at " + j, expected.get(j), entity);
+					assertEntity("budget " + budget + " at " + j, expected.get(j), entity);
+					assertEquals(0, entity.t);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testSpillKeyTypes() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		ComparableProperty<Entity, Color> c = entity_.comparable("c");
+		ComparableProperty<Entity, Date> d = entity_.comparable("d");
+		ComparableProperty<Entity, Version> v = entity_.comparable("v");
+		List<Entity> entities = entities(500);
+		List<Entity> expected = Executions.sort(entities, c.asc, v.desc, d.desc);
+		Executions.budget(7);
+		SortedIterator<Entity> iterator = Executions.sort(entity_, entities.iterator(), c.asc, v.desc, d.desc);
+		
+		for (Entity entity : expected) {
+			assertTrue(iterator.hasNext());
+			assertEntity(entity.id, entity, iterator.next());
+		}
+		
+		assertFalse(iterator.hasNext());
+	}
+	
+	@Test
+	public void testSpillReleasesEntities() {
+		ReflectiveMetamodel<Entity> entity_ = Metamodels.metamodel(Entity.class);
+		ComparableProperty<Entity, Integer> i = entity_.comparable("i");
+		final List<Entity> entities = entities(1000);
+		final List<WeakReference<Entity>> references = new ArrayList<WeakReference<Entity>>();
+		Executions.budget(100);
+		
+		// Hands out the copies, so that only the SortedIterator may reference
+		// the consumed instances.
+		SortedIterator<Entity> iterator = Executions.sort(entity_, new Iterator<Entity>() {
+
+			private int index;
+			
+			@Override
+			public boolean hasNext() {
+				return index < entities.size();
+			}
+			
+			@Override
+			public Entity next() {
+				Entity entity = copy(entities.get(index++));
+				references.add(new WeakReference<Entity>(entity));
+				return entity;
+			}
+			
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			
+		}, i.asc);
+		
+		try {
+			for (int j = 0; j < 10 && !released(references); j++) {
+				System.gc();
+			}
+			
+			assertTrue(released(references));
+			List<Entity> expected = Executions.sort(entities, i.asc);
+			
+			for (Entity entity : expected) {
+				assertTrue(iterator.hasNext());
+				assertEntity(entity.id, entity, iterator.next());
+			}
+			
+			assertFalse(iterator.hasNext());
+		} finally {
+			iterator.close();
+		}
+	}
+	
+	private static boolean released(List<WeakReference<Entity>> references) {
+		for (WeakReference<Entity> reference : references) {
+			if (reference.get() != null) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static Entity copy(Entity entity) {
+		Entity copy = new Entity();
+		copy.id = entity.id;
+		copy.i = entity.i;
+		copy.s = entity.s;
+		copy.c = entity.c;
+		copy.d = entity.d;
+		copy.v = entity.v;
+		copy.a = entity.a;
+		copy.child = entity.child;
+		copy.t = entity.t;
+		return copy;
+	}
+	
+	private static void assertEntity(String message, Entity expected, Entity actual) {
+		assertEquals(message, expected.id, actual.id);
+		assertEquals(message, expected.i, actual.i);
+		assertEquals(message, expected.s, actual.s);
+		assertSame(message, expected.c, actual.c);
+		assertEquals(message, expected.d.getClass(), actual.d.getClass());
+		assertEquals(message, expected.d.getTime(), actual.d.getTime());
+		assertEquals(message, 0, expected.v.compareTo(actual.v));
+		
+		if (expected.a == null) {
+			assertNull(message, actual.a);
+		} else {
+			assertEquals(message, expected.a.x, actual.a.x);
+			assertEquals(message, expected.a.y, actual.a.y);
+		}
+		
+		if (expected.child == null) {
+			assertNull(message, actual.child);
+		} else {
+			assertEquals(message, expected.child.id, actual.child.id);
+			assertEquals(message, expected.child.l, actual.child.l);
+		}
+	}
+	
+	private static List<Entity> entities(int size) {
+		List<Entity> entities = new ArrayList<Entity>();
+		Random random = new Random(3);
+		
+		for (int j = 0; j < size; j++) {
+			Entity entity = new Entity();
+			entity.id = "id" + j;
+			entity.i = random.nextInt(50);
+			entity.s = (random.nextInt(5) == 0) ? null : "s" + random.nextInt(5);
+			entity.c = Color.values()[random.nextInt(3)];
+			entity.d = (j % 7 == 0) ? new java.sql.Timestamp(j * 1000L) : new Date(j * 1000L);
+			entity.v = new Version(random.nextInt(4));
+			entity.t = entity.id.hashCode();
+			
+			if (j % 3 != 0) {
+				entity.a = new Address();
+				entity.a.x = "x" + j;
+				entity.a.y = (j % 2 == 0) ? null : (long) j;
+			}
+			
+			if (j % 4 != 0) {
+				entity.child = new Child();
+				entity.child.id = "child" + j;
+				entity.child.l = j * 7L;
+			}
+			
+			entities.add(entity);
+		}
+		
+		return entities;
+	}
+	
+	public enum Color {
+
+		RED, GREEN, BLUE
+		
+	}
+	
+	public static class Version implements Comparable<Version>, Serializable {
+
+		private static final long serialVersionUID = 1L;
+		
+		private final int major;
+		
+		public Version(int major) {
+			this.major = major;
+		}
+		
+		@Override
+		public int compareTo(Version version) {
+			return (major < version.major) ? -1 : ((major == version.major) ? 0 : 1);
+		}
+		
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Entity {
+
+		@Key String id;
+		
+		int i;
+		
+		String s;
+		
+		Color c;
+		
+		Date d;
+		
+		Version v;
+		
+		Address a;
+		
+		Child child;
+		
+		@Transient int t;
+		
+	}
+	
+	@Embedded
+	public static class Address {
+
+		String x;
+		
+		Long y;
+		
+	}
+	
+	@org.eiichiro.acidhouse.Entity
+	public static class Child {
+
+		@Key String id;
+		
+		long l;
+		
+	}
+	
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2012 Eiichiro Uchiumi. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *     
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eiichiro.acidhouse.metamodel;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+
+import org.eiichiro.reverb.lang.UncheckedException;
+import org.junit.Test;
+
+public class AccessorGeneratorTest {
+
+	@Test
+	public void testGenerate() {
+		for (String path : new String[] { "i", "l", "d", "f", "c", "s", "b", "z", "boxed",
+				"string", "inherited", "embedded.x", "embedded.y", "embedded.child.x" }) {
+			Accessor reflective = Accessors.accessor(Root.class, Arrays.asList(path.split("\\.")));
+			Accessor generated = Accessors.generate(reflective);
+			assertTrue(path, generated(generated));
+			Root root = root();
+			assertEquals(path, reflective.get(root), generated.get(root));
+			
+			Object value = reflective.get(root());
+			generated.set(root, value);
+			assertEquals(path, value, reflective.get(root));
+			assertEquals(path, reflective.get(root), generated.get(root));
+			
+			if (value instanceof Number || value instanceof Character) {
+				assertEquals(path, reflective.getDouble(root), generated.getDouble(root), 0);
+				
+				if (!(value instanceof Double || value instanceof Float)) {
+					assertEquals(path, reflective.getLong(root), generated.getLong(root));
+					
+					if (!(value instanceof Long)) {
+						assertEquals(path, reflective.getInt(root), generated.getInt(root));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testGenerateChild() {
+		Accessor embedded = Accessors.accessor(Root.class, Arrays.asList("embedded"));
+		Accessor child = Accessors.accessor(Accessors.accessor(embedded, "child"), "x");
+		Accessor generated = Accessors.generate(child);
+		assertTrue(generated(generated));
+		Root root = root();
+		assertEquals(3, generated.getInt(root));
+		generated.set(root, 5);
+		assertEquals(5, root.embedded.child.x);
+		assertEquals(5L, generated.getLong(root));
+		assertEquals(5.0, generated.getDouble(root), 0);
+	}
+	
+	@Test
+	public void testConversion() {
+		Root root = root();
+		Accessor c = Accessors.generate(Accessors.accessor(Root.class, Arrays.asList("c")));
+		assertEquals('c', c.getInt(root));
+		assertEquals('c', c.getLong(root));
+		assertEquals('c', c.getDouble(root), 0);
+		Accessor s = Accessors.generate(Accessors.accessor(Root.class, Arrays.asList("s")));
+		assertEquals(-7, s.getInt(root));
+		assertEquals(-7L, s.getLong(root));
+		Accessor i = Accessors.generate(Accessors.accessor(Root.class, Arrays.asList("i")));
+		assertEquals(Integer.MIN_VALUE, i.getLong(root));
+		assertEquals(Integer.MIN_VALUE, i.getDouble(root), 0);
+		Accessor l = Accessors.generate(Accessors.accessor(Root.class, Arrays.asList("l")));
+		assertEquals(Long.MAX_VALUE, l.getLong(root));
+		assertEquals(Long.MAX_VALUE, l.getDouble(root), 0);
+		Accessor f = Accessors.generate(Accessors.accessor(Root.class, Arrays.asList("f")));
+		assertEquals(1.5, f.getDouble(root), 0);
+		Accessor boxed = Accessors.generate(Accessors.accessor(Root.class, Arrays.asList("boxed")));
+		assertEquals(42L, boxed.getLong(root));
+		assertEquals(42, boxed.getInt(root));
+		assertEquals(42.0, boxed.getDouble(root), 0);
+	}
+	
+	@Test
+	public void testNullIntermediate() {
+		Accessor accessor = Accessors.generate(
+				Accessors.accessor(Root.class, Arrays.asList("embedded", "x")));
+		assertTrue(generated(accessor));
+		Root root = root();
+		root.embedded = null;
+		
+		try {
+			accessor.get(root);
+			fail();
+		} catch (UncheckedException e) {
+			assertTrue(e.getCause() instanceof NullPointerException);
+		}
+		
+		try {
+			accessor.getInt(root);
+			fail();
+		} catch (UncheckedException e) {
+			assertTrue(e.getCause() instanceof NullPointerException);
+		}
+		
+		try {
+			accessor.set(root, 1);
+			fail();
+		} catch (UncheckedException e) {
+			assertTrue(e.getCause() instanceof NullPointerException);
+		}
+		
+		try {
+			accessor.set(root(), "1");
+			fail();
+		} catch (UncheckedException e) {
+			assertTrue(e.getCause() instanceof ClassCastException);
+		}
+	}
+	
+	@Test
+	public void testReflectiveFallback() {
+		for (String path : new String[] { "hidden", "constant", "embedded.hidden" }) {
+			Accessor reflective = Accessors.accessor(Root.class, Arrays.asList(path.split("\\.")));
+			assertSame(path, reflective, Accessors.generate(reflective));
+		}
+		
+		Root root = root();
+		Accessor hidden = Accessors.accessor(Root.class, Arrays.asList("hidden"));
+		hidden.set(root, 9);
+		assertEquals(9, hidden.getInt(root));
+		Accessor constant = Accessors.accessor(Root.class, Arrays.asList("constant"));
+		assertEquals(1, constant.get(root));
+	}
+	
+	@Test
+	public void testChildClassLoader() throws Exception {
+		Field[] fields = { Root.class.getField("embedded"), Embedded.class.getField("x") };
+		Accessor accessor = new AccessorGenerator(fields).generate(false);
+		assertNotNull(accessor);
+		ClassLoader loader = accessor.getClass().getClassLoader();
+		assertNotSame(Root.class.getClassLoader(), loader);
+		assertSame(Root.class.getClassLoader(), loader.getParent());
+		Root root = root();
+		assertEquals(1, accessor.getInt(root));
+		accessor.set(root, 2);
+		assertEquals(2, root.embedded.x);
+		root.embedded = null;
+		
+		try {
+			accessor.getInt(root);
+			fail();
+		} catch (UncheckedException e) {
+			assertTrue(e.getCause() instanceof NullPointerException);
+		}
+		
+		// The child class loader cannot access the package-private members.
+		Field local = Root.class.getDeclaredField("local");
+		assertNull(new AccessorGenerator(new Field[] { local }).generate(false));
+		
+		if (!System.getProperty("java.specification.version").startsWith("1.")) {
+			Accessor generated = new AccessorGenerator(new Field[] { local }).generate(true);
+			assertNotNull(generated);
+			assertSame(Root.class.getClassLoader(), generated.getClass().getClassLoader());
+			root.local = 4;
+			assertEquals(4, generated.get(root));
+		}
+	}
+	
+	private static boolean generated(Accessor accessor) {
+		return accessor.getClass().getName().contains("$$Accessor$");
+	}
+	
+	private static Root root() {
+		Root root = new Root();
+		root.i = Integer.MIN_VALUE;
+		root.l = Long.MAX_VALUE;
+		root.d = -0.25;
+		root.f = 1.5f;
+		root.c = 'c';
+		root.s = -7;
+		root.b = 8;
+		root.z = true;
+		root.boxed = 42;
+		root.string = "string";
+		root.inherited = 6;
+		root.embedded = new Embedded();
+		root.embedded.x = 1;
+		root.embedded.y = 2L;
+		root.embedded.child = new Embedded();
+		root.embedded.child.x = 3;
+		return root;
+	}
+	
+	public static class Parent {
+
+		public int inherited;
+		
+	}
+	
+	public static class Root extends Parent {
+
+		public int i;
+		
+		public long l;
+		
+		public double d;
+		
+		public float f;
+		
+		public char c;
+		
+		public short s;
+		
+		public byte b;
+		
+		public boolean z;
+		
+		public Integer boxed;
+		
+		public String string;
+		
+		public Embedded embedded;
+		
+		@SuppressWarnings("unused")
+		private int hidden;
+		
+		public final int constant = 1;
+		
+		int local;
+		
+	}
+	
+	public static class Embedded {
+
+		public int x;
+		
+		public Long y;
+		
+		public Embedded child;
+		
+		@SuppressWarnings("unused")
+		private int hidden;
+		
+	}
+	
+}